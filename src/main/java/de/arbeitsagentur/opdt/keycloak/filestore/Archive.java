@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A zip archive holding the whole root directory, e.g. built by a GitOps pipeline instead of
+ * mounting tens of thousands of small files. Entries are read through the zip file system of the
+ * JDK, which reads the central directory of the archive once, so walking and checking the files
+ * needs no further system calls.
+ *
+ * <p>Archives are read-only, {@link EntityStore} rejects writing or deleting an entity with a {@link
+ * java.nio.file.ReadOnlyFileSystemException}. Replacing the archive on disk is not noticed by
+ * {@link EntityStore#reload()}, the archive stays open until the JVM exits.
+ */
+final class Archive {
+
+    private static final Map<Path, FileSystem> FILE_SYSTEMS = new ConcurrentHashMap<>();
+
+    private Archive() {}
+
+    /** Whether the root directory is configured as an archive, judged by its name only. */
+    static boolean isArchive(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+
+        String name = fileName.toString();
+        if (name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            throw new IllegalStateException(
+                    "Map Storage file directory " + path + " is a tar archive, only zip archives are supported");
+        }
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+
+    /** The root directory inside the archive, opening it on the first call. */
+    static Path getRoot(Path archive) {
+        return FILE_SYSTEMS
+                .computeIfAbsent(archive.toAbsolutePath().normalize(), Archive::open)
+                .getPath("/");
+    }
+
+    /** Whether the path is inside one of the opened archives. */
+    static boolean contains(Path path) {
+        return FILE_SYSTEMS.containsValue(path.getFileSystem());
+    }
+
+    private static FileSystem open(Path archive) {
+        try {
+            return FileSystems.newFileSystem(archive);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open archive " + archive, e);
+        }
+    }
+}
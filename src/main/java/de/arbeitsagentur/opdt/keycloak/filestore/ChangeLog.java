@@ -0,0 +1,292 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
+
+/**
+ * Changes to the files of the root directory, for nodes sharing one volume. Every node appends the
+ * paths it changed to the {@code .changes.log} file in the root directory, and reads the changes of
+ * the other nodes from there to update its store, see {@link EntityStore}.
+ *
+ * <p>Each record holds its sequence number, the operation, the node and the path relative to the root
+ * directory. The log starts with the sequence number of its first record, the sequence number of the
+ * other records follows from their position. Records are appended while holding a lock and read
+ * through a memory-mapped buffer starting at the checkpoint of the node, which is advanced over
+ * complete records only.
+ *
+ * <p>Every node keeps its checkpoint in the {@code .changes} directory. Once the log exceeds the
+ * rotation size, it is replaced by the records not yet read by every node. Nodes which did not read
+ * the log for a while are considered gone and no longer hold back the rotation. Should such a node
+ * come back, it misses the dropped records and has to read all files again.
+ */
+final class ChangeLog {
+    private static final Logger LOG = Logger.getLogger(ChangeLog.class);
+
+    static final String FILE_NAME = ".changes.log";
+    static final String DIRECTORY = ".changes";
+    static final long ROTATION_SIZE = 1024 * 1024;
+
+    private static final String LOCK_FILE = ".lock";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final int HEADER = Long.BYTES;
+
+    enum Operation {
+        WRITE,
+        DELETE,
+        DELETE_DIRECTORY
+    }
+
+    record Change(long sequence, Operation operation, Path path) {}
+
+    private final Path rootDirectory;
+    private final Path file;
+    private final Path directory;
+    private final Path checkpointFile;
+    private final byte[] nodeId;
+    private final long staleAfter;
+    private final long rotationSize;
+    private long checkpoint;
+
+    /**
+     * Starts reading at the end of the log, as earlier changes are read with the files. Nodes whose
+     * checkpoint was not saved for {@code staleAfter} milliseconds are considered gone.
+     */
+    ChangeLog(Path rootDirectory, String nodeId, long staleAfter, long rotationSize) throws IOException {
+        this.rootDirectory = rootDirectory;
+        this.file = rootDirectory.resolve(FILE_NAME);
+        this.directory = rootDirectory.resolve(DIRECTORY);
+        this.checkpointFile = directory.resolve(nodeId + CHECKPOINT_SUFFIX);
+        this.nodeId = nodeId.getBytes(StandardCharsets.UTF_8);
+        this.staleAfter = staleAfter;
+        this.rotationSize = rotationSize;
+        Files.createDirectories(directory);
+        this.checkpoint = getEnd();
+        saveCheckpoint();
+    }
+
+    /** Appends the changes of this node in their order as one write. */
+    void append(Map<Path, Operation> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<byte[], Operation>> records = changes.entrySet().stream()
+                .map(change -> Map.entry(
+                        rootDirectory.relativize(change.getKey()).toString().getBytes(StandardCharsets.UTF_8),
+                        change.getValue()))
+                .toList();
+        int size = records.stream()
+                .mapToInt(record -> Integer.BYTES + getLength(record.getKey()))
+                .sum();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        // file locks are held by the JVM, so nodes within one JVM have to take turns first
+        synchronized (ChangeLog.class) {
+            // not the log itself, which is replaced when rotated
+            try (FileChannel lockChannel = FileChannel.open(
+                            directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = lockChannel.lock();
+                    FileChannel channel = FileChannel.open(
+                            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long position = channel.size();
+                if (position < HEADER) {
+                    write(channel, ByteBuffer.allocate(HEADER).putLong(0).flip(), 0);
+                    position = HEADER;
+                }
+                long base = readBase(channel);
+                long sequence = base + position - HEADER;
+                for (Map.Entry<byte[], Operation> record : records) {
+                    byte[] path = record.getKey();
+                    buffer.putInt(getLength(path));
+                    buffer.putLong(sequence);
+                    buffer.put((byte) record.getValue().ordinal());
+                    putString(buffer, nodeId);
+                    putString(buffer, path);
+                    sequence += Integer.BYTES + getLength(path);
+                }
+                buffer.flip();
+                write(channel, buffer, position);
+                if (sequence - base > rotationSize) {
+                    rotate(channel, base, sequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the changes of other nodes since the last call and advances the checkpoint. Returns
+     * {@code null} if changes were dropped before this node read them, as it was considered gone.
+     */
+    synchronized List<Change> poll() throws IOException {
+        if (!Files.exists(file)) {
+            saveCheckpoint();
+            return List.of();
+        }
+
+        List<Change> changes = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long base = size < HEADER ? checkpoint : readBase(channel);
+            if (checkpoint < base) {
+                checkpoint = base;
+                saveCheckpoint();
+                return null;
+            }
+
+            long position = HEADER + checkpoint - base;
+            if (size > position) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+                while (buffer.remaining() >= Integer.BYTES) {
+                    int length = buffer.getInt(buffer.position());
+                    if (buffer.remaining() < Integer.BYTES + length) {
+                        // still being appended
+                        break;
+                    }
+
+                    buffer.getInt();
+                    long sequence = buffer.getLong();
+                    Operation operation = Operation.values()[buffer.get()];
+                    byte[] node = getString(buffer);
+                    Path path = rootDirectory.resolve(new String(getString(buffer), StandardCharsets.UTF_8));
+                    checkpoint += Integer.BYTES + length;
+                    if (!Arrays.equals(node, nodeId)) {
+                        changes.add(new Change(sequence, operation, path));
+                    }
+                }
+            }
+        }
+        // also tells the other nodes this one is still there
+        saveCheckpoint();
+        return changes;
+    }
+
+    /**
+     * Replaces the log by the records after the oldest checkpoint of the nodes still there, if that
+     * drops at least half of it. Must be called holding the lock.
+     */
+    private void rotate(FileChannel channel, long base, long end) throws IOException {
+        long oldest = end;
+        long now = System.currentTimeMillis();
+        List<Path> checkpoints;
+        try (Stream<Path> stream = Files.list(directory)) {
+            checkpoints = stream.filter(path -> path.getFileName().toString().endsWith(CHECKPOINT_SUFFIX))
+                    .toList();
+        }
+        for (Path path : checkpoints) {
+            if (now - Files.getLastModifiedTime(path).toMillis() > staleAfter) {
+                LOG.debugf("Dropping checkpoint %s, its node did not read the change log for a while", path);
+                Files.deleteIfExists(path);
+                continue;
+            }
+            byte[] content = Files.readAllBytes(path);
+            if (content.length != Long.BYTES) {
+                // being saved
+                return;
+            }
+            oldest = Math.min(oldest, ByteBuffer.wrap(content).getLong());
+        }
+        if (oldest - base < (end - base) / 2) {
+            return;
+        }
+
+        Path rotated = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel target = FileChannel.open(
+                rotated, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(target, ByteBuffer.allocate(HEADER).putLong(oldest).flip(), 0);
+            target.position(HEADER);
+            long position = HEADER + oldest - base;
+            long transferred = 0;
+            while (transferred < end - oldest) {
+                transferred += channel.transferTo(position + transferred, end - oldest - transferred, target);
+            }
+        }
+        try {
+            Files.move(rotated, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // e.g. on Windows, where open files cannot be replaced
+            LOG.debugf(e, "Could not rotate %s", file);
+            Files.deleteIfExists(rotated);
+        }
+    }
+
+    /** Sequence number following the last record of the log. */
+    private long getEnd() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            return size < HEADER ? 0 : readBase(channel) + size - HEADER;
+        }
+    }
+
+    private void saveCheckpoint() throws IOException {
+        Files.write(
+                checkpointFile,
+                ByteBuffer.allocate(Long.BYTES).putLong(checkpoint).array());
+    }
+
+    private static long readBase(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("Incomplete header of " + FILE_NAME);
+            }
+        }
+        return buffer.flip().getLong();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /** Length of a record without its length. */
+    private int getLength(byte[] path) {
+        return Long.BYTES + 1 + Short.BYTES + nodeId.length + Short.BYTES + path.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static byte[] getString(ByteBuffer buffer) {
+        byte[] value = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(value);
+        return value;
+    }
+}
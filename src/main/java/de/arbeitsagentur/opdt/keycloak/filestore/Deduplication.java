@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileProtocolMapperEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.CopyOnWriteMap;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Shares equal values between parsed entities: the keys of maps (config and attribute keys) and the
+ * values of properties with only a few distinct values (protocols, mapper types, realm ids) are
+ * interned while parsing, and equal protocol mapper configs are replaced by one shared immutable map
+ * wrapped in a {@link CopyOnWriteMap} per entity. Mostly unique values like ids, secrets or redirect
+ * URIs are not interned, as that would only grow the JVM's string table. Roles and groups, which are
+ * by far the most numerous entities, are additionally {@link FileRoleEntity#compact compacted}. This
+ * interns role ids, which are referenced by composite roles and groups.
+ */
+final class Deduplication {
+
+    /** Longer strings are mostly unique values like descriptions, certificates or secrets. */
+    private static final int MAX_INTERNED_LENGTH = 128;
+
+    private static final Set<String> SHARED_PROPERTIES = Set.of("protocol", "protocolMapper", "realmId");
+
+    private static final Map<Map<String, String>, WeakReference<Map<String, String>>> CONFIGS = new WeakHashMap<>();
+
+    private Deduplication() {}
+
+    /** Whether the values of the property are interned, as it has only a few distinct ones. */
+    static boolean isShared(String property) {
+        return property != null && SHARED_PROPERTIES.contains(property);
+    }
+
+    static String string(String value) {
+        return value == null || value.length() > MAX_INTERNED_LENGTH ? value : value.intern();
+    }
+
+    static void deduplicate(AbstractEntity entity) {
+        if (entity instanceof FileClientEntity client) {
+            deduplicate(client.getProtocolMappers());
+        } else if (entity instanceof FileClientScopeEntity clientScope) {
+            deduplicate(clientScope.getProtocolMappers());
+        } else if (entity instanceof FileRoleEntity role) {
+            role.compact(Deduplication::string);
+        } else if (entity instanceof FileGroupEntity group) {
+            group.compact(Deduplication::string);
+        }
+    }
+
+    private static void deduplicate(Collection<FileProtocolMapperEntity> protocolMappers) {
+        if (protocolMappers == null) {
+            return;
+        }
+        for (FileProtocolMapperEntity protocolMapper : protocolMappers) {
+            Map<String, String> config = protocolMapper.getConfig();
+            if (config != null && !config.isEmpty()) {
+                protocolMapper.setConfig(new CopyOnWriteMap<>(share(config)));
+            }
+        }
+    }
+
+    private static synchronized Map<String, String> share(Map<String, String> config) {
+        WeakReference<Map<String, String>> reference = CONFIGS.get(config);
+        Map<String, String> shared = reference == null ? null : reference.get();
+        if (shared == null) {
+            // keeps the order of the file, unlike Map.copyOf
+            shared = Collections.unmodifiableMap(new LinkedHashMap<>(config));
+            CONFIGS.put(shared, new WeakReference<>(shared));
+        }
+        return shared;
+    }
+}
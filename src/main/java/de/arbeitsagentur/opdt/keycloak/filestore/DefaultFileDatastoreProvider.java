@@ -18,6 +18,7 @@
 package de.arbeitsagentur.opdt.keycloak.filestore;
 
 import org.keycloak.models.*;
+import org.keycloak.storage.ExportImportManager;
 import org.keycloak.storage.datastore.DefaultDatastoreProvider;
 
 public class DefaultFileDatastoreProvider extends DefaultDatastoreProvider {
@@ -77,4 +78,9 @@ public class DefaultFileDatastoreProvider extends DefaultDatastoreProvider {
     public IdentityProviderStorageProvider identityProviders() {
         return session.getProvider(IdentityProviderStorageProvider.class, "file");
     }
+
+    @Override
+    public ExportImportManager getExportImportManager() {
+        return new FileExportImportManager(session);
+    }
 }
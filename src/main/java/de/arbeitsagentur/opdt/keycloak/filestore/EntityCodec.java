@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Format of the entity files, chosen by file suffix when reading and configured as {@code fileFormat}
+ * when writing, see {@link EntityIO#getFileFormat()}. Codecs read entities through their fields and
+ * write the properties having both a getter and a setter, so a file written by one codec holds the
+ * same properties as one written by another.
+ */
+public interface EntityCodec {
+
+    /** The default format, realms can be split into section files in this format only. */
+    EntityCodec YAML = new YamlCodec();
+
+    EntityCodec JSON = new JsonCodec();
+
+    List<EntityCodec> ALL = List.of(YAML, JSON);
+
+    /** Name of the format as configured, e.g. {@code yaml}. */
+    String getName();
+
+    /** Suffix of the files in this format including the dot, e.g. {@code .yaml}. */
+    String getFileSuffix();
+
+    /** Parses the file, {@code null} if it is empty. Environment variables are substituted. */
+    <E extends AbstractEntity & UpdatableEntity> E read(Path path, Class<E> type);
+
+    /** The entity as a single document, realms including all of their sections. */
+    <E extends AbstractEntity & UpdatableEntity> String write(E entity);
+
+    static EntityCodec forName(String name) {
+        return ALL.stream()
+                .filter(codec -> codec.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown Map Storage file format: " + name));
+    }
+
+    static EntityCodec forFile(Path path) {
+        String fileName = path.getFileName().toString();
+        return ALL.stream()
+                .filter(codec -> fileName.endsWith(codec.getFileSuffix()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No file format for " + path));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/** Per-realm entity counts maintained by {@link EntityStore}, so count queries need no scan. */
+public enum EntityCount {
+    CLIENTS(FileClientEntity.class, FileClientEntity::getRealmId, e -> true),
+
+    GROUPS(FileGroupEntity.class, FileGroupEntity::getRealmId, e -> true),
+
+    TOP_LEVEL_GROUPS(FileGroupEntity.class, FileGroupEntity::getRealmId, e -> e.getParentId() == null);
+
+    static final String KEY = "";
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Predicate<AbstractEntity> countedFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> EntityCount(
+            Class<E> entityType, Function<E, String> realmIdFunc, Predicate<E> countedFunc) {
+        this.entityType = entityType;
+        this.realmIdFunc = (Function<AbstractEntity, String>) realmIdFunc;
+        this.countedFunc = (Predicate<AbstractEntity>) countedFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    String getRealmId(AbstractEntity entity) {
+        return realmIdFunc.apply(entity);
+    }
+
+    Set<String> getKeys(AbstractEntity entity) {
+        return countedFunc.test(entity) ? Set.of(KEY) : Set.of();
+    }
+}
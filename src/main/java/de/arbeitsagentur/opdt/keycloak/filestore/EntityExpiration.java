@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileClientInitialAccessEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Expiring parts of stored entities, for which {@link EntityStore} keeps the entities ordered by
+ * their earliest expiration, so expiration runs only touch entities with something to remove.
+ */
+public enum EntityExpiration {
+    /** Expiration of {@link FileRealmEntity#getClientInitialAccesses()}. */
+    CLIENT_INITIAL_ACCESS(
+            FileRealmEntity.class,
+            e -> getEarliest(e.getClientInitialAccesses(), FileClientInitialAccessEntity::getExpiration));
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, Long> expirationFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> EntityExpiration(Class<E> entityType, Function<E, Long> expirationFunc) {
+        this.entityType = entityType;
+        this.expirationFunc = (Function<AbstractEntity, Long>) expirationFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    /** Earliest expiration in epoch milliseconds, {@code null} if nothing expires. */
+    Long getExpiration(AbstractEntity entity) {
+        return expirationFunc.apply(entity);
+    }
+
+    private static <T> Long getEarliest(Collection<T> values, Function<T, Long> expirationFunc) {
+        return values == null
+                ? null
+                : values.stream()
+                        .map(expirationFunc)
+                        .filter(Objects::nonNull)
+                        .min(Long::compare)
+                        .orElse(null);
+    }
+}
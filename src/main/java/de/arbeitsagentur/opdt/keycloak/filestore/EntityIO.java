@@ -24,13 +24,24 @@ import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeEnti
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
 import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileLocalizationTexts;
 import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
 import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -47,6 +58,10 @@ import org.yaml.snakeyaml.TypeDescription;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
 import org.yaml.snakeyaml.introspector.BeanAccess;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
 import org.yaml.snakeyaml.nodes.Tag;
 import org.yaml.snakeyaml.representer.Representer;
 
@@ -80,8 +95,68 @@ public class EntityIO {
         var loaderoptions = new LoaderOptions();
         loaderoptions.setTagInspector(tag -> false);
 
-        Constructor constructor = new Constructor(new TypeDescription(interfaceOfEntity), null, loaderoptions);
+        DeduplicatingConstructor constructor =
+                new DeduplicatingConstructor(new TypeDescription(interfaceOfEntity), loaderoptions);
+        Yaml yaml = createLoader(constructor);
 
+        try {
+            String substitutedYaml = readSubstituted(fileName);
+            if (interfaceOfEntity != FileRealmEntity.class) {
+                return yaml.load(substitutedYaml);
+            }
+
+            Node node = yaml.compose(new StringReader(substitutedYaml));
+            if (node == null) {
+                return null;
+            }
+            Map<String, Path> locales = node instanceof MappingNode realmNode
+                    ? RealmSections.inline(realmNode, fileName, loaderoptions, EntityIO::readSubstituted)
+                    : Map.of();
+            FileRealmEntity realm = (FileRealmEntity) constructor.construct(node);
+            locales.forEach(
+                    (locale, path) -> realm.putUnloadedLocalizationTexts(locale, () -> readLocalizationTexts(path)));
+            return (E) realm;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to parse file: " + fileName, e);
+        }
+    }
+
+    /**
+     * Parses only the given top-level properties of the file, e.g. the ones {@link EntityStore} indexes,
+     * without constructing the others. The id is determined as by {@link #parseFile}. Files in other
+     * formats than YAML are parsed completely.
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends AbstractEntity & UpdatableEntity> E parseProperties(
+            Path fileName, Class<E> interfaceOfEntity, Set<String> properties) {
+        if (EntityCodec.forFile(fileName) != EntityCodec.YAML) {
+            return parseFile(fileName, interfaceOfEntity);
+        }
+
+        var loaderoptions = new LoaderOptions();
+        loaderoptions.setTagInspector(tag -> false);
+        DeduplicatingConstructor constructor =
+                new DeduplicatingConstructor(new TypeDescription(interfaceOfEntity), loaderoptions);
+        Yaml yaml = createLoader(constructor);
+
+        E parsedObject;
+        try {
+            Node node = yaml.compose(new StringReader(readSubstituted(fileName)));
+            if (!(node instanceof MappingNode mappingNode)) {
+                return null;
+            }
+            mappingNode
+                    .getValue()
+                    .removeIf(tuple ->
+                            !(tuple.getKeyNode() instanceof ScalarNode key) || !properties.contains(key.getValue()));
+            parsedObject = (E) constructor.construct(mappingNode);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to parse file: " + fileName, e);
+        }
+        return identify(parsedObject, fileName, interfaceOfEntity, EntityCodec.YAML);
+    }
+
+    private static Yaml createLoader(DeduplicatingConstructor constructor) {
         DumperOptions options = new DumperOptions();
         options.setIndent(4);
         options.setIndicatorIndent(2);
@@ -93,50 +168,179 @@ public class EntityIO {
                 .getPropertyUtils()
                 .setBeanAccess(BeanAccess.FIELD); // Avoid circular dependencies when using setters
 
-        Yaml yaml = new Yaml(constructor, representer);
+        return new Yaml(constructor, representer);
+    }
 
-        try {
-            String rawYaml = Files.readString(fileName, StandardCharsets.UTF_8);
-            String substitutedYaml = new StringSubstitutor(System::getenv).replace(rawYaml);
+    static <E extends AbstractEntity & UpdatableEntity> void writeToFile(E entity, Path path) throws IOException {
+        EntityCodec codec = EntityCodec.forFile(path);
+        if (entity instanceof FileRealmEntity && isSplitRealmFiles() && codec == EntityCodec.YAML) {
+            Representer representer = createRepresenter(true);
+            Yaml yaml = createYaml(entity, representer);
+            representer.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+            Node node = representer.represent(entity);
+            node.setTag(Tag.MAP);
+            RealmSections.split((MappingNode) node, path, section -> serialize(yaml, section));
+            RealmSections.writeIfChanged(path, serialize(yaml, node));
+            return;
+        }
 
-            return yaml.load(substitutedYaml);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to parse file: " + fileName, e);
+        String output = codec.write(entity);
+
+        if (!Files.exists(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+
+        Files.write(path, output.getBytes());
+        if (entity instanceof FileRealmEntity) {
+            // sections written before the layout was switched back would hide the inline ones
+            RealmSections.delete(path);
         }
     }
 
-    static <E extends AbstractEntity & UpdatableEntity> void writeToFile(E entity, Path path) throws IOException {
-        var loaderoptions = new LoaderOptions();
-        loaderoptions.setTagInspector(tag -> false);
-        Constructor constructor = new Constructor(entity.getClass(), loaderoptions);
+    /** The entity as a single document in the format of the file, see {@link EntityCodec}. */
+    static <E extends AbstractEntity & UpdatableEntity> String format(E entity, Path path) {
+        return EntityCodec.forFile(path).write(entity);
+    }
+
+    /** The entity as a single document, realms including all of their sections. */
+    static <E extends AbstractEntity & UpdatableEntity> String toYaml(E entity) {
+        return createYaml(entity, createRepresenter(false)).dumpAs(entity, Tag.MAP, DumperOptions.FlowStyle.BLOCK);
+    }
 
+    private static Representer createRepresenter(boolean splitRealmFile) {
         DumperOptions options = new DumperOptions();
         options.setIndent(4);
         options.setIndicatorIndent(2);
         options.setIndentWithIndicator(false);
 
-        Representer representer = new Representer(options);
+        Representer representer = new SetAsSequenceRepresenter(options, splitRealmFile);
         representer.getPropertyUtils().setSkipMissingProperties(true);
-        representer.addClassTag(Set.class, Tag.SEQ);
+        return representer;
+    }
 
-        Yaml yaml = new Yaml(constructor, representer);
-        String output = yaml.dumpAs(entity, Tag.MAP, DumperOptions.FlowStyle.BLOCK);
+    private static Yaml createYaml(Object entity, Representer representer) {
+        var loaderoptions = new LoaderOptions();
+        loaderoptions.setTagInspector(tag -> false);
+        Constructor constructor = new Constructor(entity.getClass(), loaderoptions);
+        return new Yaml(constructor, representer);
+    }
 
-        if (!Files.exists(path.getParent())) {
-            Files.createDirectories(path.getParent());
+    static String readSubstituted(Path fileName) {
+        try {
+            String rawYaml = Files.readString(fileName, StandardCharsets.UTF_8);
+            return new StringSubstitutor(System::getenv).replace(rawYaml);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        Files.write(path, output.getBytes());
+    /** Reads the texts of a locale stored in its own file, see {@link RealmSections}. */
+    private static Map<String, String> readLocalizationTexts(Path fileName) {
+        var loaderoptions = new LoaderOptions();
+        loaderoptions.setTagInspector(tag -> false);
+        Yaml yaml = new Yaml(new DeduplicatingConstructor(new TypeDescription(Map.class), loaderoptions));
+        Map<?, ?> texts = yaml.load(readSubstituted(fileName));
+        Map<String, String> localizationTexts = new LinkedHashMap<>();
+        if (texts != null) {
+            texts.forEach((key, text) -> localizationTexts.put(String.valueOf(key), String.valueOf(text)));
+        }
+        return localizationTexts;
+    }
+
+    private static String serialize(Yaml yaml, Node node) {
+        StringWriter output = new StringWriter();
+        yaml.serialize(node, output);
+        return output.toString();
+    }
+
+    /**
+     * Reference lists of the entities are kept as insertion-ordered sets in memory, but are stored
+     * as plain YAML sequences (instead of {@code !!set} mappings) to keep the files unchanged.
+     *
+     * <p>Realms written with split files keep the texts of locales that were never read as {@link
+     * RealmSections#unloaded() placeholders} instead of reading them.
+     */
+    private static class SetAsSequenceRepresenter extends Representer {
+        SetAsSequenceRepresenter(DumperOptions options, boolean splitRealmFile) {
+            super(options);
+            this.multiRepresenters.put(
+                    Set.class,
+                    data -> representSequence(
+                            getTag(data.getClass(), Tag.SEQ), (Set<?>) data, DumperOptions.FlowStyle.AUTO));
+            if (splitRealmFile) {
+                this.representers.put(
+                        FileLocalizationTexts.class, data -> representLocalizationTexts((FileLocalizationTexts) data));
+            }
+        }
+
+        private Node representLocalizationTexts(FileLocalizationTexts localizationTexts) {
+            List<NodeTuple> locales = new ArrayList<>();
+            for (String locale : localizationTexts.keySet()) {
+                Node texts = localizationTexts.isLoaded(locale)
+                        ? representData(localizationTexts.get(locale))
+                        : RealmSections.unloaded();
+                locales.add(new NodeTuple(representData(locale), texts));
+            }
+            return new MappingNode(Tag.MAP, locales, DumperOptions.FlowStyle.AUTO);
+        }
+    }
+
+    /**
+     * Interns the keys of mappings and the values of {@link Deduplication#isShared shared properties}
+     * of parsed entities, see {@link Deduplication}.
+     */
+    private static class DeduplicatingConstructor extends Constructor {
+        private final Set<Node> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        DeduplicatingConstructor(TypeDescription rootType, LoaderOptions loaderOptions) {
+            super(rootType, null, loaderOptions);
+            this.yamlConstructors.put(Tag.STR, new ConstructDeduplicatedStr());
+        }
+
+        @Override
+        protected Object constructObject(Node node) {
+            // mappings are constructed before their keys and values
+            if (node instanceof MappingNode mapping) {
+                for (NodeTuple tuple : mapping.getValue()) {
+                    shared.add(tuple.getKeyNode());
+                    if (tuple.getKeyNode() instanceof ScalarNode key && Deduplication.isShared(key.getValue())) {
+                        shared.add(tuple.getValueNode());
+                    }
+                }
+            }
+            return super.constructObject(node);
+        }
+
+        /** Constructs the root type from a node composed by the caller, like {@link #getSingleData}. */
+        Object construct(Node node) {
+            node.setTag(rootTag);
+            return constructDocument(node);
+        }
+
+        private class ConstructDeduplicatedStr extends ConstructYamlStr {
+            @Override
+            public Object construct(Node node) {
+                String value = (String) super.construct(node);
+                return shared.contains(node) ? Deduplication.string(value) : value;
+            }
+        }
     }
 
     static <E extends AbstractEntity & UpdatableEntity> E parseFile(Path fileName, Class<E> interfaceOfEntity) {
-        final E parsedObject = yamlParseFile(fileName, interfaceOfEntity);
+        final EntityCodec codec = EntityCodec.forFile(fileName);
+        return identify(codec.read(fileName, interfaceOfEntity), fileName, interfaceOfEntity, codec);
+    }
+
+    /** Sets the id of a parsed entity if the file has none, and deduplicates its values. */
+    private static <E extends AbstractEntity & UpdatableEntity> E identify(
+            E parsedObject, Path fileName, Class<E> interfaceOfEntity, EntityCodec codec) {
         if (parsedObject == null) {
             return null;
         }
 
         final String fileNameStr = fileName.getFileName().toString();
-        final String idFromFilename = fileNameStr.substring(0, fileNameStr.length() - FILE_SUFFIX.length());
+        final String idFromFilename = fileNameStr.substring(
+                0, fileNameStr.length() - codec.getFileSuffix().length());
         String escapedId = determineKeyFromValue(parsedObject, interfaceOfEntity, idFromFilename);
 
         if (escapedId == null) {
@@ -152,6 +356,7 @@ public class EntityIO {
             parsedObject.setId(escapedId);
         }
 
+        Deduplication.deduplicate(parsedObject);
         parsedObject.clearUpdatedFlag();
         return parsedObject;
     }
@@ -229,9 +434,14 @@ public class EntityIO {
             parentDirectory = targetPath;
         }
 
-        return targetPath.resolveSibling(targetPath.getFileName() + FILE_SUFFIX);
+        return targetPath.resolveSibling(
+                targetPath.getFileName() + getFileFormat().getFileSuffix());
     }
 
+    /**
+     * The root directory configured as {@code dir}, or the root inside a zip archive if {@code dir}
+     * names one, see {@link Archive}.
+     */
     public static Path getRootDirectory() {
         String[] scopes = {STORAGE_CONTEXT, STORAGE_TYPE};
         String root = Config.scope(scopes).get("dir");
@@ -243,7 +453,102 @@ public class EntityIO {
                             + scopesString);
         }
 
-        return Path.of(root);
+        Path path = Path.of(root);
+        return Archive.isArchive(path) ? Archive.getRoot(path) : path;
+    }
+
+    /**
+     * Attribute names for which {@link EntityStore} keeps an attribute-value index, configured as
+     * comma-separated list {@code indexedAttributes}. Returns an empty set if not configured, i.e. no
+     * attribute is indexed and attribute searches scan the realm.
+     */
+    public static Set<String> getIndexedAttributeNames() {
+        String[] names = Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getArray("indexedAttributes");
+        return names == null ? Set.of() : new HashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * Whether {@link EntityStore} reads only the realm files at startup and the clients, client scopes,
+     * groups and roles of a realm on its first access, configured as {@code lazyLoading}. Disabled by
+     * default.
+     */
+    public static boolean isLazyLoading() {
+        return Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getBoolean("lazyLoading", false);
+    }
+
+    /**
+     * Whether realms are written with their flows, components, identity providers, required actions and
+     * localization texts in separate files per item, see {@link RealmSections}, configured as {@code
+     * splitRealmFiles}. Disabled by default. Both layouts are always read. Applies to the YAML {@link
+     * #getFileFormat() format} only.
+     */
+    static boolean isSplitRealmFiles() {
+        return Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getBoolean("splitRealmFiles", false);
+    }
+
+    /**
+     * Whether {@link EntityStore} reads only the indexed properties of clients while loading and the
+     * complete client on its first access, configured as {@code lazyClients}, see {@link LazyClient}.
+     * Disabled by default.
+     */
+    static boolean isLazyClients() {
+        return Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getBoolean("lazyClients", false);
+    }
+
+    /**
+     * Format the entities are written in, configured as {@code fileFormat}, see {@link EntityCodec}.
+     * Defaults to {@code yaml}. Only files in this format are read into {@link EntityStore}, as their
+     * paths are derived from the ids of the entities. Entity files in another format are skipped with a
+     * warning, see {@link #isInOtherFormat(Path, EntityCodec)}.
+     */
+    public static EntityCodec getFileFormat() {
+        return EntityCodec.forName(Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).get("fileFormat", "yaml"));
+    }
+
+    /**
+     * Interval in milliseconds at which {@link EntityStore} reads the changes other nodes sharing the
+     * root directory made, configured as {@code changeLogInterval}, see {@link ChangeLog}. Disabled by
+     * default, i.e. {@code 0}.
+     */
+    static long getChangeLogInterval() {
+        return Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getLong("changeLogInterval", 0L);
+    }
+
+    /**
+     * Interval in milliseconds at which {@link EntityStore} reads the files changed meanwhile, e.g. by
+     * a ConfigMap rollout, configured as {@code reloadInterval}, see {@link EntityStore#reload()}.
+     * Disabled by default, i.e. {@code 0}.
+     */
+    static long getReloadInterval() {
+        return Config.scope(STORAGE_CONTEXT, STORAGE_TYPE).getLong("reloadInterval", 0L);
+    }
+
+    /**
+     * Realms to load on this node, configured as comma-separated globs {@code includedRealms} and
+     * {@code excludedRealms} and as {@code shardCount} with {@code shardIndex}. The shard index
+     * defaults to the pod ordinal taken from the {@code HOSTNAME} environment variable. The admin realm
+     * is always loaded.
+     */
+    static RealmSelection getRealmSelection() {
+        Config.Scope config = Config.scope(STORAGE_CONTEXT, STORAGE_TYPE);
+        String[] included = config.getArray("includedRealms");
+        String[] excluded = config.getArray("excludedRealms");
+        int shardCount = config.getInt("shardCount", 1);
+        Integer shardIndex = config.getInt("shardIndex");
+        if (shardIndex == null) {
+            shardIndex = shardCount == 1 ? Integer.valueOf(0) : RealmSelection.getOrdinal(System.getenv("HOSTNAME"));
+        }
+        if (shardIndex == null) {
+            throw new IllegalStateException(
+                    "Map Storage shardIndex not configured and no pod ordinal found in HOSTNAME for shardCount "
+                            + shardCount);
+        }
+        return new RealmSelection(
+                Config.getAdminRealm(),
+                included == null ? List.of() : Arrays.asList(included),
+                excluded == null ? List.of() : Arrays.asList(excluded),
+                shardCount,
+                shardIndex);
     }
 
     public static boolean canParseFile(Path p) {
@@ -251,18 +556,41 @@ public class EntityIO {
             return false;
         }
 
-        final String fn = p.getFileName().toString();
+        // the root directory of an archive has no file name
+        final Path fileName = p.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+
+        // the name is checked first, so directories and other files need no system call
+        final String fn = fileName.toString();
+        if (fn.startsWith(".") || !fn.endsWith(getFileFormat().getFileSuffix())) {
+            return false;
+        }
+
         try {
-            return Files.isRegularFile(p)
-                    && Files.size(p) > 0L
-                    && !fn.startsWith(".")
-                    && fn.endsWith(FILE_SUFFIX)
-                    && Files.isReadable(p);
+            BasicFileAttributes attributes = Files.readAttributes(p, BasicFileAttributes.class);
+            return attributes.isRegularFile() && attributes.size() > 0L && Files.isReadable(p);
         } catch (IOException ex) {
             return false;
         }
     }
 
+    /**
+     * Whether the file is in another format than the given one. It is skipped by {@link
+     * #canParseFile(Path)}, so e.g. switching {@code fileFormat} on an existing tree would start with
+     * an empty store.
+     */
+    public static boolean isInOtherFormat(Path p, EntityCodec format) {
+        final Path fileName = p.getFileName();
+        if (fileName == null || fileName.toString().startsWith(".")) {
+            return false;
+        }
+
+        final String fn = fileName.toString();
+        return EntityCodec.ALL.stream().anyMatch(codec -> codec != format && fn.endsWith(codec.getFileSuffix()));
+    }
+
     public static void deleteParentDirectoryIfEmpty(Path directory) throws IOException {
         Path parentDir = directory.getParent();
         while (parentDir != null && isDirectoryEmpty(parentDir)) {
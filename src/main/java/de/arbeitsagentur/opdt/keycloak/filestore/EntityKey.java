@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Single-valued properties of stored entities for which {@link EntityStore} keeps an exact index,
+ * i.e. "which entities of a realm have the given value", so lookups need no scan.
+ */
+public enum EntityKey {
+    /** {@link FileClientEntity#getClientId()}, unique per realm. */
+    CLIENT_ID(FileClientEntity.class, FileClientEntity::getRealmId, FileClientEntity::getClientId),
+
+    /** {@link #TRUE} for clients with {@link FileClientEntity#isAlwaysDisplayInConsole()} set. */
+    CLIENT_ALWAYS_DISPLAY_IN_CONSOLE(
+            FileClientEntity.class,
+            FileClientEntity::getRealmId,
+            e -> Boolean.TRUE.equals(e.isAlwaysDisplayInConsole()) ? EntityKey.TRUE : null);
+
+    public static final String TRUE = "true";
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Function<AbstractEntity, String> valueFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> EntityKey(
+            Class<E> entityType, Function<E, String> realmIdFunc, Function<E, String> valueFunc) {
+        this.entityType = entityType;
+        this.realmIdFunc = (Function<AbstractEntity, String>) realmIdFunc;
+        this.valueFunc = (Function<AbstractEntity, String>) valueFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    String getRealmId(AbstractEntity entity) {
+        return realmIdFunc.apply(entity);
+    }
+
+    Set<String> getKeys(AbstractEntity entity) {
+        String value = valueFunc.apply(entity);
+        return value == null ? Set.of() : Set.of(value);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileComponentEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * References from one stored entity to other entities by id, for which {@link EntityStore} keeps a
+ * reverse index, i.e. "which entities of a realm refer to the given id".
+ */
+public enum EntityReference {
+    /** Role ids in {@link FileClientEntity#getScopeMappings()}. */
+    CLIENT_SCOPE_MAPPING(FileClientEntity.class, FileClientEntity::getRealmId, FileClientEntity::getScopeMappings),
+
+    /** Client scope ids (default and optional) in {@link FileClientEntity#getClientScopes()}. */
+    CLIENT_CLIENT_SCOPE(
+            FileClientEntity.class,
+            FileClientEntity::getRealmId,
+            e -> e.getClientScopes() == null ? null : e.getClientScopes().keySet()),
+
+    /** Role ids in {@link FileRoleEntity#getCompositeRoles()}. */
+    ROLE_COMPOSITE(FileRoleEntity.class, FileRoleEntity::getRealmId, FileRoleEntity::getCompositeRoles),
+
+    /** Client id in {@link FileRoleEntity#getClientId()}. */
+    ROLE_CLIENT(
+            FileRoleEntity.class,
+            FileRoleEntity::getRealmId,
+            e -> e.getClientId() == null ? null : Collections.singleton(e.getClientId())),
+
+    /** Role ids in {@link FileGroupEntity#getGrantedRoles()}. */
+    GROUP_GRANTED_ROLE(FileGroupEntity.class, FileGroupEntity::getRealmId, FileGroupEntity::getGrantedRoles),
+
+    /**
+     * Provider types of {@link FileRealmEntity#getComponents()}. Realms are indexed across the whole
+     * store, i.e. under the realm id {@code null}.
+     */
+    REALM_COMPONENT_PROVIDER_TYPE(
+            FileRealmEntity.class,
+            e -> null,
+            e -> e.getComponents() == null
+                    ? null
+                    : e.getComponents().stream()
+                            .map(FileComponentEntity::getProviderType)
+                            .collect(Collectors.toSet()));
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Function<AbstractEntity, Collection<String>> referencedIdsFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> EntityReference(
+            Class<E> entityType,
+            Function<E, String> realmIdFunc,
+            Function<E, ? extends Collection<String>> referencedIdsFunc) {
+        this.entityType = entityType;
+        this.realmIdFunc = (Function<AbstractEntity, String>) realmIdFunc;
+        this.referencedIdsFunc = (Function<AbstractEntity, Collection<String>>) referencedIdsFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    String getRealmId(AbstractEntity entity) {
+        return realmIdFunc.apply(entity);
+    }
+
+    Collection<String> getReferencedIds(AbstractEntity entity) {
+        return referencedIdsFunc.apply(entity);
+    }
+}
@@ -27,13 +27,28 @@ import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
 
@@ -42,74 +57,277 @@ public final class EntityStore {
 
     private static final Map<Path, AbstractEntity> STORE = new ConcurrentHashMap<>();
     private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final Map<Path, Long> VERSIONS = new ConcurrentHashMap<>();
+    private static long lastVersion;
+    private static final Map<EntityReference, ReferenceIndex> REFERENCES = new EnumMap<>(EntityReference.class);
+    private static final Map<SearchField, ReferenceIndex> SEARCH_INDEXES = new EnumMap<>(SearchField.class);
+    private static final Set<String> INDEXED_ATTRIBUTE_NAMES = EntityIO.getIndexedAttributeNames();
+    private static final Map<IndexedAttributes, ReferenceIndex> ATTRIBUTE_INDEXES =
+            new EnumMap<>(IndexedAttributes.class);
+    private static final Map<EntityKey, ReferenceIndex> KEYS = new EnumMap<>(EntityKey.class);
+    private static final Map<EntityCount, ReferenceIndex> COUNTS = new EnumMap<>(EntityCount.class);
+    private static final Map<EntityExpiration, ExpirationIndex> EXPIRATIONS = new EnumMap<>(EntityExpiration.class);
+    private static final Path ROOT_DIRECTORY = EntityIO.getRootDirectory();
+    private static final boolean LAZY_LOADING = EntityIO.isLazyLoading();
+    private static final Parser PARSER = new Parser(ROOT_DIRECTORY, EntityIO.isLazyClients());
+    private static final Set<String> ENTITY_DIRECTORIES = Set.of("clients", "client-scopes", "groups", "roles");
+    private static final Set<Path> SKIPPED_FILES = ConcurrentHashMap.newKeySet();
+    private static final Map<Path, LazyClient> UNREAD_CLIENTS = new ConcurrentHashMap<>();
+    private static final RealmSelection REALM_SELECTION = EntityIO.getRealmSelection();
+    private static final Map<String, FutureTask<Void>> REALM_LOADS = new ConcurrentHashMap<>();
+    private static final Map<String, Set<Path>> REALM_PATHS = new HashMap<>();
+    private static final ThreadLocal<RealmImport> IMPORT = new ThreadLocal<>();
+    private static final ThreadLocal<Journal> BATCH = new ThreadLocal<>();
+    private static final long CHANGE_LOG_INTERVAL = EntityIO.getChangeLogInterval();
+    private static final ChangeLog CHANGE_LOG = CHANGE_LOG_INTERVAL > 0 ? createChangeLog() : null;
+    private static final long RELOAD_INTERVAL = EntityIO.getReloadInterval();
+    private static volatile Manifest manifest = RELOAD_INTERVAL > 0 ? new Manifest() : null;
 
-    static {
-        Path dataDirectory = EntityIO.getRootDirectory();
-        try (Stream<Path> realmsStream = Files.walk(dataDirectory, 1)) {
-            realmsStream
-                    .filter(EntityIO::canParseFile)
-                    .forEach(path -> STORE.put(path, EntityIO.parseFile(path, FileRealmEntity.class)));
-
-            for (AbstractEntity abstractEntity : STORE.values()) {
-                if (abstractEntity instanceof FileRealmEntity realm) {
-                    Path clients = dataDirectory.resolve(realm.getId()).resolve("clients");
-                    if (clients.toFile().exists()) {
-                        try (Stream<Path> clientsStream = Files.walk(clients, 1)) {
-                            clientsStream.filter(EntityIO::canParseFile).forEach(path -> {
-                                FileClientEntity entity = EntityIO.parseFile(path, FileClientEntity.class);
-                                entity.setRealmId(realm.getId());
-                                STORE.put(path, entity);
-                            });
-                        }
-                    }
+    /**
+     * An entity as read from its file or found in the store. Of lazy clients only the indexed
+     * properties are read, the complete client is read on the first access, see {@link LazyClient}.
+     */
+    private record Parsed(AbstractEntity entity, LazyClient lazyClient) {
+        Parsed(AbstractEntity entity) {
+            this(entity, null);
+        }
+    }
 
-                    Path scopes = dataDirectory.resolve(realm.getId()).resolve("client-scopes");
-                    if (scopes.toFile().exists()) {
-                        try (Stream<Path> clientScopesStream = Files.walk(scopes, 1)) {
-                            clientScopesStream.filter(EntityIO::canParseFile).forEach(path -> {
-                                FileClientScopeEntity entity = EntityIO.parseFile(path, FileClientScopeEntity.class);
-                                entity.setRealmId(realm.getId());
-                                STORE.put(path, entity);
-                            });
-                        }
-                    }
-                    Path groups = dataDirectory.resolve(realm.getId()).resolve("groups");
-                    if (groups.toFile().exists()) {
-                        try (Stream<Path> groupsStream = Files.walk(groups, 1)) {
-                            groupsStream.filter(EntityIO::canParseFile).forEach(path -> {
-                                FileGroupEntity entity = EntityIO.parseFile(path, FileGroupEntity.class);
-                                entity.setRealmId(realm.getId());
-                                STORE.put(path, entity);
-                            });
-                        }
-                    }
+    /**
+     * Parses the files of the realms. Kept out of the methods of {@link EntityStore}, as the realms are
+     * parsed in parallel while it is being initialized, and other threads calling any of its methods
+     * would wait for that to finish.
+     */
+    private record Parser(Path rootDirectory, boolean lazyClients) {
 
-                    Path roles = dataDirectory.resolve(realm.getId()).resolve("roles");
-                    if (roles.toFile().exists()) {
-                        try (Stream<Path> rolesStream =
-                                Files.walk(roles, 10)) { // can be deeply nested because of composite roles
-                            rolesStream.filter(EntityIO::canParseFile).forEach(path -> {
-                                FileRoleEntity entity = EntityIO.parseFile(path, FileRoleEntity.class);
-                                entity.setRealmId(realm.getId());
-                                STORE.put(path, entity);
-                            });
-                        }
+        /** Parses the files in parallel, in the order of the paths. */
+        List<Parsed> parse(List<Path> paths, String realmId) {
+            return paths.parallelStream().map(path -> parse(path, realmId)).toList();
+        }
+
+        /** Parses the client, client scope, group or role of the realm, {@code null} for other files. */
+        Parsed parse(Path path, String realmId) {
+            String directory = path.getName(rootDirectory.getNameCount() + 1).toString();
+            switch (directory) {
+                case "clients" -> {
+                    if (lazyClients && EntityCodec.forFile(path) == EntityCodec.YAML) {
+                        LazyClient lazyClient = new LazyClient(path, realmId);
+                        return new Parsed(lazyClient.getKeys(), lazyClient);
                     }
+                    FileClientEntity entity = EntityIO.parseFile(path, FileClientEntity.class);
+                    entity.setRealmId(realmId);
+                    return new Parsed(entity);
+                }
+                case "client-scopes" -> {
+                    FileClientScopeEntity entity = EntityIO.parseFile(path, FileClientScopeEntity.class);
+                    entity.setRealmId(realmId);
+                    return new Parsed(entity);
+                }
+                case "groups" -> {
+                    FileGroupEntity entity = EntityIO.parseFile(path, FileGroupEntity.class);
+                    entity.setRealmId(realmId);
+                    return new Parsed(entity);
+                }
+                case "roles" -> {
+                    FileRoleEntity entity = EntityIO.parseFile(path, FileRoleEntity.class);
+                    entity.setRealmId(realmId);
+                    return new Parsed(entity);
+                }
+                default -> {
+                    return null;
                 }
             }
+        }
+    }
+
+    static {
+        for (EntityReference reference : EntityReference.values()) {
+            REFERENCES.put(reference, new ReferenceIndex(reference));
+        }
+        for (SearchField field : SearchField.values()) {
+            SEARCH_INDEXES.put(field, new ReferenceIndex(field));
+        }
+        for (IndexedAttributes attributes : IndexedAttributes.values()) {
+            ATTRIBUTE_INDEXES.put(attributes, new ReferenceIndex(attributes, EntityStore::isIndexedAttribute));
+        }
+        for (EntityKey key : EntityKey.values()) {
+            KEYS.put(key, new ReferenceIndex(key));
+        }
+        for (EntityCount count : EntityCount.values()) {
+            COUNTS.put(count, new ReferenceIndex(count));
+        }
+        for (EntityExpiration expiration : EntityExpiration.values()) {
+            EXPIRATIONS.put(expiration, new ExpirationIndex(expiration));
+        }
+    }
 
+    static {
+        try (Stream<Path> realmsStream = Files.walk(ROOT_DIRECTORY, 1)) {
+            Journal.recover(ROOT_DIRECTORY);
+            Tombstones.clear(ROOT_DIRECTORY);
+            realmsStream.filter(EntityStore::canParseFile).forEach(path -> {
+                FileRealmEntity realm = EntityIO.parseFile(path, FileRealmEntity.class);
+                if (REALM_SELECTION.isSelected(realm.getId())) {
+                    put(path, realm);
+                    recordRealm(path);
+                } else {
+                    LOG.debugf("Skipping realm %s, it is not selected for this node", realm.getId());
+                }
+            });
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        if (!LAZY_LOADING) {
+            for (String realmId : getRealmIds()) {
+                loadRealm(realmId).forEach(EntityStore::put);
+            }
+        }
+
+        if (CHANGE_LOG != null) {
+            schedule("filestore-change-log", CHANGE_LOG_INTERVAL, () -> {
+                List<ChangeLog.Change> changes = CHANGE_LOG.poll();
+                if (changes != null) {
+                    applyChanges(changes);
+                } else {
+                    LOG.warn("Changes of other nodes were dropped before they were read, reading all files again");
+                    reload();
+                }
+            });
+        }
+        if (RELOAD_INTERVAL > 0) {
+            schedule("filestore-reload", RELOAD_INTERVAL, EntityStore::reload);
+        }
+    }
+
+    /**
+     * Parses the clients, client scopes, groups and roles of a realm. Only the realm files are read at
+     * startup if {@link EntityIO#isLazyLoading() lazy loading} is enabled, so this runs on the first
+     * access to the realm.
+     */
+    private static Map<Path, Parsed> loadRealm(String realmId) {
+        Path realmDirectory = ROOT_DIRECTORY.resolve(realmId);
+        Map<Path, Parsed> entities = new LinkedHashMap<>();
+        load(realmDirectory.resolve("clients"), 1, entities, realmId);
+        load(realmDirectory.resolve("client-scopes"), 1, entities, realmId);
+        load(realmDirectory.resolve("groups"), 1, entities, realmId);
+        // can be deeply nested because of composite roles
+        load(realmDirectory.resolve("roles"), 10, entities, realmId);
+        return entities;
+    }
+
+    /**
+     * Parses the files in parallel, which is safe as every file gets its own parser and the
+     * deduplication of strings and configs is thread-safe. The entities are added in the order of the
+     * walk, so they are iterated the same way as when parsed one after the other.
+     */
+    private static void load(Path directory, int maxDepth, Map<Path, Parsed> entities, String realmId) {
+        List<Path> paths = listFiles(directory, maxDepth);
+        List<Parsed> parsed = PARSER.parse(paths, realmId);
+        for (int i = 0; i < paths.size(); i++) {
+            entities.put(paths.get(i), parsed.get(i));
+            record(paths.get(i));
+        }
+    }
+
+    /** Parses the client, client scope, group or role of the realm, {@code null} for other files. */
+    private static Parsed parse(Path path, String realmId) {
+        return PARSER.parse(path, realmId);
+    }
+
+    /**
+     * Loads the realm's entities unless they are already loaded. Concurrent first accesses wait for
+     * the same load. Must not be called while holding the lock.
+     */
+    private static void ensureLoaded(String realmId) {
+        if (!LAZY_LOADING || realmId == null) {
+            return;
+        }
+
+        FutureTask<Void> load = REALM_LOADS.get(realmId);
+        if (load == null) {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                Map<Path, Parsed> entities = loadRealm(realmId);
+                LOCK.writeLock().lock();
+                try {
+                    entities.forEach(EntityStore::put);
+                } finally {
+                    LOCK.writeLock().unlock();
+                }
+                return null;
+            });
+            load = REALM_LOADS.putIfAbsent(realmId, task);
+            if (load == null) {
+                load = task;
+                task.run();
+            }
+        }
+
+        try {
+            load.get();
+        } catch (ExecutionException e) {
+            REALM_LOADS.remove(realmId, load);
+            throw new RuntimeException("Could not load realm " + realmId, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void ensureAllLoaded() {
+        if (LAZY_LOADING) {
+            getRealmIds().forEach(EntityStore::ensureLoaded);
+        }
+    }
+
+    private static List<String> getRealmIds() {
+        LOCK.readLock().lock();
+
+        try {
+            return STORE.values().stream()
+                    .filter(FileRealmEntity.class::isInstance)
+                    .map(AbstractEntity::getId)
+                    .toList();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /** Id of the realm a sub-entity like a client belongs to, {@code null} for realms themselves. */
+    private static String getRealmId(Path path) {
+        int rootNameCount = ROOT_DIRECTORY.getNameCount();
+        if (!path.startsWith(ROOT_DIRECTORY) || path.getNameCount() <= rootNameCount + 1) {
+            return null;
+        }
+        return path.getName(rootNameCount).toString();
     }
 
     public static void delete(Path path) {
+        checkWritable();
+        ensureLoaded(getRealmId(path));
+        RealmImport realmImport = IMPORT.get();
+        boolean pending = realmImport != null && realmImport.discard(path);
+        Journal batch = BATCH.get();
         LOCK.writeLock().lock();
 
         try {
-            STORE.remove(path);
-            Files.delete(path);
+            boolean realm = STORE.get(path) instanceof FileRealmEntity;
+            remove(path);
+            if (batch != null) {
+                batch.delete(path, realm);
+                return;
+            }
+            if (realm) {
+                RealmSections.delete(path);
+            }
+            if (pending) {
+                // might have been created during the import only
+                Files.deleteIfExists(path);
+            } else {
+                Files.delete(path);
+            }
             EntityIO.deleteParentDirectoryIfEmpty(path);
+            logChanges(Map.of(path, ChangeLog.Operation.DELETE));
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
@@ -117,11 +335,186 @@ public final class EntityStore {
         }
     }
 
+    /**
+     * Deletes the entities at the given paths, e.g. the roles of a client, taking the lock once.
+     * Directories left empty are only checked once each.
+     */
+    public static void delete(Collection<Path> paths) {
+        checkWritable();
+        paths.stream().map(EntityStore::getRealmId).distinct().forEach(EntityStore::ensureLoaded);
+        RealmImport realmImport = IMPORT.get();
+        Journal batch = BATCH.get();
+        LOCK.writeLock().lock();
+
+        try {
+            Map<Path, Path> byDirectory = new LinkedHashMap<>();
+            for (Path path : paths) {
+                if (realmImport != null) {
+                    realmImport.discard(path);
+                }
+                remove(path);
+                if (batch != null) {
+                    batch.delete(path, false);
+                    continue;
+                }
+                Files.deleteIfExists(path);
+                byDirectory.putIfAbsent(path.getParent(), path);
+            }
+            for (Path path : byDirectory.values()) {
+                EntityIO.deleteParentDirectoryIfEmpty(path);
+            }
+            if (batch == null) {
+                Map<Path, ChangeLog.Operation> changes = new LinkedHashMap<>();
+                paths.forEach(path -> changes.put(path, ChangeLog.Operation.DELETE));
+                logChanges(changes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes all entities below a directory of a realm, e.g. all of its roles, taking the lock once.
+     * The directory is moved to a tombstone right away and deleted in the background, see {@link
+     * Tombstones}.
+     */
+    public static void deleteDirectory(Path directory) {
+        checkWritable();
+        String realmId = getRealmId(directory);
+        Journal batch = BATCH.get();
+        // the files of a realm that was never loaded are deleted without reading them first
+        boolean unloaded = realmId != null && LAZY_LOADING && batch == null && !REALM_LOADS.containsKey(realmId);
+        if (!unloaded) {
+            ensureLoaded(realmId);
+        }
+        RealmImport realmImport = IMPORT.get();
+        LOCK.writeLock().lock();
+
+        try {
+            List<Path> paths = getPaths(realmId, directory);
+            for (Path path : paths) {
+                if (realmImport != null) {
+                    realmImport.discard(path);
+                }
+                remove(path);
+            }
+            if (batch != null) {
+                batch.deleteDirectory(directory);
+                return;
+            }
+            Tombstones.bury(ROOT_DIRECTORY, directory);
+            EntityIO.deleteParentDirectoryIfEmpty(directory);
+            logChanges(Map.of(directory, ChangeLog.Operation.DELETE_DIRECTORY));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+
+        if (unloaded && REALM_LOADS.containsKey(realmId)) {
+            // a load started meanwhile may have read the files before they were deleted
+            ensureLoaded(realmId);
+            LOCK.writeLock().lock();
+            try {
+                getPaths(realmId, directory).forEach(EntityStore::remove);
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Paths of the realm's entities in the directory, must be called while holding the lock. */
+    private static List<Path> getPaths(String realmId, Path directory) {
+        return REALM_PATHS.getOrDefault(realmId, Set.of()).stream()
+                .filter(path -> path.startsWith(directory))
+                .toList();
+    }
+
     public static <E extends AbstractEntity & UpdatableEntity> void write(Path path, E entity) {
+        checkWritable();
+        ensureLoaded(getRealmId(path));
+        RealmImport realmImport = IMPORT.get();
+        Journal batch = BATCH.get();
+        LOCK.writeLock().lock();
+        try {
+            if (realmImport != null && realmImport.covers(path)) {
+                realmImport.add(path, entity);
+            } else if (batch != null) {
+                batch.write(path, entity);
+            } else {
+                EntityIO.writeToFile(entity, path);
+                logChanges(Map.of(path, ChangeLog.Operation.WRITE));
+            }
+            put(path, entity);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs the import of a realm. The realm's entities written by this thread meanwhile are only put
+     * into the store, their files are written together once the import is done, see {@link
+     * RealmImport}. If the import fails, no file is written and the entities are read again from
+     * their files. Imports running inside an import are part of it.
+     */
+    public static void importRealm(String realmId, Runnable importer) {
+        if (IMPORT.get() != null) {
+            importer.run();
+            return;
+        }
+
+        RealmImport realmImport = new RealmImport(ROOT_DIRECTORY, realmId);
+        IMPORT.set(realmImport);
+        try {
+            importer.run();
+        } catch (RuntimeException | Error e) {
+            rollback(realmImport.getPaths(), e);
+            throw e;
+        } finally {
+            IMPORT.remove();
+        }
+        publish(realmImport);
+    }
+
+    /**
+     * Runs an operation changing several files that belong together as one batch, so they are all
+     * changed or none of them is, see {@link Journal}. Entities are changed in memory right away. If
+     * the operation fails, no file is changed and the entities are read again from their files.
+     * Batches running inside a batch are part of it.
+     */
+    public static void batch(Runnable operation) {
+        if (BATCH.get() != null) {
+            operation.run();
+            return;
+        }
+
+        Journal batch = new Journal(ROOT_DIRECTORY);
+        BATCH.set(batch);
+        try {
+            operation.run();
+        } catch (RuntimeException | Error e) {
+            Set<Path> paths = new LinkedHashSet<>();
+            batch.getChanges().forEach((path, change) -> {
+                if (change == ChangeLog.Operation.DELETE_DIRECTORY) {
+                    paths.addAll(listFiles(path, 10));
+                } else {
+                    paths.add(path);
+                }
+            });
+            rollback(paths, e);
+            throw e;
+        } finally {
+            BATCH.remove();
+        }
+
         LOCK.writeLock().lock();
         try {
-            EntityIO.writeToFile(entity, path);
-            STORE.put(path, entity);
+            batch.commit();
+            logChanges(batch.getChanges());
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
@@ -129,26 +522,732 @@ public final class EntityStore {
         }
     }
 
+    /**
+     * Reads the entities changed by a failed batch or import again, as their files were left unchanged.
+     * Entities without a file are removed. Failures are added to the one of the operation.
+     */
+    private static void rollback(Collection<Path> paths, Throwable failure) {
+        try {
+            Set<Path> existing = new LinkedHashSet<>();
+            List<Path> missing = new ArrayList<>();
+            for (Path path : paths) {
+                if (Files.exists(path)) {
+                    existing.add(path);
+                } else {
+                    missing.add(path);
+                }
+            }
+            reload(existing);
+            LOCK.writeLock().lock();
+            try {
+                missing.stream().filter(STORE::containsKey).forEach(EntityStore::remove);
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void publish(RealmImport realmImport) {
+        try {
+            Path stagingDirectory = realmImport.stage();
+            LOCK.writeLock().lock();
+            try {
+                realmImport.publish(stagingDirectory);
+                Map<Path, ChangeLog.Operation> changes = new LinkedHashMap<>();
+                realmImport.getPaths().forEach(path -> changes.put(path, ChangeLog.Operation.WRITE));
+                logChanges(changes);
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void checkWritable() {
+        if (Archive.contains(ROOT_DIRECTORY)) {
+            throw new ReadOnlyFileSystemException();
+        }
+    }
+
+    private static ChangeLog createChangeLog() {
+        try {
+            // nodes not reading the log for a while are considered gone
+            long staleAfter = Math.max(TimeUnit.MINUTES.toMillis(10), 100 * CHANGE_LOG_INTERVAL);
+            return new ChangeLog(ROOT_DIRECTORY, UUID.randomUUID().toString(), staleAfter, ChangeLog.ROTATION_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Tells the other nodes sharing the root directory about files changed by this node, and records
+     * them so they are not read again on reload.
+     */
+    private static void logChanges(Map<Path, ChangeLog.Operation> changes) {
+        recordChanges(changes);
+        if (CHANGE_LOG == null) {
+            return;
+        }
+
+        try {
+            CHANGE_LOG.append(changes);
+        } catch (IOException e) {
+            LOG.warnf(e, "Could not log changes of %d files for other nodes", changes.size());
+        }
+    }
+
+    private static void schedule(String name, long interval, ThrowingRunnable task) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        LOG.warnf(e, "%s failed", name);
+                    }
+                },
+                interval,
+                interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    /**
+     * Updates the store with files changed by other nodes, re-reading only those. Entities of realms
+     * which were not loaded yet are read with the realm.
+     */
+    static void applyChanges(List<ChangeLog.Change> changes) {
+        for (ChangeLog.Change change : changes) {
+            Path path = change.path();
+            String realmId = getRealmId(path);
+            if (realmId != null && LAZY_LOADING && !REALM_LOADS.containsKey(realmId)) {
+                continue;
+            }
+
+            // entities written by this node while parsing are newer than the files read
+            Map<Path, Long> versions = new HashMap<>();
+            if (change.operation() == ChangeLog.Operation.DELETE_DIRECTORY) {
+                LOCK.readLock().lock();
+                try {
+                    REALM_PATHS.getOrDefault(realmId, Set.of()).stream()
+                            .filter(p -> p.startsWith(path))
+                            .forEach(p -> versions.put(p, VERSIONS.getOrDefault(p, 0L)));
+                } finally {
+                    LOCK.readLock().unlock();
+                }
+            } else {
+                versions.put(path, VERSIONS.getOrDefault(path, 0L));
+            }
+            Parsed entity = null;
+            if (change.operation() == ChangeLog.Operation.WRITE && EntityIO.canParseFile(path)) {
+                try {
+                    if (realmId == null) {
+                        RealmSections.forget(path);
+                        FileRealmEntity realm = EntityIO.parseFile(path, FileRealmEntity.class);
+                        entity = REALM_SELECTION.isSelected(realm.getId()) ? new Parsed(realm) : null;
+                    } else {
+                        entity = parse(path, realmId);
+                    }
+                } catch (IllegalStateException e) {
+                    // written again meanwhile, which is logged as another change
+                    LOG.debugf(e, "Skipping change %d of %s", change.sequence(), path);
+                    continue;
+                }
+            }
+
+            LOCK.writeLock().lock();
+            try {
+                if (change.operation() == ChangeLog.Operation.DELETE_DIRECTORY) {
+                    versions.forEach((p, version) -> {
+                        if (isUnchanged(p, version)) {
+                            remove(p);
+                        }
+                    });
+                } else if (!isUnchanged(path, versions.get(path))) {
+                    LOG.debugf("Skipping change %d of %s, it was written meanwhile", change.sequence(), path);
+                } else if (entity != null) {
+                    put(path, entity);
+                } else if (STORE.containsKey(path)) {
+                    remove(path);
+                }
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+            recordChanges(Map.of(path, change.operation()));
+        }
+    }
+
+    /**
+     * Reads the files changed since they were read, e.g. by a ConfigMap rollout, and updates the store
+     * at once. Only files with a new checksum are parsed again, see {@link Manifest}. The first reload
+     * parses all files if {@code reloadInterval} is not configured, as they were not recorded on load.
+     */
+    public static ReloadStats reload() {
+        long start = System.nanoTime();
+        if (manifest == null) {
+            manifest = new Manifest();
+        }
+        Manifest current = manifest;
+        Set<Path> unseen = current.getPaths();
+        int[] scanned = {0};
+        Set<Path> changed = new LinkedHashSet<>();
+        BiConsumer<Path, Path> scan = (file, entityFile) -> {
+            scanned[0]++;
+            unseen.remove(file);
+            try {
+                if (current.update(file)) {
+                    changed.add(entityFile);
+                }
+            } catch (IOException e) {
+                LOG.debugf(e, "Skipping %s, it changed while reloading", file);
+            }
+        };
+
+        // realms first, as their clients etc. are only read for the loaded ones
+        Map<Path, Path> realmFilesBySection = new HashMap<>();
+        for (Path realmFile : listFiles(ROOT_DIRECTORY, 1)) {
+            scan.accept(realmFile, realmFile);
+            for (Path directory : RealmSections.getDirectories(realmFile)) {
+                realmFilesBySection.put(directory, realmFile);
+                listFiles(directory, 1).forEach(section -> scan.accept(section, realmFile));
+            }
+        }
+        unseen.stream()
+                .map(path -> realmFilesBySection.get(path.getParent()))
+                .filter(Objects::nonNull)
+                .forEach(changed::add);
+        int parsed = reload(changed);
+        int changedFiles = changed.size();
+
+        changed.clear();
+        for (String realmId : getRealmIds()) {
+            if (LAZY_LOADING && !REALM_LOADS.containsKey(realmId)) {
+                continue;
+            }
+            Path realmDirectory = ROOT_DIRECTORY.resolve(realmId);
+            for (String directory : List.of("clients", "client-scopes", "groups")) {
+                listFiles(realmDirectory.resolve(directory), 1).forEach(path -> scan.accept(path, path));
+            }
+            listFiles(realmDirectory.resolve("roles"), 10).forEach(path -> scan.accept(path, path));
+        }
+        parsed += reload(changed);
+        changedFiles += changed.size();
+
+        LOCK.writeLock().lock();
+        try {
+            for (Path path : unseen) {
+                if (STORE.containsKey(path)) {
+                    remove(path);
+                }
+                current.forget(path);
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+
+        ReloadStats stats = new ReloadStats(
+                scanned[0], changedFiles + unseen.size(), parsed, (System.nanoTime() - start) / 1_000_000);
+        if (stats.changed() > 0) {
+            LOG.infof("Reloaded %s", stats);
+        } else {
+            LOG.debugf("Reloaded %s", stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Parses the changed files and puts them into the store, returns the number of files parsed.
+     * Entities written meanwhile are kept, as they are newer than the files read.
+     */
+    private static int reload(Set<Path> paths) {
+        Map<Path, Parsed> entities = new LinkedHashMap<>();
+        Map<Path, Long> versions = new HashMap<>();
+        for (Path path : paths) {
+            versions.put(path, VERSIONS.getOrDefault(path, 0L));
+            String realmId = getRealmId(path);
+            try {
+                if (realmId == null) {
+                    RealmSections.forget(path);
+                    FileRealmEntity realm = EntityIO.parseFile(path, FileRealmEntity.class);
+                    entities.put(path, REALM_SELECTION.isSelected(realm.getId()) ? new Parsed(realm) : null);
+                } else {
+                    entities.put(path, parse(path, realmId));
+                }
+            } catch (IllegalStateException e) {
+                LOG.warnf(e, "Could not reload %s", path);
+                Manifest current = manifest;
+                if (current != null) {
+                    current.forget(path);
+                }
+            }
+        }
+
+        LOCK.writeLock().lock();
+        try {
+            entities.forEach((path, entity) -> {
+                if (!isUnchanged(path, versions.get(path))) {
+                    LOG.debugf("Skipping %s, it was written meanwhile", path);
+                } else if (entity != null) {
+                    put(path, entity);
+                } else if (STORE.containsKey(path)) {
+                    remove(path);
+                }
+            });
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        return entities.size();
+    }
+
+    /** Whether the entity at the path was not written or deleted since it had the given version. */
+    private static boolean isUnchanged(Path path, long version) {
+        return VERSIONS.getOrDefault(path, 0L) == version;
+    }
+
+    private static List<Path> listFiles(Path directory, int maxDepth) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> stream = Files.walk(directory, maxDepth)) {
+            return stream.filter(EntityStore::canParseFile).toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Whether the path is an entity file. Files of clients, client scopes, groups and roles in another
+     * format than the configured one are skipped with a warning, other files silently.
+     */
+    private static boolean canParseFile(Path path) {
+        EntityCodec format = EntityIO.getFileFormat();
+        if (isInEntityDirectory(path) && EntityIO.isInOtherFormat(path, format)) {
+            if (SKIPPED_FILES.add(path)) {
+                LOG.warnf("Skipping %s, it is not in the configured Map Storage fileFormat %s", path, format.getName());
+            }
+            return false;
+        }
+        return EntityIO.canParseFile(path);
+    }
+
+    private static boolean isInEntityDirectory(Path path) {
+        int rootNameCount = ROOT_DIRECTORY.getNameCount();
+        return path.startsWith(ROOT_DIRECTORY)
+                && path.getNameCount() > rootNameCount + 2
+                && ENTITY_DIRECTORIES.contains(path.getName(rootNameCount + 1).toString());
+    }
+
+    private static void record(Path path) {
+        Manifest current = manifest;
+        if (current != null) {
+            current.record(path);
+        }
+    }
+
+    /** Records a realm file including the files of its sections. */
+    private static void recordRealm(Path realmFile) {
+        Manifest current = manifest;
+        if (current == null) {
+            return;
+        }
+
+        current.record(realmFile);
+        for (Path directory : RealmSections.getDirectories(realmFile)) {
+            current.forgetDirectory(directory);
+            listFiles(directory, 1).forEach(current::record);
+        }
+    }
+
+    private static void recordChanges(Map<Path, ChangeLog.Operation> changes) {
+        Manifest current = manifest;
+        if (current == null) {
+            return;
+        }
+
+        changes.forEach((path, operation) -> {
+            boolean realmFile = getRealmId(path) == null;
+            switch (operation) {
+                case WRITE -> {
+                    if (realmFile) {
+                        recordRealm(path);
+                    } else {
+                        current.record(path);
+                    }
+                }
+                case DELETE -> {
+                    current.forget(path);
+                    if (realmFile) {
+                        RealmSections.getDirectories(path).forEach(current::forgetDirectory);
+                    }
+                }
+                case DELETE_DIRECTORY -> current.forgetDirectory(path);
+            }
+        });
+    }
+
+    /** Whether there is an entity at the path, taking changes of a running import or batch into account. */
+    public static boolean exists(Path path) {
+        Journal batch = BATCH.get();
+        if (batch != null && batch.isDeleted(path)) {
+            return false;
+        }
+        return STORE.containsKey(path) || Files.exists(path);
+    }
+
     public static <E extends AbstractEntity & UpdatableEntity> List<E> getAll(Class<E> interfaceOfEntity) {
+        if (interfaceOfEntity != FileRealmEntity.class) {
+            ensureAllLoaded();
+        }
+        List<Parsed> found;
         LOCK.readLock().lock();
 
         try {
-            return STORE.values().stream()
-                    .filter(v -> interfaceOfEntity.isAssignableFrom(v.getClass()))
-                    .map(interfaceOfEntity::cast)
-                    .collect(Collectors.toCollection(ArrayList::new));
+            found = STORE.keySet().stream()
+                    .map(EntityStore::lookup)
+                    .filter(parsed -> parsed != null && interfaceOfEntity.isInstance(parsed.entity()))
+                    .toList();
         } finally {
             LOCK.readLock().unlock();
         }
+        return resolve(found);
+    }
+
+    /** Returns all entities of the given type belonging to the given realm, excluding the realm itself. */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getAll(
+            Class<E> interfaceOfEntity, String realmId) {
+        ensureLoaded(realmId);
+        List<Parsed> found;
+        LOCK.readLock().lock();
+
+        try {
+            found = REALM_PATHS.getOrDefault(realmId, Set.of()).stream()
+                    .map(EntityStore::lookup)
+                    .filter(parsed -> parsed != null && interfaceOfEntity.isInstance(parsed.entity()))
+                    .toList();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
+    }
+
+    /**
+     * Returns a page of the entities of the given type belonging to the given realm, in the given
+     * order. Only the entities of the page are resolved, so {@code order} must only compare properties
+     * indexed for {@link LazyClient lazy clients}, e.g. the client id.
+     */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getAll(
+            Class<E> interfaceOfEntity, String realmId, Comparator<? super E> order, int first, int max) {
+        ensureLoaded(realmId);
+        List<Parsed> found;
+        LOCK.readLock().lock();
+
+        try {
+            found = REALM_PATHS.getOrDefault(realmId, Set.of()).stream()
+                    .map(EntityStore::lookup)
+                    .filter(parsed -> parsed != null && interfaceOfEntity.isInstance(parsed.entity()))
+                    .sorted(Comparator.comparing(parsed -> interfaceOfEntity.cast(parsed.entity()), order))
+                    .skip(Math.max(first, 0))
+                    .limit(max < 0 ? Long.MAX_VALUE : max)
+                    .toList();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
     }
 
     public static <E extends AbstractEntity & UpdatableEntity> E get(Path fileName) {
+        ensureLoaded(getRealmId(fileName));
+        Parsed found;
+        LOCK.readLock().lock();
+
+        try {
+            found = lookup(fileName);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return found == null ? null : (E) resolve(found);
+    }
+
+    /** Returns all entities of the given realm having the given value of {@code key}, without a scan. */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getByKey(
+            EntityKey key, String realmId, String value) {
+        ensureLoaded(realmId);
+        List<Parsed> found;
+        LOCK.readLock().lock();
+
+        try {
+            found = KEYS.get(key).get(realmId, value).stream()
+                    .map(EntityStore::lookup)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
+    }
+
+    /**
+     * Returns all entities of the given realm that hold the given {@code reference} to {@code
+     * referencedId}, without scanning the whole store.
+     */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getReferencing(
+            EntityReference reference, String realmId, String referencedId) {
+        ensureLoaded(realmId);
+        List<Parsed> found;
+        LOCK.readLock().lock();
+
+        try {
+            found = REFERENCES.get(reference).get(realmId, referencedId).stream()
+                    .map(EntityStore::lookup)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
+    }
+
+    /** Returns the number of entities of the given realm holding the given {@code reference}. */
+    public static int countReferencing(EntityReference reference, String realmId, String referencedId) {
+        ensureLoaded(realmId);
+        LOCK.readLock().lock();
+
+        try {
+            return REFERENCES.get(reference).get(realmId, referencedId).size();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a number that changes on every write or delete of the entity stored at {@code path}, or
+     * {@code 0} if there is none. Can be used to validate data derived from the entity.
+     */
+    public static long getVersion(Path path) {
+        ensureLoaded(getRealmId(path));
+        return VERSIONS.getOrDefault(path, 0L);
+    }
+
+    /** Returns the number of entities of the given realm counted by {@code count}, without a scan. */
+    public static long count(EntityCount count, String realmId) {
+        ensureLoaded(realmId);
+        LOCK.readLock().lock();
+
+        try {
+            return COUNTS.get(count).get(realmId, EntityCount.KEY).size();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all entities having an {@code expiration} before {@code time}, earliest first, without a
+     * scan. Entities with nothing expired are not returned.
+     */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getExpired(
+            EntityExpiration expiration, long time) {
+        List<Parsed> found;
         LOCK.readLock().lock();
 
         try {
-            return (E) STORE.get(fileName);
+            found = EXPIRATIONS.get(expiration).getExpired(time).stream()
+                    .map(EntityStore::lookup)
+                    .filter(Objects::nonNull)
+                    .toList();
         } finally {
             LOCK.readLock().unlock();
         }
+        return resolve(found);
+    }
+
+    /**
+     * Returns the entities of the given realm whose {@code field} may match the LIKE pattern {@code
+     * %term%}, i.e. contain all trigrams of the term. The result can contain false positives, callers
+     * still have to apply {@link SearchPatterns}. Returns {@code null} if the term is too short to use
+     * the index.
+     */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getSearchCandidates(
+            SearchField field, String realmId, String term) {
+        Set<String> trigrams = SearchField.getTrigrams(term);
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+
+        ensureLoaded(realmId);
+        List<Parsed> found = new ArrayList<>();
+        LOCK.readLock().lock();
+
+        try {
+            ReferenceIndex index = SEARCH_INDEXES.get(field);
+            List<Set<Path>> postings = trigrams.stream()
+                    .map(trigram -> index.get(realmId, trigram))
+                    .sorted(Comparator.comparingInt(Set::size))
+                    .toList();
+            for (Path path : postings.get(0)) {
+                if (postings.stream().allMatch(paths -> paths.contains(path))) {
+                    Parsed parsed = lookup(path);
+                    if (parsed != null) {
+                        found.add(parsed);
+                    }
+                }
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
+    }
+
+    /**
+     * Returns the entities of the given realm having all the given attribute values. The candidates are
+     * taken from the smallest posting list of the indexed attribute names, the remaining attributes are
+     * checked on the candidates. Returns {@code null} if none of the attribute values is indexed, i.e.
+     * no attribute name is indexed or the values exceed {@link IndexedAttributes#MAX_VALUE_LENGTH}.
+     */
+    public static <E extends AbstractEntity & UpdatableEntity> List<E> getByAttributes(
+            IndexedAttributes attributes, String realmId, Map<String, String> values) {
+        ensureLoaded(realmId);
+        List<Parsed> found = new ArrayList<>();
+        LOCK.readLock().lock();
+
+        try {
+            ReferenceIndex index = ATTRIBUTE_INDEXES.get(attributes);
+            Set<Path> smallest = null;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                if (isIndexedAttribute(entry.getKey()) && IndexedAttributes.isIndexedValue(entry.getValue())) {
+                    Set<Path> paths = index.get(realmId, IndexedAttributes.key(entry.getKey(), entry.getValue()));
+                    if (smallest == null || paths.size() < smallest.size()) {
+                        smallest = paths;
+                    }
+                }
+            }
+            if (smallest == null) {
+                return null;
+            }
+
+            for (Path path : smallest) {
+                Parsed parsed = lookup(path);
+                if (parsed != null
+                        && values.entrySet().stream()
+                                .allMatch(e -> attributes.hasAttribute(parsed.entity(), e.getKey(), e.getValue()))) {
+                    found.add(parsed);
+                }
+            }
+        } finally {
+            LOCK.readLock().unlock();
+        }
+        return resolve(found);
+    }
+
+    private static boolean isIndexedAttribute(String name) {
+        return INDEXED_ATTRIBUTE_NAMES.contains(name);
+    }
+
+    /**
+     * The entity at the path, with the lazy client to read if only its indexed properties were read.
+     * Must be called while holding the lock, as writers change both maps.
+     */
+    private static Parsed lookup(Path path) {
+        AbstractEntity entity = STORE.get(path);
+        if (entity == null) {
+            return null;
+        }
+        LazyClient lazyClient = UNREAD_CLIENTS.get(path);
+        // the complete client may already replace the keys while the lazy client is being removed
+        return lazyClient != null && lazyClient.getKeys() == entity
+                ? new Parsed(entity, lazyClient)
+                : new Parsed(entity);
+    }
+
+    /**
+     * The entities found, reading lazy clients completely first, see {@link LazyClient}. Called without
+     * the lock, so files are not read while blocking writers.
+     */
+    private static <E extends AbstractEntity> List<E> resolve(List<Parsed> found) {
+        List<E> entities = new ArrayList<>(found.size());
+        for (Parsed parsed : found) {
+            entities.add((E) resolve(parsed));
+        }
+        return entities;
+    }
+
+    private static AbstractEntity resolve(Parsed parsed) {
+        LazyClient lazyClient = parsed.lazyClient();
+        if (lazyClient == null) {
+            return parsed.entity();
+        }
+
+        FileClientEntity client = lazyClient.get();
+        // only replaces the keys, a client written or removed meanwhile stays as it is
+        if (STORE.replace(lazyClient.getPath(), lazyClient.getKeys(), client)) {
+            UNREAD_CLIENTS.remove(lazyClient.getPath(), lazyClient);
+        }
+        return client;
+    }
+
+    /** Whether the entities of the realm are loaded or being loaded, always the case without lazy loading. */
+    static boolean isLoaded(String realmId) {
+        return !LAZY_LOADING || REALM_LOADS.containsKey(realmId);
+    }
+
+    /** Whether the entity at the path was read completely, i.e. it is no unread {@link LazyClient}. */
+    static boolean isRead(Path path) {
+        return !UNREAD_CLIENTS.containsKey(path);
+    }
+
+    private static void put(Path path, Parsed parsed) {
+        put(path, parsed.entity(), parsed.lazyClient());
+    }
+
+    private static void put(Path path, AbstractEntity entity) {
+        put(path, entity, null);
+    }
+
+    private static void put(Path path, AbstractEntity entity, LazyClient lazyClient) {
+        if (lazyClient != null) {
+            UNREAD_CLIENTS.put(path, lazyClient);
+        } else {
+            UNREAD_CLIENTS.remove(path);
+        }
+        STORE.put(path, entity);
+        String realmId = getRealmId(path);
+        if (realmId != null) {
+            REALM_PATHS.computeIfAbsent(realmId, k -> new LinkedHashSet<>()).add(path);
+        }
+        VERSIONS.put(path, ++lastVersion);
+        REFERENCES.values().forEach(index -> index.put(path, entity));
+        KEYS.values().forEach(index -> index.put(path, entity));
+        SEARCH_INDEXES.values().forEach(index -> index.put(path, entity));
+        ATTRIBUTE_INDEXES.values().forEach(index -> index.put(path, entity));
+        COUNTS.values().forEach(index -> index.put(path, entity));
+        EXPIRATIONS.values().forEach(index -> index.put(path, entity));
+    }
+
+    private static void remove(Path path) {
+        STORE.remove(path);
+        UNREAD_CLIENTS.remove(path);
+        String realmId = getRealmId(path);
+        Set<Path> realmPaths = realmId == null ? null : REALM_PATHS.get(realmId);
+        if (realmPaths != null && realmPaths.remove(path) && realmPaths.isEmpty()) {
+            REALM_PATHS.remove(realmId);
+        }
+        VERSIONS.remove(path);
+        REFERENCES.values().forEach(index -> index.remove(path));
+        KEYS.values().forEach(index -> index.remove(path));
+        SEARCH_INDEXES.values().forEach(index -> index.remove(path));
+        ATTRIBUTE_INDEXES.values().forEach(index -> index.remove(path));
+        COUNTS.values().forEach(index -> index.remove(path));
+        EXPIRATIONS.values().forEach(index -> index.remove(path));
     }
 }
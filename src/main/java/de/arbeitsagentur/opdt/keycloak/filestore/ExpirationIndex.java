@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index expiration -> paths of the entities whose earliest {@link EntityExpiration expiration} it
+ * is. Like {@link ReferenceIndex}, it keeps the last indexed expiration per path, as entities are
+ * mutated in place before they are written.
+ *
+ * <p>Not thread-safe, all access is guarded by the {@link EntityStore} lock.
+ */
+final class ExpirationIndex {
+
+    private final EntityExpiration expiration;
+    private final TreeMap<Long, Set<Path>> entries = new TreeMap<>();
+    private final Map<Path, Long> indexed = new HashMap<>();
+
+    ExpirationIndex(EntityExpiration expiration) {
+        this.expiration = expiration;
+    }
+
+    void put(Path path, AbstractEntity entity) {
+        if (!expiration.appliesTo(entity)) {
+            return;
+        }
+
+        remove(path);
+        Long current = expiration.getExpiration(entity);
+        if (current != null) {
+            entries.computeIfAbsent(current, k -> new LinkedHashSet<>()).add(path);
+            indexed.put(path, current);
+        }
+    }
+
+    void remove(Path path) {
+        Long previous = indexed.remove(path);
+        if (previous != null) {
+            Set<Path> paths = entries.get(previous);
+            if (paths != null && paths.remove(path) && paths.isEmpty()) {
+                entries.remove(previous);
+            }
+        }
+    }
+
+    /** Paths of the entities having an expiration before {@code time}, earliest first. */
+    List<Path> getExpired(long time) {
+        List<Path> paths = new ArrayList<>();
+        entries.headMap(time, false).values().forEach(paths::addAll);
+        return paths;
+    }
+}
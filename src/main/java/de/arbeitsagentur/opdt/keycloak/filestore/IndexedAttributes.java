@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Entity attributes for which {@link EntityStore} keeps an inverted index realm id -> attribute
+ * name and value -> entities. Only the attribute names listed in {@link
+ * EntityIO#getIndexedAttributeNames()} are indexed, and only values up to {@link #MAX_VALUE_LENGTH}
+ * characters, as each key is retained by the index.
+ */
+public enum IndexedAttributes {
+    /** {@link FileClientEntity#getAttributes()}. */
+    CLIENT(FileClientEntity.class, FileClientEntity::getRealmId, FileClientEntity::getAttributes),
+
+    /** {@link FileGroupEntity#getAttributes()}. */
+    GROUP(FileGroupEntity.class, FileGroupEntity::getRealmId, FileGroupEntity::getAttributes);
+
+    /** Values longer than this are not indexed, searches for them scan the realm. */
+    static final int MAX_VALUE_LENGTH = 256;
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Function<AbstractEntity, Map<String, Object>> attributesFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> IndexedAttributes(
+            Class<E> entityType, Function<E, String> realmIdFunc, Function<E, Map<String, Object>> attributesFunc) {
+        this.entityType = entityType;
+        this.realmIdFunc = (Function<AbstractEntity, String>) realmIdFunc;
+        this.attributesFunc = (Function<AbstractEntity, Map<String, Object>>) attributesFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    String getRealmId(AbstractEntity entity) {
+        return realmIdFunc.apply(entity);
+    }
+
+    Set<String> getKeys(AbstractEntity entity, Predicate<String> isIndexed) {
+        Set<String> keys = new HashSet<>();
+        Map<String, Object> attributes = attributesFunc.apply(entity);
+        if (attributes != null) {
+            attributes.forEach((name, value) -> {
+                if (value != null && isIndexed.test(name)) {
+                    String string = value.toString();
+                    if (isIndexedValue(string)) {
+                        keys.add(key(name, string));
+                    }
+                }
+            });
+        }
+        return keys;
+    }
+
+    boolean hasAttribute(AbstractEntity entity, String name, String value) {
+        Map<String, Object> attributes = attributesFunc.apply(entity);
+        Object attribute = attributes == null ? null : attributes.get(name);
+        return attribute != null && attribute.toString().equals(value);
+    }
+
+    static boolean isIndexedValue(String value) {
+        return value.length() <= MAX_VALUE_LENGTH;
+    }
+
+    static String key(String name, String value) {
+        return name + '\0' + value;
+    }
+}
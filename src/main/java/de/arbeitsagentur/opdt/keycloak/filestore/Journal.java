@@ -0,0 +1,334 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.jboss.logging.Logger;
+
+/**
+ * A batch of changes to several files that belong together, e.g. removing a realm or moving a group.
+ * Entities are changed in memory right away, while their files are changed when the batch is done.
+ *
+ * <p>A batch is first recorded in a log in the {@code .journal} directory of the root directory, which
+ * is synced once for all of its files. The changes are then applied, writing files through atomic
+ * renames, and the log is only deleted once the changed files and their directories are synced. Logs
+ * found on start are replayed if they were recorded completely with a matching checksum and dropped
+ * otherwise, in which case none of the batch's files were changed.
+ */
+final class Journal {
+    private static final Logger LOG = Logger.getLogger(Journal.class);
+
+    private static final String DIRECTORY = ".journal";
+    private static final String SUFFIX = ".log";
+
+    private static final byte WRITE = 1;
+    private static final byte WRITE_REALM = 2;
+    private static final byte DELETE = 3;
+    private static final byte DELETE_REALM = 4;
+    private static final byte DELETE_DIRECTORY = 5;
+    private static final byte COMMIT = 6;
+
+    private final Path rootDirectory;
+    private final Map<Path, Operation> operations = new LinkedHashMap<>();
+
+    /** A change to a file, entities are only serialized when the batch is recorded. */
+    private record Operation(byte type, AbstractEntity entity) {}
+
+    private record Entry(byte type, Path path, byte[] content) {}
+
+    Journal(Path rootDirectory) {
+        this.rootDirectory = rootDirectory;
+    }
+
+    void write(Path path, AbstractEntity entity) {
+        put(path, new Operation(entity instanceof FileRealmEntity ? WRITE_REALM : WRITE, entity));
+    }
+
+    void delete(Path path, boolean realm) {
+        put(path, new Operation(realm ? DELETE_REALM : DELETE, null));
+    }
+
+    /** Deletes the directory including the files written to it in this batch so far. */
+    void deleteDirectory(Path directory) {
+        operations.keySet().removeIf(path -> path.startsWith(directory));
+        put(directory, new Operation(DELETE_DIRECTORY, null));
+    }
+
+    /** Whether the file is deleted by this batch, as it still exists until the batch is done. */
+    boolean isDeleted(Path path) {
+        Operation operation = operations.get(path);
+        if (operation != null) {
+            return operation.type() != WRITE && operation.type() != WRITE_REALM;
+        }
+        return operations.entrySet().stream()
+                .anyMatch(entry -> entry.getValue().type() == DELETE_DIRECTORY && path.startsWith(entry.getKey()));
+    }
+
+    private void put(Path path, Operation operation) {
+        // later operations are applied after the earlier ones, e.g. a write after deleting its directory
+        operations.remove(path);
+        operations.put(path, operation);
+    }
+
+    /** The files changed by the batch, see {@link ChangeLog}. */
+    Map<Path, ChangeLog.Operation> getChanges() {
+        Map<Path, ChangeLog.Operation> changes = new LinkedHashMap<>();
+        operations.forEach((path, operation) -> changes.put(
+                path,
+                switch (operation.type()) {
+                    case WRITE, WRITE_REALM -> ChangeLog.Operation.WRITE;
+                    case DELETE_DIRECTORY -> ChangeLog.Operation.DELETE_DIRECTORY;
+                    default -> ChangeLog.Operation.DELETE;
+                }));
+        return changes;
+    }
+
+    /**
+     * Records the batch and applies it from the log, the same way as after a crash. Must be called
+     * holding the lock.
+     */
+    void commit() throws IOException {
+        if (!operations.isEmpty()) {
+            apply(record());
+        }
+    }
+
+    /** Replays the logs of batches which were recorded completely, drops the others. */
+    static void recover(Path rootDirectory) throws IOException {
+        Path directory = rootDirectory.resolve(DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        List<Path> logs;
+        try (Stream<Path> stream = Files.list(directory)) {
+            logs = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        Journal journal = new Journal(rootDirectory);
+        for (Path log : logs) {
+            LOG.infof("Recovering batch %s", log);
+            journal.apply(log);
+        }
+    }
+
+    /**
+     * Applies the changes of the log, if it was recorded completely, and deletes it once the changes
+     * are synced.
+     */
+    private void apply(Path log) throws IOException {
+        List<Entry> entries = read(log);
+        if (entries == null) {
+            LOG.warnf("Dropping incomplete batch %s, none of its changes were applied", log);
+        } else {
+            Set<Path> directories = new LinkedHashSet<>();
+            for (Entry entry : entries) {
+                apply(entry, directories);
+            }
+            for (Path directory : directories) {
+                sync(existingAncestor(directory));
+            }
+        }
+        Files.delete(log);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends AbstractEntity & UpdatableEntity> byte[] serialize(AbstractEntity entity, Path path) {
+        return EntityIO.format((E) entity, path).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Writes the batch to a new log, which is synced once for all of its files. */
+    Path record() throws IOException {
+        Path directory = rootDirectory.resolve(DIRECTORY);
+        Files.createDirectories(directory);
+        // named by time, so logs left by a crash are replayed in order
+        Path log =
+                directory.resolve(String.format("%013d-%s%s", System.currentTimeMillis(), UUID.randomUUID(), SUFFIX));
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            CRC32C checksum = new CRC32C();
+            DataOutputStream output = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)), checksum));
+            for (Map.Entry<Path, Operation> operation : operations.entrySet()) {
+                output.writeByte(operation.getValue().type());
+                output.writeUTF(rootDirectory.relativize(operation.getKey()).toString());
+                if (operation.getValue().entity() != null) {
+                    byte[] content = serialize(operation.getValue().entity(), operation.getKey());
+                    output.writeInt(content.length);
+                    output.write(content);
+                }
+            }
+            output.writeByte(COMMIT);
+            output.writeInt(operations.size());
+            output.writeLong(checksum.getValue());
+            output.flush();
+            channel.force(true);
+        }
+        // the log must not get lost once its changes are being applied
+        sync(directory);
+        return log;
+    }
+
+    /** Entries of the log, {@code null} if the batch was not recorded completely or is corrupt. */
+    private List<Entry> read(Path log) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        CRC32C checksum = new CRC32C();
+        try (DataInputStream input = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(Files.newInputStream(log)), checksum))) {
+            while (true) {
+                byte type = input.readByte();
+                if (type == COMMIT) {
+                    int count = input.readInt();
+                    long expected = checksum.getValue();
+                    return count == entries.size() && input.readLong() == expected ? entries : null;
+                }
+                if (type < WRITE || type > DELETE_DIRECTORY) {
+                    return null;
+                }
+
+                Path path = rootDirectory.resolve(input.readUTF());
+                byte[] content = null;
+                if (type == WRITE || type == WRITE_REALM) {
+                    int length = input.readInt();
+                    if (length < 0 || length > Files.size(log)) {
+                        return null;
+                    }
+                    content = new byte[length];
+                    input.readFully(content);
+                }
+                entries.add(new Entry(type, path, content));
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /** Applies the change, adding the directories whose entries it changed to {@code directories}. */
+    private void apply(Entry entry, Set<Path> directories) throws IOException {
+        Path path = entry.path();
+        directories.add(path.getParent());
+        switch (entry.type()) {
+            case WRITE -> writeAtomically(path, entry.content());
+            case WRITE_REALM -> {
+                writeAtomically(path, entry.content());
+                if (EntityIO.isSplitRealmFiles()) {
+                    // the log holds the realm as a single file
+                    EntityIO.writeToFile(EntityIO.parseFile(path, FileRealmEntity.class), path);
+                    sync(path);
+                    for (Path directory : RealmSections.getDirectories(path)) {
+                        try (Stream<Path> files = Files.list(directory)) {
+                            for (Path file : files.toList()) {
+                                sync(file);
+                            }
+                        }
+                        directories.add(directory);
+                    }
+                } else {
+                    RealmSections.delete(path);
+                }
+            }
+            case DELETE, DELETE_REALM -> {
+                if (entry.type() == DELETE_REALM) {
+                    RealmSections.delete(path);
+                }
+                Files.deleteIfExists(path);
+                EntityIO.deleteParentDirectoryIfEmpty(path);
+            }
+            case DELETE_DIRECTORY -> {
+                Tombstones.bury(rootDirectory, path);
+                EntityIO.deleteParentDirectoryIfEmpty(path);
+                // the tombstone was moved there
+                directories.add(rootDirectory);
+            }
+            default -> throw new IllegalStateException("Unknown change " + entry.type() + " to " + path);
+        }
+    }
+
+    /** The directory, or its closest ancestor if it was deleted as it became empty. */
+    private Path existingAncestor(Path directory) {
+        Path existing = directory;
+        while (!Files.isDirectory(existing) && existing.startsWith(rootDirectory) && !existing.equals(rootDirectory)) {
+            existing = existing.getParent();
+        }
+        return existing;
+    }
+
+    /**
+     * Flushes a file or directory to the disk. Directories cannot be opened on every platform, which
+     * then persist renames on their own, e.g. Windows.
+     */
+    private static void sync(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (!Files.isDirectory(path)) {
+                throw e;
+            }
+            LOG.debugf(e, "Could not sync directory %s", path);
+        }
+    }
+
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        if (!Files.exists(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temporary = path.resolveSibling("." + path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            // the file must be complete on the disk before it replaces the previous one
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * JSON files read and written by Jackson, which is considerably faster than SnakeYAML. Like {@link
+ * YamlCodec}, entities are read through their fields without calling setters, which would write
+ * them back, and written through their getters, sorted by property name. Sets keep their order.
+ */
+final class JsonCodec implements EntityCodec {
+
+    private static final ObjectReader READER = JsonMapper.builder()
+            .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .disable(MapperFeature.USE_GETTERS_AS_SETTERS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .addModule(new SimpleModule()
+                    .addAbstractTypeMapping(Set.class, LinkedHashSet.class)
+                    .addDeserializer(String.class, new DeduplicatingStringDeserializer()))
+            .build()
+            .reader();
+
+    private static final ObjectWriter WRITER = JsonMapper.builder()
+            .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.NONE)
+            .enable(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS)
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .build()
+            .writerWithDefaultPrettyPrinter();
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public String getFileSuffix() {
+        return ".json";
+    }
+
+    @Override
+    public <E extends AbstractEntity & UpdatableEntity> E read(Path path, Class<E> type) {
+        try {
+            String content = EntityIO.readSubstituted(path);
+            return content.isBlank() ? null : READER.forType(type).readValue(content);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse file: " + path, e);
+        }
+    }
+
+    @Override
+    public <E extends AbstractEntity & UpdatableEntity> String write(E entity) {
+        try {
+            return WRITER.writeValueAsString(entity) + System.lineSeparator();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(
+                    "Failed to write " + entity.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Interns the values of {@link Deduplication#isShared shared properties} of parsed entities, see
+     * {@link Deduplication}. Jackson already interns property names, which include the keys of maps.
+     */
+    private static class DeduplicatingStringDeserializer extends StringDeserializer {
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = super.deserialize(p, ctxt);
+            return Deduplication.isShared(p.currentName()) ? Deduplication.string(value) : value;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * A client of which only the properties indexed by {@link EntityStore} were read while loading, see
+ * {@link EntityIO#isLazyClients()}. Most clients of a large realm are never used on a node, so their
+ * protocol mappers, redirect URIs etc. are only constructed on the first access, by reading the file
+ * again. The complete client is read once, concurrent first accesses wait for it.
+ *
+ * <p>The store keeps the {@link #getKeys() keys} for its indexes until the client is used, the lazy
+ * client itself is no entity.
+ */
+final class LazyClient {
+
+    /** Properties needed by the indexes of {@link EntityStore}, see {@link EntityReference} etc. */
+    static final Set<String> INDEXED_PROPERTIES =
+            Set.of("id", "clientId", "alwaysDisplayInConsole", "scopeMappings", "clientScopes", "attributes");
+
+    private final Path path;
+    private final FileClientEntity keys;
+    private FileClientEntity client;
+
+    LazyClient(Path path, String realmId) {
+        this.path = path;
+        this.keys = EntityIO.parseProperties(path, FileClientEntity.class, INDEXED_PROPERTIES);
+        keys.setRealmId(realmId);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /** The client with only the indexed properties, which must not be handed out. */
+    FileClientEntity getKeys() {
+        return keys;
+    }
+
+    synchronized FileClientEntity get() {
+        if (client == null) {
+            client = EntityIO.parseFile(path, FileClientEntity.class);
+            client.setRealmId(keys.getRealmId());
+        }
+        return client;
+    }
+}
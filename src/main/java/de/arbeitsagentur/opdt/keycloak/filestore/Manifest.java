@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Size, modification time and checksum of the files read into {@link EntityStore}, to find the files
+ * changed since, e.g. by a ConfigMap rollout, without parsing all of them again. Files with the same
+ * size and modification time are not read. Files with a new modification time only count as changed
+ * if their checksum changed too, as a ConfigMap update replaces all of its files.
+ */
+final class Manifest {
+
+    private record Fingerprint(long size, FileTime lastModified, long checksum) {}
+
+    private final Map<Path, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    /** Records the file as it is now. */
+    void record(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            fingerprints.put(path, new Fingerprint(attributes.size(), attributes.lastModifiedTime(), checksum(path)));
+        } catch (IOException e) {
+            fingerprints.remove(path);
+        }
+    }
+
+    void forget(Path path) {
+        fingerprints.remove(path);
+    }
+
+    void forgetDirectory(Path directory) {
+        fingerprints.keySet().removeIf(path -> path.startsWith(directory));
+    }
+
+    /** Whether the file is new or its content changed since it was recorded, records it as it is now. */
+    boolean update(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Fingerprint previous = fingerprints.get(path);
+        if (previous != null
+                && previous.size() == attributes.size()
+                && previous.lastModified().equals(attributes.lastModifiedTime())) {
+            return false;
+        }
+
+        Fingerprint current = new Fingerprint(attributes.size(), attributes.lastModifiedTime(), checksum(path));
+        fingerprints.put(path, current);
+        return previous == null || previous.size() != current.size() || previous.checksum() != current.checksum();
+    }
+
+    Set<Path> getPaths() {
+        return new HashSet<>(fingerprints.keySet());
+    }
+
+    private static long checksum(Path path) throws IOException {
+        CRC32C checksum = new CRC32C();
+        checksum.update(Files.readAllBytes(path));
+        return checksum.getValue();
+    }
+}
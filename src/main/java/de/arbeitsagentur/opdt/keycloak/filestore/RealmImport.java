@@ -0,0 +1,151 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A realm being imported, e.g. through the admin API or {@code kc.sh import}. The importer writes
+ * every entity several times while building it. During the import, entities of the realm are only
+ * put into the store, so lookups and uniqueness checks still work on the in-memory indexes. Their
+ * files are written once the import is done.
+ *
+ * <p>The files are first written in parallel to a staging directory in the root directory. They are
+ * then renamed into place while the store is locked, so no other session sees half-written files.
+ */
+final class RealmImport {
+
+    private final Path rootDirectory;
+    private final Path realmFile;
+    private final Path realmDirectory;
+    private final Map<Path, AbstractEntity> pending = new LinkedHashMap<>();
+
+    RealmImport(Path rootDirectory, String realmId) {
+        this.rootDirectory = rootDirectory;
+        this.realmFile = EntityIO.getPathForIdAndParentPath(realmId, rootDirectory);
+        this.realmDirectory = rootDirectory.resolve(realmId);
+    }
+
+    /** Whether the path is the realm file or one of the realm's clients, roles etc. */
+    boolean covers(Path path) {
+        return path.equals(realmFile) || path.startsWith(realmDirectory);
+    }
+
+    /** Remembers the entity to be written when the import is done. */
+    void add(Path path, AbstractEntity entity) {
+        pending.put(path, entity);
+    }
+
+    /** Forgets the entity at the path, returns whether it was not written yet. */
+    boolean discard(Path path) {
+        return pending.remove(path) != null;
+    }
+
+    /** Paths of the entities written when the import is done. */
+    Set<Path> getPaths() {
+        return pending.keySet();
+    }
+
+    /**
+     * Writes the entities to a staging directory in parallel, except for the realm itself, whose
+     * sections are written next to it. Does not need the lock, as only the importing thread changes
+     * the entities.
+     */
+    Path stage() throws IOException {
+        Path stagingDirectory = Files.createTempDirectory(rootDirectory, ".import-");
+        try {
+            pending.entrySet().parallelStream()
+                    .filter(entry -> !entry.getKey().equals(realmFile))
+                    .forEach(entry -> write(entry.getValue(), getStagedPath(stagingDirectory, entry.getKey())));
+        } catch (UncheckedIOException e) {
+            deleteRecursively(stagingDirectory);
+            throw e.getCause();
+        }
+        return stagingDirectory;
+    }
+
+    /** Renames the staged files into place and writes the realm. Must be called holding the lock. */
+    void publish(Path stagingDirectory) throws IOException {
+        try {
+            for (Path path : pending.keySet()) {
+                if (path.equals(realmFile)) {
+                    continue;
+                }
+                if (!Files.exists(path.getParent())) {
+                    Files.createDirectories(path.getParent());
+                }
+                move(getStagedPath(stagingDirectory, path), path);
+            }
+            AbstractEntity realm = pending.get(realmFile);
+            if (realm != null) {
+                writeToFile(realm, realmFile);
+            }
+        } finally {
+            deleteRecursively(stagingDirectory);
+        }
+    }
+
+    private Path getStagedPath(Path stagingDirectory, Path path) {
+        return stagingDirectory.resolve(rootDirectory.relativize(path));
+    }
+
+    private static void write(AbstractEntity entity, Path path) {
+        try {
+            writeToFile(entity, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends AbstractEntity & UpdatableEntity> void writeToFile(AbstractEntity entity, Path path)
+            throws IOException {
+        EntityIO.writeToFile((E) entity, path);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            paths = stream.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static java.util.Map.entry;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * The large sections of a realm, each stored as one file per item in a directory next to the clients
+ * of the realm, e.g. {@code <realm>/components/<id>.yaml} or {@code <realm>/localization/<locale>.yaml}.
+ * The realm file then only lists the ids of the items of a section, which keeps their order.
+ *
+ * <p>Sections are split on the YAML nodes of the realm, so the entities are unaware of them. Items are
+ * only written if their content changed, and a realm file whose sections are stored inline is still
+ * read as is. The texts of a locale are only read on first access, see {@link
+ * de.arbeitsagentur.opdt.keycloak.filestore.realm.FileLocalizationTexts}.
+ */
+final class RealmSections {
+    private static final Logger LOG = Logger.getLogger(RealmSections.class);
+
+    /** Localization texts are a mapping by locale, the other sections are sequences of items. */
+    private static final String LOCALIZATION_TEXTS = "localizationTexts";
+
+    /** Marks the texts of a locale which were not read, so their file is kept as it is. */
+    private static final Tag UNLOADED = new Tag("!unloaded");
+
+    /** Directories of the sections by property of the realm. */
+    private static final Map<String, String> SECTIONS = Map.ofEntries(
+            entry("authenticationFlows", "flows"),
+            entry("authenticationExecutions", "executions"),
+            entry("authenticatorConfigs", "authenticator-configs"),
+            entry("components", "components"),
+            entry("identityProviders", "identity-providers"),
+            entry("identityProviderMappers", "identity-provider-mappers"),
+            entry("requiredActionProviders", "required-actions"),
+            entry(LOCALIZATION_TEXTS, "localization"));
+
+    /** Digests of the files last written or found unchanged, to skip writing unchanged items. */
+    private static final Map<Path, String> DIGESTS = new ConcurrentHashMap<>();
+
+    private RealmSections() {}
+
+    /**
+     * Replaces the ids of the split sections of the realm by the items read from their files. The
+     * sections are read in parallel. Localization texts are not read but removed from the realm, the
+     * files of their locales are returned instead, see {@link #unloaded()}.
+     */
+    static Map<String, Path> inline(
+            MappingNode realm, Path realmFile, LoaderOptions loaderOptions, Function<Path, String> reader) {
+        Path directory = getDirectory(realmFile);
+        List<NodeTuple> tuples = realm.getValue();
+        List<Integer> split = IntStream.range(0, tuples.size())
+                .filter(i -> isSplit(tuples.get(i)))
+                .boxed()
+                .toList();
+        if (split.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, Path> locales = new LinkedHashMap<>();
+        Map<Integer, Node> sections = new ConcurrentHashMap<>();
+        split.parallelStream().forEach(i -> {
+            String property = getKey(tuples.get(i));
+            if (!LOCALIZATION_TEXTS.equals(property)) {
+                sections.put(i, read(property, tuples.get(i).getValueNode(), directory, loaderOptions, reader));
+            }
+        });
+        sections.forEach(
+                (i, section) -> tuples.set(i, new NodeTuple(tuples.get(i).getKeyNode(), section)));
+        tuples.removeIf(tuple -> {
+            if (!LOCALIZATION_TEXTS.equals(getKey(tuple)) || !isSplit(tuple)) {
+                return false;
+            }
+            Path sectionDirectory = directory.resolve(SECTIONS.get(LOCALIZATION_TEXTS));
+            getIds(tuple.getValueNode()).forEach(locale -> locales.put(locale, getItemPath(sectionDirectory, locale)));
+            return true;
+        });
+        return locales;
+    }
+
+    /**
+     * Writes the sections of the realm to their files and replaces them by their ids. Sections whose
+     * items have no id are kept inline.
+     */
+    static void split(MappingNode realm, Path realmFile, Function<Node, String> serializer) throws IOException {
+        Path directory = getDirectory(realmFile);
+        List<NodeTuple> tuples = realm.getValue();
+        for (int i = 0; i < tuples.size(); i++) {
+            NodeTuple tuple = tuples.get(i);
+            String section = SECTIONS.get(getKey(tuple));
+            Map<String, Node> items = section == null ? null : getItems(tuple.getValueNode());
+            if (items == null) {
+                continue;
+            }
+
+            Path sectionDirectory = directory.resolve(section);
+            Set<Path> written = new HashSet<>();
+            for (Map.Entry<String, Node> item : items.entrySet()) {
+                Path path = getItemPath(sectionDirectory, item.getKey());
+                if (!UNLOADED.equals(item.getValue().getTag())) {
+                    writeIfChanged(path, serializer.apply(item.getValue()));
+                }
+                written.add(path);
+            }
+            deleteExcept(sectionDirectory, written);
+
+            List<Node> ids =
+                    items.keySet().stream().<Node>map(RealmSections::scalar).toList();
+            tuples.set(
+                    i,
+                    new NodeTuple(tuple.getKeyNode(), new SequenceNode(Tag.SEQ, ids, DumperOptions.FlowStyle.BLOCK)));
+        }
+    }
+
+    /** Directories of the sections of the realm, which only exist if it is split. */
+    static List<Path> getDirectories(Path realmFile) {
+        Path directory = getDirectory(realmFile);
+        return SECTIONS.values().stream().map(directory::resolve).toList();
+    }
+
+    /** Forgets the digests of the realm's sections, e.g. after another node wrote them. */
+    static void forget(Path realmFile) {
+        Path directory = getDirectory(realmFile);
+        DIGESTS.keySet().removeIf(path -> path.startsWith(directory));
+    }
+
+    /** Deletes the split sections of the realm, e.g. after it was written as a single file again. */
+    static void delete(Path realmFile) throws IOException {
+        Path directory = getDirectory(realmFile);
+        for (String section : SECTIONS.values()) {
+            deleteExcept(directory.resolve(section), Set.of());
+        }
+    }
+
+    /** Writes the content unless the file already has it. */
+    static void writeIfChanged(Path path, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String digest = digest(bytes);
+        String previous = DIGESTS.get(path);
+        if (previous == null && Files.isRegularFile(path)) {
+            previous = digest(Files.readAllBytes(path));
+        }
+        if (digest.equals(previous)) {
+            DIGESTS.put(path, digest);
+            return;
+        }
+
+        if (!Files.exists(path.getParent())) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.write(path, bytes);
+        DIGESTS.put(path, digest);
+    }
+
+    /** Directory of the clients, roles etc. of the realm, which also holds the split sections. */
+    private static Path getDirectory(Path realmFile) {
+        String fileName = realmFile.getFileName().toString();
+        return realmFile.resolveSibling(fileName.substring(0, fileName.length() - EntityIO.FILE_SUFFIX.length()));
+    }
+
+    private static Path getItemPath(Path sectionDirectory, String id) {
+        return sectionDirectory.resolve(EntityIO.escapeId(id) + EntityIO.FILE_SUFFIX);
+    }
+
+    private static String getKey(NodeTuple tuple) {
+        return tuple.getKeyNode() instanceof ScalarNode key ? key.getValue() : null;
+    }
+
+    /** Whether the section only lists the ids of its items, i.e. is stored in its own files. */
+    private static boolean isSplit(NodeTuple tuple) {
+        return SECTIONS.containsKey(getKey(tuple))
+                && tuple.getValueNode() instanceof SequenceNode ids
+                && ids.getValue().stream().allMatch(ScalarNode.class::isInstance);
+    }
+
+    private static Node read(
+            String property, Node ids, Path directory, LoaderOptions loaderOptions, Function<Path, String> reader) {
+        Path sectionDirectory = directory.resolve(SECTIONS.get(property));
+        List<Node> items = new ArrayList<>();
+        for (String id : getIds(ids)) {
+            Path path = getItemPath(sectionDirectory, id);
+            if (!EntityIO.canParseFile(path)) {
+                LOG.warnf("Skipping missing realm section item %s", path);
+                continue;
+            }
+            Node item = new Composer(
+                            new ParserImpl(new StreamReader(new StringReader(reader.apply(path))), loaderOptions),
+                            new Resolver(),
+                            loaderOptions)
+                    .getSingleNode();
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return new SequenceNode(Tag.SEQ, items, DumperOptions.FlowStyle.BLOCK);
+    }
+
+    private static List<String> getIds(Node ids) {
+        return ((SequenceNode) ids)
+                .getValue().stream().map(id -> ((ScalarNode) id).getValue()).toList();
+    }
+
+    /** Items of the section by id or locale, {@code null} if it can't be split. */
+    private static Map<String, Node> getItems(Node section) {
+        Map<String, Node> items = new LinkedHashMap<>();
+        if (section instanceof MappingNode mapping) {
+            for (NodeTuple entry : mapping.getValue()) {
+                String locale = getKey(entry);
+                if (locale == null
+                        || !(entry.getValueNode() instanceof MappingNode
+                                || UNLOADED.equals(entry.getValueNode().getTag()))) {
+                    return null;
+                }
+                items.put(locale, entry.getValueNode());
+            }
+        } else if (section instanceof SequenceNode sequence) {
+            for (Node item : sequence.getValue()) {
+                String id = item instanceof MappingNode mapping ? getId(mapping) : null;
+                if (id == null || items.put(id, item) != null) {
+                    return null;
+                }
+            }
+        } else {
+            return null;
+        }
+        return items;
+    }
+
+    private static String getId(MappingNode item) {
+        return item.getValue().stream()
+                .filter(tuple -> "id".equals(getKey(tuple)))
+                .map(NodeTuple::getValueNode)
+                .filter(ScalarNode.class::isInstance)
+                .map(id -> ((ScalarNode) id).getValue())
+                .filter(id -> !id.isEmpty() && !"null".equals(id))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Node written instead of the texts of a locale which were not read since the realm was loaded, see
+     * {@link #inline}.
+     */
+    static Node unloaded() {
+        return new ScalarNode(UNLOADED, "", null, null, DumperOptions.ScalarStyle.PLAIN);
+    }
+
+    private static ScalarNode scalar(String value) {
+        return new ScalarNode(Tag.STR, value, null, null, DumperOptions.ScalarStyle.PLAIN);
+    }
+
+    private static void deleteExcept(Path sectionDirectory, Set<Path> kept) throws IOException {
+        if (!Files.isDirectory(sectionDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(sectionDirectory)) {
+            List<Path> deleted = files.filter(file -> file.toString().endsWith(EntityIO.FILE_SUFFIX))
+                    .filter(file -> !kept.contains(file))
+                    .toList();
+            for (Path file : deleted) {
+                Files.delete(file);
+                DIGESTS.remove(file);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (EntityIO.isDirectoryEmpty(sectionDirectory)) {
+            Files.delete(sectionDirectory);
+            EntityIO.deleteParentDirectoryIfEmpty(sectionDirectory);
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The realms {@link EntityStore} loads on this node, for deployments partitioned by realm behind a
+ * realm-aware router. A realm is selected if it matches one of the {@code includedRealms} globs (or
+ * none are configured), matches none of the {@code excludedRealms} globs and, if {@code shardCount}
+ * is configured, is assigned to this node's {@code shardIndex} by the hash of its id. The admin realm
+ * is always selected.
+ */
+final class RealmSelection {
+
+    private static final Pattern ORDINAL = Pattern.compile("-(\\d+)$");
+
+    private final String adminRealmId;
+    private final List<Pattern> included;
+    private final List<Pattern> excluded;
+    private final int shardCount;
+    private final int shardIndex;
+
+    RealmSelection(String adminRealmId, List<String> included, List<String> excluded, int shardCount, int shardIndex) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException(
+                    "Invalid realm shard " + shardIndex + " of " + shardCount + " for map storage");
+        }
+        this.adminRealmId = adminRealmId;
+        this.included = included.stream().map(RealmSelection::toPattern).toList();
+        this.excluded = excluded.stream().map(RealmSelection::toPattern).toList();
+        this.shardCount = shardCount;
+        this.shardIndex = shardIndex;
+    }
+
+    boolean isSelected(String realmId) {
+        if (realmId == null) {
+            return false;
+        }
+        if (realmId.equals(adminRealmId)) {
+            return true;
+        }
+        if (!included.isEmpty()
+                && included.stream().noneMatch(p -> p.matcher(realmId).matches())) {
+            return false;
+        }
+        if (excluded.stream().anyMatch(p -> p.matcher(realmId).matches())) {
+            return false;
+        }
+        return Math.floorMod(realmId.hashCode(), shardCount) == shardIndex;
+    }
+
+    /**
+     * The ordinal of a StatefulSet pod, i.e. the number after the last dash of its host name, or
+     * {@code null} if there is none.
+     */
+    static Integer getOrdinal(String hostName) {
+        if (hostName == null) {
+            return null;
+        }
+        Matcher matcher = ORDINAL.matcher(hostName);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    /** Converts a glob with the wildcards {@code *} and {@code ?} to a pattern. */
+    private static Pattern toPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                regex.append(Pattern.quote(glob.substring(start, i))).append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        regex.append(Pattern.quote(glob.substring(start)));
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Reverse index realm id -> key -> paths of the entities holding the key, used for {@link
+ * EntityReference references}, {@link SearchField search} trigrams, {@link IndexedAttributes
+ * attribute} values, {@link EntityKey keys} and {@link EntityCount counts}. Entities are mutated in place
+ * before they are written, so the index keeps the source of the last indexed keys per path to be able
+ * to compute the difference on the next write. For search fields that is the indexed texts rather than
+ * their many trigrams, which are computed again when needed.
+ *
+ * <p>Not thread-safe, all access is guarded by the {@link EntityStore} lock.
+ */
+final class ReferenceIndex {
+
+    /** The realm and the source of the keys, which must not change once indexed. */
+    private record Indexed(String realmId, Collection<String> source) {}
+
+    private final Predicate<AbstractEntity> appliesTo;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Function<AbstractEntity, Collection<String>> sourceFunc;
+    private final Function<Collection<String>, Set<String>> keysFunc;
+    private final Map<String, Map<String, Set<Path>>> entries = new HashMap<>();
+    private final Map<Path, Indexed> indexed = new HashMap<>();
+
+    ReferenceIndex(EntityReference reference) {
+        this(reference::appliesTo, reference::getRealmId, reference::getReferencedIds);
+    }
+
+    ReferenceIndex(SearchField field) {
+        this(field::appliesTo, field::getRealmId, field::getTexts, SearchField::getTrigrams);
+    }
+
+    ReferenceIndex(IndexedAttributes attributes, Predicate<String> isIndexed) {
+        this(attributes::appliesTo, attributes::getRealmId, e -> attributes.getKeys(e, isIndexed));
+    }
+
+    ReferenceIndex(EntityKey key) {
+        this(key::appliesTo, key::getRealmId, key::getKeys);
+    }
+
+    ReferenceIndex(EntityCount count) {
+        this(count::appliesTo, count::getRealmId, count::getKeys);
+    }
+
+    /** Index of keys taken from the entity, which are copied as the entity's collections are mutable. */
+    private ReferenceIndex(
+            Predicate<AbstractEntity> appliesTo,
+            Function<AbstractEntity, String> realmIdFunc,
+            Function<AbstractEntity, Collection<String>> keysFunc) {
+        this(
+                appliesTo,
+                realmIdFunc,
+                e -> {
+                    Collection<String> keys = keysFunc.apply(e);
+                    return keys == null || keys.isEmpty() ? Set.of() : new HashSet<>(keys);
+                },
+                keys -> (Set<String>) keys);
+    }
+
+    private ReferenceIndex(
+            Predicate<AbstractEntity> appliesTo,
+            Function<AbstractEntity, String> realmIdFunc,
+            Function<AbstractEntity, Collection<String>> sourceFunc,
+            Function<Collection<String>, Set<String>> keysFunc) {
+        this.appliesTo = appliesTo;
+        this.realmIdFunc = realmIdFunc;
+        this.sourceFunc = sourceFunc;
+        this.keysFunc = keysFunc;
+    }
+
+    void put(Path path, AbstractEntity entity) {
+        if (!appliesTo.test(entity)) {
+            return;
+        }
+
+        String realmId = realmIdFunc.apply(entity);
+        Collection<String> source = sourceFunc.apply(entity);
+        Set<String> keys = keysFunc.apply(source);
+        Indexed previous = indexed.get(path);
+
+        if (previous != null && Objects.equals(previous.realmId(), realmId)) {
+            Set<String> previousKeys = keysFunc.apply(previous.source());
+            for (String key : previousKeys) {
+                if (!keys.contains(key)) {
+                    unlink(realmId, key, path);
+                }
+            }
+            for (String key : keys) {
+                if (!previousKeys.contains(key)) {
+                    link(realmId, key, path);
+                }
+            }
+        } else {
+            remove(path);
+            keys.forEach(key -> link(realmId, key, path));
+        }
+
+        if (keys.isEmpty()) {
+            indexed.remove(path);
+        } else {
+            indexed.put(path, new Indexed(realmId, source));
+        }
+    }
+
+    void remove(Path path) {
+        Indexed previous = indexed.remove(path);
+        if (previous != null) {
+            keysFunc.apply(previous.source()).forEach(key -> unlink(previous.realmId(), key, path));
+        }
+    }
+
+    Set<Path> get(String realmId, String key) {
+        Map<String, Set<Path>> byKey = entries.get(realmId);
+        Set<Path> paths = byKey == null ? null : byKey.get(key);
+        return paths == null ? Collections.emptySet() : paths;
+    }
+
+    private void link(String realmId, String key, Path path) {
+        entries.computeIfAbsent(realmId, k -> new HashMap<>())
+                .computeIfAbsent(key, k -> new LinkedHashSet<>())
+                .add(path);
+    }
+
+    private void unlink(String realmId, String key, Path path) {
+        Map<String, Set<Path>> byKey = entries.get(realmId);
+        if (byKey == null) {
+            return;
+        }
+
+        Set<Path> paths = byKey.get(key);
+        if (paths != null && paths.remove(path) && paths.isEmpty()) {
+            byKey.remove(key);
+            if (byKey.isEmpty()) {
+                entries.remove(realmId);
+            }
+        }
+    }
+}
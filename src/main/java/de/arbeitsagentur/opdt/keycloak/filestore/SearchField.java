@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Text fields for which {@link EntityStore} keeps a case-insensitive trigram index, used to narrow
+ * down the candidates of {@code %term%} searches before {@link SearchPatterns} is applied.
+ */
+public enum SearchField {
+    /** {@link FileClientEntity#getClientId()}. */
+    CLIENT_ID(FileClientEntity.class, FileClientEntity::getRealmId, e -> Collections.singletonList(e.getClientId())),
+
+    /** {@link FileRoleEntity#getName()} and {@link FileRoleEntity#getDescription()}. */
+    ROLE_NAME_OR_DESCRIPTION(
+            FileRoleEntity.class, FileRoleEntity::getRealmId, e -> Arrays.asList(e.getName(), e.getDescription())),
+
+    /** {@link FileGroupEntity#getName()}. */
+    GROUP_NAME(FileGroupEntity.class, FileGroupEntity::getRealmId, e -> Collections.singletonList(e.getName()));
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final Class<? extends AbstractEntity> entityType;
+    private final Function<AbstractEntity, String> realmIdFunc;
+    private final Function<AbstractEntity, List<String>> textsFunc;
+
+    @SuppressWarnings("unchecked")
+    <E extends AbstractEntity> SearchField(
+            Class<E> entityType, Function<E, String> realmIdFunc, Function<E, List<String>> textsFunc) {
+        this.entityType = entityType;
+        this.realmIdFunc = (Function<AbstractEntity, String>) realmIdFunc;
+        this.textsFunc = (Function<AbstractEntity, List<String>>) textsFunc;
+    }
+
+    boolean appliesTo(AbstractEntity entity) {
+        return entityType.isInstance(entity);
+    }
+
+    String getRealmId(AbstractEntity entity) {
+        return realmIdFunc.apply(entity);
+    }
+
+    /** The texts of the entity, which are immutable, so they can be kept to compute their trigrams again. */
+    List<String> getTexts(AbstractEntity entity) {
+        return textsFunc.apply(entity);
+    }
+
+    static Set<String> getTrigrams(Collection<String> texts) {
+        Set<String> trigrams = new HashSet<>();
+        for (String text : texts) {
+            addTrigrams(text, trigrams);
+        }
+        return trigrams;
+    }
+
+    /**
+     * Trigrams every value matching the LIKE pattern {@code %term%} must contain. Empty if the term
+     * is too short to narrow down the candidates.
+     */
+    static Set<String> getTrigrams(String term) {
+        Set<String> trigrams = new HashSet<>();
+        if (term == null) {
+            return trigrams;
+        }
+        for (String segment : term.split("%")) {
+            addTrigrams(segment, trigrams);
+        }
+        return trigrams;
+    }
+
+    private static void addTrigrams(String text, Set<String> trigrams) {
+        if (text == null || text.length() < GRAM_LENGTH) {
+            return;
+        }
+
+        char[] folded = new char[text.length()];
+        for (int i = 0; i < folded.length; i++) {
+            // same folding as String.regionMatches(true, ...)
+            folded[i] = Character.toLowerCase(Character.toUpperCase(text.charAt(i)));
+        }
+        for (int i = 0; i + GRAM_LENGTH <= folded.length; i++) {
+            trigrams.add(new String(folded, i, GRAM_LENGTH));
+        }
+    }
+}
@@ -17,6 +17,12 @@
 
 package de.arbeitsagentur.opdt.keycloak.filestore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -28,6 +34,18 @@ public final class SearchPatterns {
 
     private static final Pattern LIKE_PATTERN_DELIMITER = Pattern.compile("%+");
 
+    private static final int MATCHER_CACHE_SIZE = 256;
+
+    private record MatcherKey(String pattern, boolean ignoreCase) {}
+
+    private static final Map<MatcherKey, Predicate<String>> MATCHER_CACHE =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<MatcherKey, Predicate<String>> eldest) {
+                    return size() > MATCHER_CACHE_SIZE;
+                }
+            });
+
     static String quoteRegex(String pattern) {
         return LIKE_PATTERN_DELIMITER.splitAsStream(pattern).map(Pattern::quote).collect(Collectors.joining(".*"))
                 + (pattern.endsWith("%") ? ".*" : "");
@@ -37,29 +55,82 @@ public final class SearchPatterns {
         if (toCompareWith == null || sValue == null) {
             return false;
         }
-        // TODO simplify ?
-        // return toCompareWith.contains(sValue);
-
-        if (Pattern.matches("^%+$", sValue)) {
-            return true;
-        }
-        Pattern pValue = Pattern.compile(quoteRegex(sValue), Pattern.DOTALL);
-        return pValue.matcher(toCompareWith).matches();
+        return likeMatcher(sValue).test(toCompareWith);
     }
 
     public static boolean insensitiveLike(String toCompareWith, String sValue) {
         if (toCompareWith == null || sValue == null) {
             return false;
         }
+        return insensitiveLikeMatcher(sValue).test(toCompareWith);
+    }
 
-        // TODO simplify ?
-        // return toCompareWith.toLowerCase().contains(sValue.toLowerCase());
+    /**
+     * Compiles the given LIKE pattern ({@code %} as wildcard) once, so it can be applied to many values,
+     * e.g. inside a stream filter. The returned predicate never matches {@code null}.
+     */
+    public static Predicate<String> likeMatcher(String sValue) {
+        return cachedMatcher(sValue, false);
+    }
+
+    /** Case-insensitive variant of {@link #likeMatcher(String)}. */
+    public static Predicate<String> insensitiveLikeMatcher(String sValue) {
+        return cachedMatcher(sValue, true);
+    }
 
-        if (Pattern.matches("^%+$", sValue)) {
-            return true;
+    private static Predicate<String> cachedMatcher(String sValue, boolean ignoreCase) {
+        if (sValue == null) {
+            return value -> false;
         }
-        int flags = Pattern.CASE_INSENSITIVE + Pattern.DOTALL;
+        return MATCHER_CACHE.computeIfAbsent(
+                new MatcherKey(sValue, ignoreCase), key -> compile(key.pattern(), key.ignoreCase()));
+    }
+
+    static Predicate<String> compile(String sValue, boolean ignoreCase) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : LIKE_PATTERN_DELIMITER.split(sValue)) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        boolean leadingWildcard = sValue.startsWith("%");
+        boolean trailingWildcard = sValue.endsWith("%");
+
+        if (segments.isEmpty()) {
+            return sValue.isEmpty() ? sValue::equals : value -> value != null;
+        }
+
+        if (segments.size() == 1) {
+            String segment = segments.get(0);
+            int length = segment.length();
+            if (!leadingWildcard && !trailingWildcard) {
+                return ignoreCase ? segment::equalsIgnoreCase : segment::equals;
+            }
+            if (!leadingWildcard) {
+                return value -> value != null && value.regionMatches(ignoreCase, 0, segment, 0, length);
+            }
+            if (!trailingWildcard) {
+                return value ->
+                        value != null && value.regionMatches(ignoreCase, value.length() - length, segment, 0, length);
+            }
+            return value -> value != null && contains(value, segment, ignoreCase);
+        }
+
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL : Pattern.DOTALL;
         Pattern pValue = Pattern.compile(quoteRegex(sValue), flags);
-        return pValue.matcher(toCompareWith).matches();
+        return value -> value != null && pValue.matcher(value).matches();
+    }
+
+    private static boolean contains(String value, String segment, boolean ignoreCase) {
+        if (!ignoreCase) {
+            return value.contains(segment);
+        }
+        int length = segment.length();
+        for (int offset = 0, last = value.length() - length; offset <= last; offset++) {
+            if (value.regionMatches(true, offset, segment, 0, length)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
+
+/**
+ * Directories being deleted, e.g. the roles of a removed realm. A directory is renamed to a hidden
+ * tombstone in the root directory right away, which is atomic, and deleted in the background by
+ * parallel workers. Tombstones left behind by a crash are deleted on the next start.
+ */
+final class Tombstones {
+    private static final Logger LOG = Logger.getLogger(Tombstones.class);
+
+    private static final String PREFIX = ".deleted-";
+
+    private Tombstones() {}
+
+    /** Moves the directory out of the way and deletes it in the background. */
+    static void bury(Path rootDirectory, Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        Path tombstone = rootDirectory.resolve(PREFIX + UUID.randomUUID());
+        try {
+            Files.move(directory, tombstone, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            deleteRecursively(directory);
+            return;
+        }
+        CompletableFuture.runAsync(() -> delete(tombstone));
+    }
+
+    /** Deletes the tombstones of a previous run in the background. */
+    static void clear(Path rootDirectory) throws IOException {
+        List<Path> tombstones;
+        try (Stream<Path> stream = Files.list(rootDirectory)) {
+            tombstones = stream.filter(path -> path.getFileName().toString().startsWith(PREFIX))
+                    .filter(Files::isDirectory)
+                    .toList();
+        }
+        tombstones.forEach(tombstone -> CompletableFuture.runAsync(() -> delete(tombstone)));
+    }
+
+    private static void delete(Path tombstone) {
+        try {
+            List<Path> children;
+            try (Stream<Path> stream = Files.list(tombstone)) {
+                children = stream.toList();
+            }
+            children.parallelStream().forEach(child -> {
+                try {
+                    deleteRecursively(child);
+                } catch (IOException e) {
+                    LOG.warnf(e, "Could not delete %s, it is deleted on the next start", child);
+                }
+            });
+            deleteRecursively(tombstone);
+        } catch (IOException e) {
+            LOG.warnf(e, "Could not delete %s, it is deleted on the next start", tombstone);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import java.nio.file.Path;
+
+/** The YAML files read and written by SnakeYAML, see {@link EntityIO}. */
+final class YamlCodec implements EntityCodec {
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public String getFileSuffix() {
+        return EntityIO.FILE_SUFFIX;
+    }
+
+    @Override
+    public <E extends AbstractEntity & UpdatableEntity> E read(Path path, Class<E> type) {
+        return EntityIO.yamlParseFile(path, type);
+    }
+
+    @Override
+    public <E extends AbstractEntity & UpdatableEntity> String write(E entity) {
+        return EntityIO.toYaml(entity);
+    }
+}
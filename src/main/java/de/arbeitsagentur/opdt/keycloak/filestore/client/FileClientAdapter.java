@@ -112,7 +112,7 @@ public abstract class FileClientAdapter extends AbstractClientModel<FileClientEn
 
     @Override
     public void setWebOrigins(Set<String> webOrigins) {
-        entity.setWebOrigins(new ArrayList<>(webOrigins.stream().toList()));
+        entity.setWebOrigins(new LinkedHashSet<>(webOrigins));
     }
 
     @Override
@@ -133,7 +133,7 @@ public abstract class FileClientAdapter extends AbstractClientModel<FileClientEn
 
     @Override
     public void setRedirectUris(Set<String> redirectUris) {
-        entity.setRedirectUris(new ArrayList<>(redirectUris.stream().toList()));
+        entity.setRedirectUris(new LinkedHashSet<>(redirectUris));
     }
 
     @Override
@@ -460,10 +460,7 @@ public abstract class FileClientAdapter extends AbstractClientModel<FileClientEn
         if (id != null && scopeMappings != null && scopeMappings.contains(id)) {
             return true;
         }
-        if (getScopeMappingsStream().anyMatch(r -> r.hasRole(role))) {
-            return true;
-        }
-        return getRolesStream().anyMatch(r -> (Objects.equals(r, role) || r.hasRole(role)));
+        return id != null && FileClientTokenProfile.of(entity).isInScope(id);
     }
 
     /*************** Protocol mappers ****************/
@@ -473,10 +470,7 @@ public abstract class FileClientAdapter extends AbstractClientModel<FileClientEn
 
     @Override
     public Stream<ProtocolMapperModel> getProtocolMappersStream() {
-        final Set<FileProtocolMapperEntity> protocolMappers = new HashSet<>(entity.getProtocolMappers());
-        return protocolMappers == null
-                ? Stream.empty()
-                : protocolMappers.stream().distinct().map(pmUtils::toModel);
+        return FileClientTokenProfile.of(entity).getProtocolMappers().stream();
     }
 
     @Override
@@ -26,9 +26,9 @@ public class FileClientEntity implements AbstractEntity, UpdatableEntity {
 
     private Map<String, Boolean> clientScopes = new HashMap<>();
     private List<FileProtocolMapperEntity> protocolMappers = new ArrayList<>();
-    private List<String> redirectUris = new ArrayList<>();
-    private List<String> scopeMappings = new ArrayList<>();
-    private List<String> webOrigins = new ArrayList<>();
+    private Set<String> redirectUris = new LinkedHashSet<>();
+    private Set<String> scopeMappings = new LinkedHashSet<>();
+    private Set<String> webOrigins = new LinkedHashSet<>();
     private Map<String, String> authenticationFlowBindingOverrides = new HashMap<>();
     private String baseUrl;
     private String clientAuthenticatorType;
@@ -114,24 +114,22 @@ public class FileClientEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public void addRedirectUri(String redirectUri) {
-        if (!this.redirectUris.contains(redirectUri)) {
-            this.redirectUris.add(redirectUri);
+        if (this.redirectUris.add(redirectUri)) {
             FileClientStore.update(this);
         }
     }
 
-    public List<String> getRedirectUris() {
-        return this.redirectUris == null ? Collections.emptyList() : this.redirectUris;
+    public Set<String> getRedirectUris() {
+        return this.redirectUris == null ? Collections.emptySet() : this.redirectUris;
     }
 
     public void removeRedirectUri(String redirectUri) {
-        if (this.redirectUris.contains(redirectUri)) {
-            this.redirectUris.remove(redirectUri);
+        if (this.redirectUris.remove(redirectUri)) {
             FileClientStore.update(this);
         }
     }
 
-    public void setRedirectUris(List<String> redirectUris) {
+    public void setRedirectUris(Set<String> redirectUris) {
         if (!Objects.equals(this.redirectUris, redirectUris)) {
             this.redirectUris = redirectUris;
             FileClientStore.update(this);
@@ -139,42 +137,38 @@ public class FileClientEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public void addScopeMapping(String id) {
-        if (!this.scopeMappings.contains(id)) {
-            this.scopeMappings.add(id);
+        if (this.scopeMappings.add(id)) {
             FileClientStore.update(this);
         }
     }
 
     public void removeScopeMapping(String id) {
-        if (this.scopeMappings.contains(id)) {
-            this.scopeMappings.remove(id);
+        if (this.scopeMappings.remove(id)) {
             FileClientStore.update(this);
         }
     }
 
-    public List<String> getScopeMappings() {
+    public Set<String> getScopeMappings() {
         return this.scopeMappings;
     }
 
     public void addWebOrigin(String webOrigin) {
-        if (!this.webOrigins.contains(webOrigin)) {
-            this.webOrigins.add(webOrigin);
+        if (this.webOrigins.add(webOrigin)) {
             FileClientStore.update(this);
         }
     }
 
-    public List<String> getWebOrigins() {
-        return this.webOrigins == null ? Collections.emptyList() : this.webOrigins;
+    public Set<String> getWebOrigins() {
+        return this.webOrigins == null ? Collections.emptySet() : this.webOrigins;
     }
 
     public void removeWebOrigin(String webOrigin) {
-        if (this.webOrigins.contains(webOrigin)) {
-            this.webOrigins.remove(webOrigin);
+        if (this.webOrigins.remove(webOrigin)) {
             FileClientStore.update(this);
         }
     }
 
-    public void setWebOrigins(List<String> webOrigins) {
+    public void setWebOrigins(Set<String> webOrigins) {
         if (!Objects.equals(this.webOrigins, webOrigins)) {
             this.webOrigins = webOrigins;
             FileClientStore.update(this);
@@ -569,7 +563,7 @@ public class FileClientEntity implements AbstractEntity, UpdatableEntity {
         }
     }
 
-    public void setScopeMappings(List<String> scopeMappings) {
+    public void setScopeMappings(Set<String> scopeMappings) {
         if (!Objects.equals(this.scopeMappings, scopeMappings)) {
             this.scopeMappings = scopeMappings;
         }
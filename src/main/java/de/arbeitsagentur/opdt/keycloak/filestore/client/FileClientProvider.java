@@ -20,13 +20,16 @@ package de.arbeitsagentur.opdt.keycloak.filestore.client;
 import static org.keycloak.common.util.StackUtil.getShortStackTrace;
 import static org.keycloak.utils.StreamsUtil.paginatedStream;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
 import de.arbeitsagentur.opdt.keycloak.filestore.SearchPatterns;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractFileProviderFactory;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AdapterIdentityMap;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.TimeAdapter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
@@ -62,7 +65,7 @@ public class FileClientProvider implements ClientProvider {
     private <T extends FileClientEntity> Function<T, ClientModel> entityToAdapterFunc(RealmModel realm) {
         // Clone entity before returning back, to avoid giving away a reference to the live object to
         // the caller
-        return origEntity -> new FileClientAdapter(session, realm, origEntity) {
+        Function<T, ClientModel> createAdapter = origEntity -> new FileClientAdapter(session, realm, origEntity) {
             @Override
             public void updateClient() {
                 LOG.tracef("updateClient(%s)%s", realm, origEntity.getId(), getShortStackTrace());
@@ -95,6 +98,7 @@ public class FileClientProvider implements ClientProvider {
                 return clientRegisteredNodesStore.computeIfAbsent(entity.getId(), k -> new ConcurrentHashMap<>());
             }
         };
+        return AdapterIdentityMap.of(session).adapterFunc(ClientModel.class, createAdapter);
     }
 
     private boolean isEntityPartOfRealm(RealmModel realm, FileClientEntity entity) {
@@ -103,14 +107,13 @@ public class FileClientProvider implements ClientProvider {
 
     @Override
     public Stream<ClientModel> getClientsStream(RealmModel realm, Integer firstResult, Integer maxResults) {
-        Stream<ClientModel> clients = getClientsStream(realm);
-        return paginatedStream(clients, firstResult, maxResults);
+        return FileClientStore.readAll(realm.getId(), firstResult, maxResults).stream()
+                .map(entityToAdapterFunc(realm));
     }
 
     @Override
     public Stream<ClientModel> getClientsStream(RealmModel realm) {
-        return FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
+        return FileClientStore.readAll(realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(ClientModel::getClientId));
     }
@@ -149,9 +152,7 @@ public class FileClientProvider implements ClientProvider {
 
     @Override
     public Stream<ClientModel> getAlwaysDisplayInConsoleClientsStream(RealmModel realm) {
-        return FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
-                .filter(client -> Boolean.TRUE.equals(client.isAlwaysDisplayInConsole()))
+        return FileClientStore.readAlwaysDisplayInConsole(realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(ClientModel::getClientId));
     }
@@ -175,17 +176,17 @@ public class FileClientProvider implements ClientProvider {
         final ClientModel client = getClientById(realm, id);
         if (client == null) return false;
 
-        session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.CLIENT_BEFORE_REMOVE, realm, client);
-        FileClientStore.deleteById(id, realm.getId());
+        EntityStore.batch(() -> {
+            session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.CLIENT_BEFORE_REMOVE, realm, client);
+            FileClientStore.deleteById(id, realm.getId());
+        });
         session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.CLIENT_AFTER_REMOVE, client);
         return true;
     }
 
     @Override
     public long getClientsCount(RealmModel realm) {
-        return FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
-                .count();
+        return FileClientStore.count(realm.getId());
     }
 
     @Override
@@ -210,12 +211,8 @@ public class FileClientProvider implements ClientProvider {
             return null;
         }
 
-        return FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
-                .filter(client -> clientId.equals(client.getClientId()))
-                .map(entityToAdapterFunc(realm))
-                .findFirst()
-                .orElse(null);
+        FileClientEntity entity = FileClientStore.readByClientId(clientId, realm.getId());
+        return entity == null ? null : entityToAdapterFunc(realm).apply(entity);
     }
 
     @Override
@@ -225,9 +222,9 @@ public class FileClientProvider implements ClientProvider {
             return Stream.empty();
         }
 
-        Stream<ClientModel> clients = FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
-                .filter(client -> SearchPatterns.insensitiveLike(client.getClientId(), "%" + clientId + "%"))
+        Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + clientId + "%");
+        Stream<ClientModel> clients = FileClientStore.searchByClientId(clientId, realm.getId()).stream()
+                .filter(client -> matcher.test(client.getClientId()))
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(ClientModel::getClientId));
 
@@ -237,18 +234,10 @@ public class FileClientProvider implements ClientProvider {
     @Override
     public Stream<ClientModel> searchClientsByAttributes(
             RealmModel realm, Map<String, String> attributes, Integer firstResult, Integer maxResults) {
-        Stream<ClientModel> clients = FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
+        Stream<ClientModel> clients = FileClientStore.readByAttributes(attributes, realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(ClientModel::getClientId));
 
-        for (Map.Entry<String, String> entry : attributes.entrySet()) {
-            clients = clients.filter(client -> {
-                var attr = client.getAttribute(entry.getKey());
-                return attr != null && attr.contains(entry.getValue());
-            });
-        }
-
         return paginatedStream(clients, firstResult, maxResults);
     }
 
@@ -285,8 +274,7 @@ public class FileClientProvider implements ClientProvider {
 
     @Override
     public void addClientScopeToAllClients(RealmModel realm, ClientScopeModel clientScope, boolean defaultClientScope) {
-        FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
+        FileClientStore.readAll(realm.getId()).stream()
                 .forEach(client -> client.setClientScope(clientScope.getId(), defaultClientScope));
     }
 
@@ -296,14 +284,13 @@ public class FileClientProvider implements ClientProvider {
         FileClientEntity entity = FileClientStore.read(id, realm.getId());
 
         if (entity == null) return null;
-        // Defaults to openid-connect
-        String clientProtocol = client.getProtocol() == null ? "openid-connect" : client.getProtocol();
         LOG.tracef("getClientScopes(%s, %s, %b)%s", realm, client, defaultScopes, getShortStackTrace());
-        return entity.getClientScopes(defaultScopes)
-                .map(clientScopeId -> session.clientScopes().getClientScopeById(realm, clientScopeId))
-                .filter(Objects::nonNull)
-                .filter(clientScope -> Objects.equals(clientScope.getProtocol(), clientProtocol))
-                .collect(Collectors.toMap(ClientScopeModel::getName, Function.identity()));
+        Map<String, ClientScopeModel> clientScopes = new HashMap<>();
+        FileClientTokenProfile.of(entity)
+                .getClientScopeIds(defaultScopes)
+                .forEach((name, clientScopeId) ->
+                        clientScopes.put(name, session.clientScopes().getClientScopeById(realm, clientScopeId)));
+        return clientScopes;
     }
 
     /**
@@ -313,8 +300,7 @@ public class FileClientProvider implements ClientProvider {
     @Deprecated(forRemoval = true)
     @Override
     public Map<ClientModel, Set<String>> getAllRedirectUrisOfEnabledClients(RealmModel realm) {
-        try (Stream<FileClientEntity> st = FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
+        try (Stream<FileClientEntity> st = FileClientStore.readAll(realm.getId()).stream()
                 .filter(client -> Boolean.TRUE.equals(client.isEnabled()))
                 .sorted(Comparator.comparing(FileClientEntity::getClientId))) {
             return st.filter(mce -> mce.getRedirectUris() != null
@@ -325,14 +311,19 @@ public class FileClientProvider implements ClientProvider {
     }
 
     public void preRemove(RealmModel realm, RoleModel role) {
-        try (Stream<FileClientEntity> toRemove = FileClientStore.readAll().stream()
-                .filter(client -> realm.getId().equals(client.getRealmId()))
-                .filter(client -> client.getScopeMappings().contains(role.getId()))
-                .sorted(Comparator.comparing(FileClientEntity::getClientId))) {
+        try (Stream<FileClientEntity> toRemove =
+                FileClientStore.readByScopeMapping(role.getId(), realm.getId()).stream()
+                        .sorted(Comparator.comparing(FileClientEntity::getClientId))) {
             toRemove.forEach(clientEntity -> clientEntity.removeScopeMapping(role.getId()));
         }
     }
 
+    public void preRemove(RealmModel realm, ClientScopeModel clientScope) {
+        LOG.tracef("preRemove(%s, %s)%s", realm, clientScope, getShortStackTrace());
+        FileClientStore.readByClientScope(clientScope.getId(), realm.getId())
+                .forEach(clientEntity -> clientEntity.removeClientScope(clientScope.getId()));
+    }
+
     public void preRemove(RealmModel realm) {
         LOG.tracef("preRemove(%s)%s", realm, getShortStackTrace());
         FileClientStore.deleteByRealmId(realm.getId());
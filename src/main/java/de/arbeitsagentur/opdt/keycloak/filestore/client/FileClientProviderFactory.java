@@ -54,6 +54,8 @@ public class FileClientProviderFactory
             create(session).preRemove((RealmModel) params[0]);
         } else if (type == MapProviderObjectType.ROLE_BEFORE_REMOVE) {
             create(session).preRemove((RealmModel) params[0], (RoleModel) params[1]);
+        } else if (type == MapProviderObjectType.CLIENT_SCOPE_BEFORE_REMOVE) {
+            create(session).preRemove((RealmModel) params[0], (ClientScopeModel) params[1]);
         } else if (type == MapProviderObjectType.CLIENT_AFTER_REMOVE) {
             session.getKeycloakSessionFactory().publish(new ClientModel.ClientRemovedEvent() {
                 @Override
@@ -17,11 +17,17 @@
 
 package de.arbeitsagentur.opdt.keycloak.filestore.client;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityCount;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityIO;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityKey;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityReference;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
-import java.nio.file.Files;
+import de.arbeitsagentur.opdt.keycloak.filestore.IndexedAttributes;
+import de.arbeitsagentur.opdt.keycloak.filestore.SearchField;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /** Note: The clientId is the filename, not the id. */
 public class FileClientStore {
@@ -37,13 +43,67 @@ public class FileClientStore {
         if (clientId == null || realmId == null) {
             return false;
         }
-        return Files.exists(createFilePath(clientId, realmId));
+        return EntityStore.exists(createFilePath(clientId, realmId));
     }
 
     public static List<FileClientEntity> readAll() {
         return EntityStore.getAll(FileClientEntity.class);
     }
 
+    public static List<FileClientEntity> readAll(String realmId) {
+        return EntityStore.getAll(FileClientEntity.class, realmId);
+    }
+
+    /** Returns a page of the clients of the realm ordered by clientId, {@code null} meaning no bound. */
+    public static List<FileClientEntity> readAll(String realmId, Integer firstResult, Integer maxResults) {
+        return EntityStore.getAll(
+                FileClientEntity.class,
+                realmId,
+                Comparator.comparing(FileClientEntity::getClientId),
+                firstResult == null ? 0 : firstResult,
+                maxResults == null ? -1 : maxResults);
+    }
+
+    public static FileClientEntity readByClientId(String clientId, String realmId) {
+        List<FileClientEntity> clients = EntityStore.getByKey(EntityKey.CLIENT_ID, realmId, clientId);
+        return clients.isEmpty() ? null : clients.get(0);
+    }
+
+    public static List<FileClientEntity> readAlwaysDisplayInConsole(String realmId) {
+        return EntityStore.getByKey(EntityKey.CLIENT_ALWAYS_DISPLAY_IN_CONSOLE, realmId, EntityKey.TRUE);
+    }
+
+    public static long count(String realmId) {
+        return EntityStore.count(EntityCount.CLIENTS, realmId);
+    }
+
+    public static List<FileClientEntity> readByScopeMapping(String roleId, String realmId) {
+        return EntityStore.getReferencing(EntityReference.CLIENT_SCOPE_MAPPING, realmId, roleId);
+    }
+
+    public static List<FileClientEntity> readByClientScope(String clientScopeId, String realmId) {
+        return EntityStore.getReferencing(EntityReference.CLIENT_CLIENT_SCOPE, realmId, clientScopeId);
+    }
+
+    public static List<FileClientEntity> searchByClientId(String search, String realmId) {
+        List<FileClientEntity> candidates = EntityStore.getSearchCandidates(SearchField.CLIENT_ID, realmId, search);
+        if (candidates != null) {
+            return candidates;
+        }
+        return readAll(realmId);
+    }
+
+    public static List<FileClientEntity> readByAttributes(Map<String, String> attributes, String realmId) {
+        List<FileClientEntity> result = EntityStore.getByAttributes(IndexedAttributes.CLIENT, realmId, attributes);
+        if (result != null) {
+            return result;
+        }
+        return readAll(realmId).stream()
+                .filter(e -> attributes.entrySet().stream()
+                        .allMatch(a -> e.getAttribute(a.getKey()).contains(a.getValue())))
+                .toList();
+    }
+
     public static FileClientEntity update(FileClientEntity entity) {
         if (entity.getId() == null || entity.getRealmId() == null) {
             return null;
@@ -57,17 +117,19 @@ public class FileClientStore {
         if (clientId != null && realmId != null) {
             Path expectedPath = createFilePath(clientId, realmId);
             EntityStore.delete(expectedPath);
+            FileClientTokenProfile.invalidate(clientId, realmId);
         }
     }
 
     public static void deleteByRealmId(String realmId) {
-        EntityStore.getAll(FileClientEntity.class).stream()
-                .filter(e -> realmId.equals(e.getRealmId()))
-                .map(FileClientEntity::getId)
-                .forEach(clientId -> deleteById(clientId, realmId));
+        if (realmId != null) {
+            FileClientTokenProfile.invalidateRealm(realmId);
+            EntityStore.deleteDirectory(
+                    EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
+        }
     }
 
-    private static Path createFilePath(String groupId, String realmId) {
+    public static Path createFilePath(String groupId, String realmId) {
         return EntityIO.getPathForIdAndParentPath(
                 groupId, EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
     }
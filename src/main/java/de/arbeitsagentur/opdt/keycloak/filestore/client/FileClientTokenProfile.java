@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.client;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
+import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeStore;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.keycloak.models.ProtocolMapperModel;
+
+/**
+ * The parts of a client needed for every token, derived from the client, its client scopes and the
+ * roles it references: the default and optional client scopes of the client's protocol by name, the
+ * deduplicated protocol mapper entities, and the ids of all roles in scope (scope mappings and own roles,
+ * including their composites).
+ *
+ * <p>Profiles are shared across sessions and rebuilt as soon as the {@link EntityStore#getVersion
+ * version} of one of the entities they were derived from, or the number of the client's roles,
+ * changes.
+ */
+final class FileClientTokenProfile {
+
+    private static final Map<String, FileClientTokenProfile> PROFILES = new ConcurrentHashMap<>();
+
+    private final String realmId;
+    private final String clientId;
+    private final Map<Path, Long> versions = new HashMap<>();
+    private final int clientRoleCount;
+    private final Map<String, String> defaultClientScopeIds = new HashMap<>();
+    private final Map<String, String> optionalClientScopeIds = new HashMap<>();
+    private final List<FileProtocolMapperEntity> protocolMappers;
+    private final FileProtocolMapperUtils pmUtils;
+    private final Set<String> roleIdsInScope = new HashSet<>();
+
+    static FileClientTokenProfile of(FileClientEntity entity) {
+        String key = entity.getRealmId() + '/' + entity.getId();
+        FileClientTokenProfile profile = PROFILES.get(key);
+        if (profile == null || !profile.isCurrent()) {
+            profile = new FileClientTokenProfile(entity.getRealmId(), entity.getId());
+            PROFILES.put(key, profile);
+        }
+        return profile;
+    }
+
+    static void invalidate(String clientId, String realmId) {
+        PROFILES.remove(realmId + '/' + clientId);
+    }
+
+    /** Drops the profiles of all clients of the realm, without reading its clients. */
+    static void invalidateRealm(String realmId) {
+        String prefix = realmId + '/';
+        PROFILES.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private FileClientTokenProfile(String realmId, String clientId) {
+        this.realmId = realmId;
+        this.clientId = clientId;
+
+        // versions are taken before reading, so concurrent writes make the profile outdated
+        FileClientEntity client = read(FileClientStore.createFilePath(clientId, realmId));
+        clientRoleCount = FileRoleStore.countByClient(clientId, realmId);
+        List<FileRoleEntity> clientRoles = FileRoleStore.readByClient(clientId, realmId);
+        if (client == null) {
+            pmUtils = null;
+            protocolMappers = List.of();
+            return;
+        }
+
+        String protocol = client.getProtocol() == null ? "openid-connect" : client.getProtocol();
+        Map<String, Boolean> clientScopes = client.getClientScopes();
+        if (clientScopes != null) {
+            clientScopes.forEach((clientScopeId, defaultScope) -> {
+                FileClientScopeEntity clientScope = read(FileClientScopeStore.createFilePath(clientScopeId, realmId));
+                if (clientScope != null
+                        && defaultScope != null
+                        && Objects.equals(clientScope.getProtocol(), protocol)) {
+                    (defaultScope ? defaultClientScopeIds : optionalClientScopeIds)
+                            .put(clientScope.getName(), clientScopeId);
+                }
+            });
+        }
+
+        pmUtils = FileProtocolMapperUtils.instanceFor(protocol);
+        Collection<FileProtocolMapperEntity> mappers = client.getProtocolMappers();
+        protocolMappers = mappers == null ? List.of() : List.copyOf(new LinkedHashSet<>(mappers));
+
+        Deque<String> pending = new ArrayDeque<>();
+        if (client.getScopeMappings() != null) {
+            pending.addAll(client.getScopeMappings());
+        }
+        clientRoles.forEach(role -> pending.add(role.getId()));
+        while (!pending.isEmpty()) {
+            String roleId = pending.poll();
+            if (roleIdsInScope.add(roleId)) {
+                FileRoleEntity role = read(FileRoleStore.createFilePath(roleId, realmId));
+                if (role != null && role.getCompositeRoles() != null) {
+                    pending.addAll(role.getCompositeRoles());
+                }
+            }
+        }
+    }
+
+    private <E> E read(Path path) {
+        if (path == null) {
+            return null;
+        }
+        versions.put(path, EntityStore.getVersion(path));
+        return EntityStore.get(path);
+    }
+
+    private boolean isCurrent() {
+        for (Map.Entry<Path, Long> version : versions.entrySet()) {
+            if (EntityStore.getVersion(version.getKey()) != version.getValue()) {
+                return false;
+            }
+        }
+        return FileRoleStore.countByClient(clientId, realmId) == clientRoleCount;
+    }
+
+    /** Client scope ids of the client's protocol by client scope name. */
+    Map<String, String> getClientScopeIds(boolean defaultScopes) {
+        return Collections.unmodifiableMap(defaultScopes ? defaultClientScopeIds : optionalClientScopeIds);
+    }
+
+    /** New models of the deduplicated protocol mappers, as callers may change them. */
+    List<ProtocolMapperModel> getProtocolMappers() {
+        return protocolMappers.stream().map(pmUtils::toModel).toList();
+    }
+
+    boolean isInScope(String roleId) {
+        return roleIdsInScope.contains(roleId);
+    }
+}
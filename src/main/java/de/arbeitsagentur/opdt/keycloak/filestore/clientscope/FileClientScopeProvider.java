@@ -21,6 +21,7 @@ import static de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractFileProvi
 import static de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractFileProviderFactory.MapProviderObjectType.CLIENT_SCOPE_BEFORE_REMOVE;
 import static org.keycloak.common.util.StackUtil.getShortStackTrace;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AdapterIdentityMap;
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.function.Function;
@@ -40,7 +41,9 @@ public class FileClientScopeProvider implements ClientScopeProvider {
     }
 
     private Function<FileClientScopeEntity, ClientScopeModel> entityToAdapterFunc(RealmModel realm) {
-        return origEntity -> new FileClientScopeAdapter(session, realm, origEntity);
+        return AdapterIdentityMap.of(session)
+                .adapterFunc(
+                        ClientScopeModel.class, origEntity -> new FileClientScopeAdapter(session, realm, origEntity));
     }
 
     private boolean isEntityPartOfRealm(RealmModel realm, FileClientScopeEntity entity) {
@@ -49,8 +52,7 @@ public class FileClientScopeProvider implements ClientScopeProvider {
 
     @Override
     public Stream<ClientScopeModel> getClientScopesStream(RealmModel realm) {
-        return FileClientScopeStore.readAll().stream()
-                .filter(clientScope -> realm.getId().equals(clientScope.getRealmId()))
+        return FileClientScopeStore.readAll(realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(ClientScopeModel::getName));
     }
@@ -65,8 +67,7 @@ public class FileClientScopeProvider implements ClientScopeProvider {
             throw new ModelDuplicateException("Client scope exists: " + id);
         }
 
-        boolean doesNameAlreadyExists = FileClientScopeStore.readAll().stream()
-                .filter(clientScope -> realm.getId().equals(clientScope.getRealmId()))
+        boolean doesNameAlreadyExists = FileClientScopeStore.readAll(realm.getId()).stream()
                 .filter(clientScope -> name.equals(clientScope.getName()))
                 .map(entityToAdapterFunc(realm))
                 .findAny()
@@ -19,7 +19,6 @@ package de.arbeitsagentur.opdt.keycloak.filestore.clientscope;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityIO;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -36,13 +35,17 @@ public class FileClientScopeStore {
         if (scopeId == null || realmId == null) {
             return false;
         }
-        return Files.exists(createFilePath(scopeId, realmId));
+        return EntityStore.exists(createFilePath(scopeId, realmId));
     }
 
     public static List<FileClientScopeEntity> readAll() {
         return EntityStore.getAll(FileClientScopeEntity.class);
     }
 
+    public static List<FileClientScopeEntity> readAll(String realmId) {
+        return EntityStore.getAll(FileClientScopeEntity.class, realmId);
+    }
+
     public static FileClientScopeEntity update(FileClientScopeEntity entity) {
         if (entity.getId() == null || entity.getRealmId() == null) {
             return null;
@@ -60,13 +63,13 @@ public class FileClientScopeStore {
     }
 
     public static void deleteByRealmId(String realmId) {
-        EntityStore.getAll(FileClientScopeEntity.class).stream()
-                .filter(e -> realmId.equals(e.getRealmId()))
-                .map(FileClientScopeEntity::getId)
-                .forEach(clientId -> deleteById(clientId, realmId));
+        if (realmId != null) {
+            EntityStore.deleteDirectory(
+                    EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
+        }
     }
 
-    private static Path createFilePath(String clientScopeId, String realmId) {
+    public static Path createFilePath(String clientScopeId, String realmId) {
         return EntityIO.getPathForIdAndParentPath(
                 clientScopeId, EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
     }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.keycloak.models.KeycloakSession;
+
+/**
+ * Session-scoped identity map, returning the same adapter for the same entity within one {@link
+ * KeycloakSession}. Adapters are keyed by the entity instance the store holds, so entities deleted,
+ * re-created or re-read from disk get a new adapter, and lookups allocate no key.
+ *
+ * <p>Not thread-safe, like the session itself.
+ */
+public final class AdapterIdentityMap {
+
+    private final Map<AbstractEntity, Object> adapters = new IdentityHashMap<>();
+
+    public static AdapterIdentityMap of(KeycloakSession session) {
+        return SessionAttributesUtils.createAttributeIfAbsent(
+                session, AdapterIdentityMap.class, AdapterIdentityMap::new);
+    }
+
+    /**
+     * Returns a {@link Function} mapping entities to adapters of {@code modelType}, reusing the adapter
+     * created before for the same entity instance.
+     */
+    public <E extends AbstractEntity, M> Function<E, M> adapterFunc(Class<M> modelType, Function<E, M> createAdapter) {
+        return entity -> {
+            Object adapter = adapters.get(entity);
+            if (modelType.isInstance(adapter)) {
+                return modelType.cast(adapter);
+            }
+            M created = createAdapter.apply(entity);
+            adapters.put(entity, created);
+            return created;
+        };
+    }
+}
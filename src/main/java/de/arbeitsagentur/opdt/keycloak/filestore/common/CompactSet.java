@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Insertion-ordered set for the reference lists of entities, which are mostly empty or small. Up to
+ * {@value #MAX_PACKED_SIZE} elements are packed into an array of exactly their number (empty sets
+ * share one array), larger sets are kept in a {@link LinkedHashSet}.
+ */
+public final class CompactSet<E> extends AbstractSet<E> {
+
+    static final int MAX_PACKED_SIZE = 16;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] packed = EMPTY;
+    private Set<E> large;
+
+    public CompactSet() {}
+
+    public CompactSet(Collection<? extends E> elements) {
+        addAll(elements);
+    }
+
+    @Override
+    public int size() {
+        return large != null ? large.size() : packed.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return large != null ? large.contains(o) : indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (large != null) {
+            return large.add(e);
+        }
+        if (indexOf(e) >= 0) {
+            return false;
+        }
+        if (packed.length == MAX_PACKED_SIZE) {
+            large = new LinkedHashSet<>(elements());
+            packed = EMPTY;
+            return large.add(e);
+        }
+        packed = Arrays.copyOf(packed, packed.length + 1);
+        packed[packed.length - 1] = e;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (large != null) {
+            return large.remove(o);
+        }
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        large = null;
+        packed = EMPTY;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (large != null) {
+            return large.iterator();
+        }
+        return new Iterator<>() {
+            private int next;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return next < packed.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                removable = true;
+                return (E) packed[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--next);
+                removable = false;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<E> elements() {
+        return (Collection<E>) Arrays.asList(packed);
+    }
+
+    private int indexOf(Object o) {
+        for (int i = 0; i < packed.length; i++) {
+            if (Objects.equals(packed[i], o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int index) {
+        if (packed.length == 1) {
+            packed = EMPTY;
+            return;
+        }
+        Object[] removed = new Object[packed.length - 1];
+        System.arraycopy(packed, 0, removed, 0, index);
+        System.arraycopy(packed, index + 1, removed, index, removed.length - index);
+        packed = removed;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mutable map reading from an immutable map shared with other entities, which is only copied on the
+ * first modification, including modifications through the views returned by {@link #entrySet()},
+ * {@link #keySet()} and {@link #values()}.
+ */
+public final class CopyOnWriteMap<K, V> extends AbstractMap<K, V> {
+
+    private Map<K, V> map;
+    private boolean copied;
+
+    public CopyOnWriteMap(Map<K, V> shared) {
+        this.map = shared;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return copied ? map.entrySet() : new SharedEntrySet();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return copy().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return copy().remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        copy().putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        copy().clear();
+    }
+
+    private Map<K, V> copy() {
+        if (!copied) {
+            map = new LinkedHashMap<>(map);
+            copied = true;
+        }
+        return map;
+    }
+
+    /** Entries of the shared map, which is copied before the first removal or changed value. */
+    private final class SharedEntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            if (copied) {
+                return map.entrySet().iterator();
+            }
+
+            // the shared map never changes, so it can still be iterated once the copy is modified
+            Iterator<Entry<K, V>> entries = map.entrySet().iterator();
+            return new Iterator<>() {
+                private Entry<K, V> last;
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    last = new SharedEntry(entries.next());
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    copy().remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+    }
+
+    private final class SharedEntry extends SimpleEntry<K, V> {
+
+        SharedEntry(Entry<K, V> entry) {
+            super(entry);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return copy().put(getKey(), value);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Immutable map made of a shared base map and a small overlay of entries changed since. Adding entries
+ * only copies the overlay, and the base is copied once the overlay grows beyond {@value
+ * #MAX_OVERLAY_SIZE} entries, so single changes to large maps don't copy all entries each time.
+ */
+public final class OverlayMap<K, V> extends AbstractMap<K, V> {
+
+    static final int MAX_OVERLAY_SIZE = 32;
+
+    private final Map<K, V> base;
+    private final Map<K, V> overlay;
+    private final int size;
+
+    private OverlayMap(Map<K, V> base, Map<K, V> overlay) {
+        this.base = base;
+        this.overlay = overlay;
+        this.size = base.size()
+                + (int) overlay.keySet().stream()
+                        .filter(key -> !base.containsKey(key))
+                        .count();
+    }
+
+    public static <K, V> OverlayMap<K, V> of(Map<K, V> map) {
+        if (map instanceof OverlayMap<K, V> overlayMap) {
+            return overlayMap;
+        }
+        return new OverlayMap<>(copy(map), Map.of());
+    }
+
+    /** Returns a map with the given entries added or replaced. */
+    public OverlayMap<K, V> with(Map<? extends K, ? extends V> entries) {
+        Map<K, V> changed = new LinkedHashMap<>(overlay);
+        changed.putAll(entries);
+        if (changed.size() <= MAX_OVERLAY_SIZE) {
+            return new OverlayMap<>(base, Collections.unmodifiableMap(changed));
+        }
+        Map<K, V> merged = new LinkedHashMap<>(base);
+        merged.putAll(changed);
+        return new OverlayMap<>(Collections.unmodifiableMap(merged), Map.of());
+    }
+
+    /** Returns a map without the given key, which copies all entries. */
+    public OverlayMap<K, V> without(Object key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        Map<K, V> remaining = new LinkedHashMap<>(this);
+        remaining.remove(key);
+        return new OverlayMap<>(Collections.unmodifiableMap(remaining), Map.of());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || base.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return overlay.containsKey(key) ? overlay.get(key) : base.get(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (overlay.isEmpty()) {
+            return base.entrySet();
+        }
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Stream<Entry<K, V>> baseEntries = base.entrySet().stream()
+                        .map(entry -> overlay.containsKey(entry.getKey())
+                                ? new SimpleImmutableEntry<>(entry.getKey(), overlay.get(entry.getKey()))
+                                : entry);
+                Stream<Entry<K, V>> addedEntries =
+                        overlay.entrySet().stream().filter(entry -> !base.containsKey(entry.getKey()));
+                return Stream.concat(baseEntries, addedEntries).iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static <K, V> Map<K, V> copy(Map<K, V> map) {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+    }
+}
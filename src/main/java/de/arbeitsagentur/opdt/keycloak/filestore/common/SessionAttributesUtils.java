@@ -19,6 +19,7 @@ package de.arbeitsagentur.opdt.keycloak.filestore.common;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import org.jboss.logging.Logger;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.provider.Provider;
@@ -67,4 +68,25 @@ public class SessionAttributesUtils {
         session.setAttribute(uniqueKey, provider);
         return provider;
     }
+
+    /**
+     * Used for creating a session-scoped object only once within one KeycloakSession.
+     *
+     * @param session current Keycloak session
+     * @param attributeClass class of the requested object, also used as attribute key
+     * @param createNew function that creates a new instance of the object
+     * @param <T> type of the object
+     * @return an instance of the object either from session attributes or freshly created.
+     */
+    public static <T> T createAttributeIfAbsent(
+            KeycloakSession session, Class<T> attributeClass, Supplier<? extends T> createNew) {
+        String uniqueKey = attributeClass.getName();
+        T attribute = session.getAttribute(uniqueKey, attributeClass);
+        if (attribute != null) {
+            return attribute;
+        }
+        attribute = createNew.get();
+        session.setAttribute(uniqueKey, attribute);
+        return attribute;
+    }
 }
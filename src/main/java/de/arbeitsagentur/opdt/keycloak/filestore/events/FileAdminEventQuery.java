@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.keycloak.events.admin.AdminEvent;
 import org.keycloak.events.admin.AdminEventQuery;
@@ -147,6 +148,8 @@ public abstract class FileAdminEventQuery implements AdminEventQuery {
     public Stream<AdminEvent> getResultStream() {
         Comparator<AdminEvent> ENTITY_COMPARATOR = Comparator.comparing(
                 AdminEvent::getTime, "DESC".equals(this.order) ? Comparator.reverseOrder() : Comparator.naturalOrder());
+        Predicate<String> resourcePathMatcher =
+                this.resourcePath == null ? null : SearchPatterns.likeMatcher(this.resourcePath.replace('*', '%'));
         Stream<AdminEvent> adminEvents = read().filter(
                         ev -> this.realmId == null || this.realmId.equals(ev.getRealmId()))
                 .filter(ev -> this.authRealmId == null
@@ -165,9 +168,8 @@ public abstract class FileAdminEventQuery implements AdminEventQuery {
                         || ev.getOperationType() != null && this.operationTypes.contains(ev.getOperationType()))
                 .filter(ev -> this.resourceTypes == null
                         || ev.getResourceType() != null && this.resourceTypes.contains(ev.getResourceType()))
-                .filter(ev -> this.resourcePath == null
-                        || (ev.getResourceType() != null
-                                && SearchPatterns.like(ev.getResourcePath(), this.resourcePath.replace('*', '%'))))
+                .filter(ev -> resourcePathMatcher == null
+                        || (ev.getResourceType() != null && resourcePathMatcher.test(ev.getResourcePath())))
                 .filter(ev -> this.fromTimestamp == null || ev.getTime() >= this.fromTimestamp)
                 .filter(ev -> this.toTimestamp == null || ev.getTime() <= this.toTimestamp)
                 .sorted(ENTITY_COMPARATOR);
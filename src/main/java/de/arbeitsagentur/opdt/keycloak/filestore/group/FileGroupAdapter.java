@@ -20,6 +20,7 @@ package de.arbeitsagentur.opdt.keycloak.filestore.group;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 import org.keycloak.models.*;
 import org.keycloak.models.utils.RoleUtils;
@@ -129,7 +130,7 @@ public abstract class FileGroupAdapter extends AbstractGroupModel<FileGroupEntit
 
     @Override
     public boolean hasDirectRole(RoleModel role) {
-        List<String> grantedRoles = entity.getGrantedRoles();
+        Set<String> grantedRoles = entity.getGrantedRoles();
         return grantedRoles != null && grantedRoles.contains(role.getId());
     }
 
@@ -147,7 +148,7 @@ public abstract class FileGroupAdapter extends AbstractGroupModel<FileGroupEntit
 
     @Override
     public Stream<RoleModel> getRoleMappingsStream() {
-        List<String> grantedRoles = entity.getGrantedRoles();
+        Set<String> grantedRoles = entity.getGrantedRoles();
         return grantedRoles == null
                 ? Stream.empty()
                 : grantedRoles.stream().map(roleId -> session.roles().getRoleById(realm, roleId));
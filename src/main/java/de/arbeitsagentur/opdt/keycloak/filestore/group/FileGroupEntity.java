@@ -18,23 +18,26 @@
 package de.arbeitsagentur.opdt.keycloak.filestore.group;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.CompactSet;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 import org.keycloak.models.GroupModel;
 
 public class FileGroupEntity implements AbstractEntity, UpdatableEntity {
 
     private String id;
-    private Map<String, Object> attributes = new HashMap<>();
+    private Map<String, Object> attributes = Map.of();
     private boolean isUpdated = false;
     private String name;
     private String parentId;
     private String realmId;
     private GroupModel.Type type;
-    private List<String> grantedRoles = new ArrayList<>();
+    private Set<String> grantedRoles = new CompactSet<>();
 
     public String getId() {
         return id;
@@ -54,12 +57,12 @@ public class FileGroupEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public void setAttribute(String key, List<String> singleListValue) {
-        this.attributes.put(key, singleListValue.get(0));
+        mutableAttributes().put(key, singleListValue.get(0));
         FileGroupStore.update(this);
     }
 
     public void removeAttribute(String key) {
-        this.attributes.remove(key);
+        mutableAttributes().remove(key);
         FileGroupStore.update(this);
     }
 
@@ -109,23 +112,25 @@ public class FileGroupEntity implements AbstractEntity, UpdatableEntity {
         this.realmId = realmId;
     }
 
-    public List<String> getGrantedRoles() {
+    public Set<String> getGrantedRoles() {
         return grantedRoles;
     }
 
-    public void setGrantedRoles(List<String> grantedRoles) {
+    public void setGrantedRoles(Set<String> grantedRoles) {
         this.grantedRoles = grantedRoles;
         FileGroupStore.update(this);
     }
 
     public void addGrantedRole(String role) {
-        this.grantedRoles.add(role);
-        FileGroupStore.update(this);
+        if (this.grantedRoles.add(role)) {
+            FileGroupStore.update(this);
+        }
     }
 
     public void removeGrantedRole(String role) {
-        this.grantedRoles.remove(role);
-        FileGroupStore.update(this);
+        if (this.grantedRoles.remove(role)) {
+            FileGroupStore.update(this);
+        }
     }
 
     public GroupModel.Type getType() {
@@ -139,4 +144,29 @@ public class FileGroupEntity implements AbstractEntity, UpdatableEntity {
     public void setType(GroupModel.Type type) {
         this.type = type;
     }
+
+    /**
+     * Replaces the collections created while parsing by their compact counterparts without writing
+     * the entity: missing or empty attributes by the shared empty map, which is replaced on the first
+     * change, and the ids of {@link #getGrantedRoles()} by a {@link CompactSet}. The
+     * ids of the granted roles are replaced by their {@code canonical} instances.
+     */
+    public void compact(UnaryOperator<String> canonical) {
+        if (attributes == null || attributes.isEmpty()) {
+            attributes = Map.of();
+        }
+        CompactSet<String> compacted = new CompactSet<>();
+        if (grantedRoles != null) {
+            grantedRoles.forEach(roleId -> compacted.add(canonical.apply(roleId)));
+        }
+        grantedRoles = compacted;
+    }
+
+    /** The attributes to modify, copying the shared empty map or a parsed immutable one first. */
+    private Map<String, Object> mutableAttributes() {
+        if (!(attributes instanceof HashMap)) {
+            attributes = attributes == null ? new LinkedHashMap<>() : new LinkedHashMap<>(attributes);
+        }
+        return attributes;
+    }
 }
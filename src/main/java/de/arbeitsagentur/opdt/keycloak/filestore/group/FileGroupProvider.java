@@ -20,12 +20,15 @@ package de.arbeitsagentur.opdt.keycloak.filestore.group;
 import static org.keycloak.common.util.StackUtil.getShortStackTrace;
 import static org.keycloak.utils.StreamsUtil.paginatedStream;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
 import de.arbeitsagentur.opdt.keycloak.filestore.SearchPatterns;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractFileProviderFactory;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AdapterIdentityMap;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
 import org.keycloak.models.*;
@@ -41,12 +44,13 @@ public class FileGroupProvider implements GroupProvider {
     }
 
     private Function<FileGroupEntity, GroupModel> entityToAdapterFunc(RealmModel realm) {
-        return origEntity -> new FileGroupAdapter(session, realm, origEntity) {
-            @Override
-            public Stream<GroupModel> getSubGroupsStream() {
-                return getGroupsByParentId(realm, this.getId());
-            }
-        };
+        return AdapterIdentityMap.of(session)
+                .adapterFunc(GroupModel.class, origEntity -> new FileGroupAdapter(session, realm, origEntity) {
+                    @Override
+                    public Stream<GroupModel> getSubGroupsStream() {
+                        return getGroupsByParentId(realm, this.getId());
+                    }
+                });
     }
 
     @Override
@@ -70,8 +74,7 @@ public class FileGroupProvider implements GroupProvider {
         }
 
         LOG.tracef("getGroupByName(%s, %s)%s", realm, name, getShortStackTrace());
-        Stream<FileGroupEntity> groupStream = FileGroupStore.readAll().stream()
-                .filter(group -> group.getRealmId().equals(realm.getId()))
+        Stream<FileGroupEntity> groupStream = FileGroupStore.readAll(realm.getId()).stream()
                 .filter(group -> group.getName().equals(name));
 
         if (parent != null) {
@@ -85,8 +88,7 @@ public class FileGroupProvider implements GroupProvider {
 
     @Override
     public Stream<GroupModel> getGroupsStream(RealmModel realm) {
-        return FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        return FileGroupStore.readAll(realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(GroupModel::getName));
     }
@@ -99,7 +101,8 @@ public class FileGroupProvider implements GroupProvider {
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(GroupModel::getName));
         if (search != null) {
-            groups = groups.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), "%" + search + "%"));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            groups = groups.filter(entity -> matcher.test(entity.getName()));
         }
         return paginatedStream(groups, first, max);
     }
@@ -107,28 +110,23 @@ public class FileGroupProvider implements GroupProvider {
     @Override
     public Long getGroupsCount(RealmModel realm, Boolean onlyTopGroups) {
         LOG.tracef("getGroupsCount(%s, %s)%s", realm, onlyTopGroups, getShortStackTrace());
-        Stream<GroupModel> groups = FileGroupStore.readAll().stream()
-                .filter(group -> group.getRealmId().equals(realm.getId()))
-                .map(entityToAdapterFunc(realm))
-                .sorted(Comparator.comparing(GroupModel::getName));
-        if (Boolean.TRUE.equals(onlyTopGroups)) {
-            groups = groups.filter(group -> group.getParentId() == null);
-        }
-        return groups.count();
+        return FileGroupStore.count(realm.getId(), Boolean.TRUE.equals(onlyTopGroups));
     }
 
     @Override
     public Long getGroupsCountByNameContaining(RealmModel realm, String search) {
-        return searchForGroupByNameStream(realm, search, false, null, null).count();
+        Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+        return FileGroupStore.searchByName(search, realm.getId()).stream()
+                .filter(group -> group.getParentId() == null) // only parent nodes, see searchForGroupByNameStream
+                .filter(group -> matcher.test(group.getName()))
+                .count();
     }
 
     @Override
     public Stream<GroupModel> getGroupsByRoleStream(
             RealmModel realm, RoleModel role, Integer firstResult, Integer maxResults) {
         LOG.tracef("getGroupsByRole(%s, %s, %d, %d)%s", realm, role, firstResult, maxResults, getShortStackTrace());
-        Stream<GroupModel> groups = FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
-                .filter(group -> group.getGrantedRoles().contains(role.getId()))
+        Stream<GroupModel> groups = FileGroupStore.readByGrantedRole(role.getId(), realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(GroupModel::getName));
         return paginatedStream(groups, firstResult, maxResults);
@@ -143,8 +141,7 @@ public class FileGroupProvider implements GroupProvider {
     @Override
     public Stream<GroupModel> getTopLevelGroupsStream(RealmModel realm, Integer firstResult, Integer maxResults) {
         LOG.tracef("getTopLevelGroupsStream(%s, %s, %s)%s", realm, firstResult, maxResults, getShortStackTrace());
-        Stream<GroupModel> groups = FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        Stream<GroupModel> groups = FileGroupStore.readAll(realm.getId()).stream()
                 .filter(group -> group.getParentId() == null)
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(GroupModel::getName));
@@ -157,15 +154,15 @@ public class FileGroupProvider implements GroupProvider {
         LOG.tracef(
                 "getTopLevelGroupsStream(%s, %s, %b, %s, %s)%s",
                 realm, search, exact, firstResult, maxResults, getShortStackTrace());
-        Stream<GroupModel> groups = FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        Stream<GroupModel> groups = FileGroupStore.searchByName(search, realm.getId()).stream()
                 .filter(group -> group.getParentId() == null) // only parent nodes
                 .map(entityToAdapterFunc(realm));
 
         if (exact != null && exact.equals(Boolean.TRUE)) {
             groups = groups.filter(group -> search.equals(group.getName()));
         } else {
-            groups = groups.filter(group -> SearchPatterns.insensitiveLike(group.getName(), "%" + search + "%"));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            groups = groups.filter(group -> matcher.test(group.getName()));
         }
         groups = groups.sorted(Comparator.comparing(GroupModel::getName));
         return paginatedStream(groups, firstResult, maxResults);
@@ -177,15 +174,15 @@ public class FileGroupProvider implements GroupProvider {
         LOG.tracef(
                 "searchForGroupByNameStream(%s, %s, %s, %b, %d, %d)%s",
                 realm, session, search, exact, firstResult, maxResults, getShortStackTrace());
-        Stream<GroupModel> groups = FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        Stream<GroupModel> groups = FileGroupStore.searchByName(search, realm.getId()).stream()
                 .filter(group -> group.getParentId() == null) // only parent nodes
                 .map(entityToAdapterFunc(realm));
 
         if (Boolean.TRUE.equals(exact)) {
             groups = groups.filter(group -> search.equals(group.getName()));
         } else {
-            groups = groups.filter(group -> SearchPatterns.insensitiveLike(group.getName(), "%" + search + "%"));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            groups = groups.filter(group -> matcher.test(group.getName()));
         }
 
         groups = groups.sorted(Comparator.comparing(GroupModel::getName));
@@ -208,13 +205,9 @@ public class FileGroupProvider implements GroupProvider {
     @Override
     public Stream<GroupModel> searchGroupsByAttributes(
             RealmModel realm, Map<String, String> attributes, Integer firstResult, Integer maxResults) {
-        Stream<FileGroupEntity> groups =
-                FileGroupStore.readAll().stream().filter(group -> realm.getId().equals(group.getRealmId()));
-        for (Map.Entry<String, String> entry : attributes.entrySet()) {
-            groups = groups.filter(group -> group.getAttribute(entry.getKey()).contains(entry.getValue()));
-        }
-
-        var stream = groups.map(entityToAdapterFunc(realm)).sorted(Comparator.comparing(GroupModel::getName));
+        var stream = FileGroupStore.readByAttributes(attributes, realm.getId()).stream()
+                .map(entityToAdapterFunc(realm))
+                .sorted(Comparator.comparing(GroupModel::getName));
         return paginatedStream(stream, firstResult, maxResults);
     }
 
@@ -226,8 +219,7 @@ public class FileGroupProvider implements GroupProvider {
     @Override
     public GroupModel createGroup(RealmModel realm, String id, GroupModel.Type type, String name, GroupModel toParent) {
         LOG.tracef("createGroup(%s, %s, %s, %s, %s)%s", realm, id, type, name, toParent, getShortStackTrace());
-        FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        FileGroupStore.readAll(realm.getId()).stream()
                 .filter(group -> name.equals(group.getName()))
                 .filter(group -> group.getType().equals(type))
                 .filter(group -> toParent == null
@@ -278,8 +270,7 @@ public class FileGroupProvider implements GroupProvider {
             return;
         }
 
-        FileGroupStore.readAll().stream()
-                .filter(groupEntity -> realm.getId().equals(groupEntity.getRealmId()))
+        FileGroupStore.readAll(realm.getId()).stream()
                 .filter(groupEntity -> group.getName().equals(groupEntity.getName()))
                 .filter(groupEntity -> toParent == null
                         ? groupEntity.getParentId() == null
@@ -292,12 +283,14 @@ public class FileGroupProvider implements GroupProvider {
                             + realm.getName()
                             + " already exists for requested parent");
                 });
-        if (group.getParentId() != null) {
-            group.getParent().removeChild(group);
-        }
+        EntityStore.batch(() -> {
+            if (group.getParentId() != null) {
+                group.getParent().removeChild(group);
+            }
 
-        group.setParent(toParent);
-        if (toParent != null) toParent.addChild(group);
+            group.setParent(toParent);
+            if (toParent != null) toParent.addChild(group);
+        });
         String newPath = KeycloakModelUtils.buildGroupPath(group);
         String previousPath = KeycloakModelUtils.buildGroupPath(group, previousParent);
         GroupModel.GroupPathChangeEvent event = new GroupModel.GroupPathChangeEvent() {
@@ -332,8 +325,7 @@ public class FileGroupProvider implements GroupProvider {
     @Override
     public void addTopLevelGroup(RealmModel realm, GroupModel subGroup) {
         LOG.tracef("addTopLevelGroup(%s, %s)%s", realm, subGroup, getShortStackTrace());
-        FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        FileGroupStore.readAll(realm.getId()).stream()
                 .filter(group -> group.getParentId() == null)
                 .filter(group -> subGroup.getName().equals(group.getName()))
                 .findAny()
@@ -346,18 +338,14 @@ public class FileGroupProvider implements GroupProvider {
 
     public void preRemove(RealmModel realm, RoleModel role) {
         LOG.tracef("preRemove(%s, %s)%s", realm, role, getShortStackTrace());
-        FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
-                .filter(group -> group.getGrantedRoles().contains(role.getId()))
+        FileGroupStore.readByGrantedRole(role.getId(), realm.getId()).stream()
                 .map(groupEntity -> session.groups().getGroupById(realm, groupEntity.getId()))
                 .forEach(groupModel -> groupModel.deleteRoleMapping(role));
     }
 
     public void preRemove(RealmModel realm) {
         LOG.tracef("preRemove(%s)%s", realm, getShortStackTrace());
-        FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
-                .forEach(groupModel -> FileGroupStore.deleteById(groupModel.getId(), realm.getId()));
+        FileGroupStore.deleteByRealmId(realm.getId());
     }
 
     @Override
@@ -367,8 +355,7 @@ public class FileGroupProvider implements GroupProvider {
 
     private Stream<GroupModel> getGroupsByParentId(RealmModel realm, String parentId) {
         LOG.tracef("getGroupsByParentId(%s)%s", parentId, getShortStackTrace());
-        return FileGroupStore.readAll().stream()
-                .filter(group -> realm.getId().equals(group.getRealmId()))
+        return FileGroupStore.readAll(realm.getId()).stream()
                 .filter(group -> parentId.equals(group.getParentId()))
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(GroupModel::getName));
@@ -17,11 +17,15 @@
 
 package de.arbeitsagentur.opdt.keycloak.filestore.group;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityCount;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityIO;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityReference;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
-import java.nio.file.Files;
+import de.arbeitsagentur.opdt.keycloak.filestore.IndexedAttributes;
+import de.arbeitsagentur.opdt.keycloak.filestore.SearchField;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 public class FileGroupStore {
     private static final String OBJECT_DIRECTORY = "groups";
@@ -35,13 +39,44 @@ public class FileGroupStore {
         if (groupId == null || realmId == null) {
             return false;
         }
-        return Files.exists(createFilePath(groupId, realmId));
+        return EntityStore.exists(createFilePath(groupId, realmId));
     }
 
     public static List<FileGroupEntity> readAll() {
         return EntityStore.getAll(FileGroupEntity.class);
     }
 
+    public static List<FileGroupEntity> readAll(String realmId) {
+        return EntityStore.getAll(FileGroupEntity.class, realmId);
+    }
+
+    public static long count(String realmId, boolean onlyTopLevel) {
+        return EntityStore.count(onlyTopLevel ? EntityCount.TOP_LEVEL_GROUPS : EntityCount.GROUPS, realmId);
+    }
+
+    public static List<FileGroupEntity> readByGrantedRole(String roleId, String realmId) {
+        return EntityStore.getReferencing(EntityReference.GROUP_GRANTED_ROLE, realmId, roleId);
+    }
+
+    public static List<FileGroupEntity> searchByName(String search, String realmId) {
+        List<FileGroupEntity> candidates = EntityStore.getSearchCandidates(SearchField.GROUP_NAME, realmId, search);
+        if (candidates != null) {
+            return candidates;
+        }
+        return readAll(realmId);
+    }
+
+    public static List<FileGroupEntity> readByAttributes(Map<String, String> attributes, String realmId) {
+        List<FileGroupEntity> result = EntityStore.getByAttributes(IndexedAttributes.GROUP, realmId, attributes);
+        if (result != null) {
+            return result;
+        }
+        return readAll(realmId).stream()
+                .filter(e -> attributes.entrySet().stream()
+                        .allMatch(a -> e.getAttribute(a.getKey()).contains(a.getValue())))
+                .toList();
+    }
+
     public static FileGroupEntity update(FileGroupEntity entity) {
         if (entity.getId() == null || entity.getRealmId() == null) {
             return null;
@@ -59,10 +94,10 @@ public class FileGroupStore {
     }
 
     public static void deleteByRealmId(String realmId) {
-        EntityStore.getAll(FileGroupEntity.class).stream()
-                .filter(e -> realmId.equals(e.getRealmId()))
-                .map(FileGroupEntity::getId)
-                .forEach(clientId -> deleteById(clientId, realmId));
+        if (realmId != null) {
+            EntityStore.deleteDirectory(
+                    EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
+        }
     }
 
     private static Path createFilePath(String groupId, String realmId) {
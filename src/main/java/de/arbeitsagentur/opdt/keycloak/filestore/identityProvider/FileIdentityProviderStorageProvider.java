@@ -1,12 +1,10 @@
 package de.arbeitsagentur.opdt.keycloak.filestore.identityProvider;
 
-import java.util.Arrays;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileIdentityProviderIndex;
 import java.util.Comparator;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Stream;
 import org.keycloak.models.*;
-import org.keycloak.utils.StringUtil;
 
 public class FileIdentityProviderStorageProvider implements IdentityProviderStorageProvider {
     private final KeycloakSession session;
@@ -40,16 +38,12 @@ public class FileIdentityProviderStorageProvider implements IdentityProviderStor
 
     @Override
     public IdentityProviderModel getById(String internalId) {
-        return getRealm()
-                .getIdentityProvidersStream()
-                .filter(idp -> idp.getInternalId().equals(internalId))
-                .findFirst()
-                .orElse(null);
+        return getIndex().getById(session, internalId);
     }
 
     @Override
     public IdentityProviderModel getByAlias(String alias) {
-        return getRealm().getIdentityProviderByAlias(alias);
+        return getIndex().getByAlias(session, alias);
     }
 
     @Override
@@ -58,74 +52,7 @@ public class FileIdentityProviderStorageProvider implements IdentityProviderStor
         int first = firstResult == null || firstResult < 0 ? 0 : firstResult;
         int resultCount = maxResults == null || maxResults < 0 ? Integer.MAX_VALUE : maxResults;
 
-        return getRealm()
-                .getIdentityProvidersStream()
-                .filter(idp -> {
-                    if (options == null || options.isEmpty()) {
-                        return true;
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.ORGANIZATION_ID)) {
-                        String organizationId = options.get(IdentityProviderModel.ORGANIZATION_ID);
-                        if (!Objects.equals(idp.getOrganizationId(), organizationId)) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.ORGANIZATION_ID_NOT_NULL)) {
-                        if (idp.getOrganizationId() == null) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.ENABLED)) {
-                        boolean enabled = Boolean.parseBoolean(options.get(IdentityProviderModel.ENABLED));
-                        if (idp.isEnabled() != enabled) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.HIDE_ON_LOGIN)) {
-                        boolean hideOnLogin = Boolean.parseBoolean(options.get(IdentityProviderModel.HIDE_ON_LOGIN));
-                        if (idp.isHideOnLogin() != hideOnLogin) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.LINK_ONLY)) {
-                        boolean linkOnly = Boolean.parseBoolean(options.get(IdentityProviderModel.LINK_ONLY));
-                        if (idp.isLinkOnly() != linkOnly) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.ALIAS)) {
-                        String alias = options.get(IdentityProviderModel.ALIAS);
-                        if (!idp.getAlias().equals(alias)) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.ALIAS_NOT_IN)) {
-                        String aliasNotIn = options.get(IdentityProviderModel.ALIAS_NOT_IN);
-                        if (Arrays.stream(aliasNotIn.split(","))
-                                .anyMatch(alias -> idp.getAlias().equals(alias))) {
-                            return false;
-                        }
-                    }
-
-                    if (options.containsKey(IdentityProviderModel.SEARCH)) {
-                        String search = options.get(IdentityProviderModel.SEARCH);
-                        if (!StringUtil.isNullOrEmpty(search) && !idp.getAlias().contains(search)) {
-                            return false;
-                        }
-                    }
-
-                    return true;
-                })
-                .sorted(Comparator.comparing(IdentityProviderModel::getAlias))
-                .skip(first)
-                .limit(resultCount);
+        return getIndex().search(session, options, first, resultCount);
     }
 
     @Override
@@ -133,20 +60,12 @@ public class FileIdentityProviderStorageProvider implements IdentityProviderStor
         int first = firstResult == null || firstResult < 0 ? 0 : firstResult;
         int resultCount = maxResults == null || maxResults < 0 ? Integer.MAX_VALUE : maxResults;
 
-        return getRealm()
-                .getIdentityProvidersStream()
-                .filter(idp -> search == null || idp.getAlias().contains(search.replace("*", "")))
-                .filter(idp -> Objects.equals(idp.getFirstBrokerLoginFlowId(), flowId)
-                        || Objects.equals(idp.getPostBrokerLoginFlowId(), flowId))
-                .sorted(Comparator.comparing(IdentityProviderModel::getAlias))
-                .skip(first)
-                .limit(resultCount)
-                .map(IdentityProviderModel::getAlias);
+        return getIndex().getAliasesByFlow(flowId, search, first, resultCount);
     }
 
     @Override
     public long count() {
-        return getRealm().getIdentityProvidersStream().count();
+        return getIndex().count();
     }
 
     @Override
@@ -211,6 +130,10 @@ public class FileIdentityProviderStorageProvider implements IdentityProviderStor
     @Override
     public void close() {}
 
+    private FileIdentityProviderIndex getIndex() {
+        return FileIdentityProviderIndex.of(getRealm().getId());
+    }
+
     private RealmModel getRealm() {
         RealmModel realm = session.getContext().getRealm();
         if (realm == null) {
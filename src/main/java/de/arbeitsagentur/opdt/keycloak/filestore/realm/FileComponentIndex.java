@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.realm;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The components of a realm grouped by provider type, e.g. to find the user storage providers of a
+ * realm without going through all of its components.
+ *
+ * <p>Indexes are shared across sessions and rebuilt as soon as the {@link EntityStore#getVersion
+ * version} of the realm changes. Components are embedded in the realm, so every change to them is
+ * written through {@link FileRealmStore#update}.
+ */
+final class FileComponentIndex {
+
+    private static final Map<String, FileComponentIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final long version;
+    private final Map<String, List<FileComponentEntity>> byProviderType = new HashMap<>();
+
+    static FileComponentIndex of(String realmId) {
+        Path path = FileRealmStore.createFilePath(realmId);
+        long version = EntityStore.getVersion(path);
+        FileComponentIndex index = INDEXES.get(realmId);
+        if (index == null || index.version != version) {
+            // the version is taken before reading, so concurrent writes make the index outdated
+            FileRealmEntity realm = EntityStore.get(path);
+            index = new FileComponentIndex(version, realm);
+            if (realm != null) {
+                INDEXES.put(realmId, index);
+            } else {
+                INDEXES.remove(realmId);
+            }
+        }
+        return index;
+    }
+
+    /** Drops the index of a removed realm, indexes are otherwise only replaced on access. */
+    static void invalidate(String realmId) {
+        INDEXES.remove(realmId);
+    }
+
+    static boolean isCached(String realmId) {
+        return INDEXES.containsKey(realmId);
+    }
+
+    private FileComponentIndex(long version, FileRealmEntity realm) {
+        this.version = version;
+        if (realm == null || realm.getComponents() == null) {
+            return;
+        }
+
+        for (FileComponentEntity component : realm.getComponents()) {
+            byProviderType
+                    .computeIfAbsent(component.getProviderType(), k -> new ArrayList<>())
+                    .add(component);
+        }
+    }
+
+    List<FileComponentEntity> getByProviderType(String providerType) {
+        return byProviderType.getOrDefault(providerType, List.of());
+    }
+}
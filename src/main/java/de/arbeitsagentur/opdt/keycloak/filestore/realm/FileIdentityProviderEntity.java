@@ -39,6 +39,7 @@ public class FileIdentityProviderEntity implements AbstractEntity, UpdatableEnti
     private Boolean trustEmail = false;
     private Boolean storeToken = false;
     private Boolean linkOnly = false;
+    private Boolean hideOnLogin = false;
     private Boolean addReadTokenRoleOnCreate = false;
     private Boolean authenticateByDefault = false;
     private Map<String, String> config;
@@ -57,6 +58,7 @@ public class FileIdentityProviderEntity implements AbstractEntity, UpdatableEnti
         entity.setTrustEmail(model.isTrustEmail());
         entity.setStoreToken(model.isStoreToken());
         entity.setLinkOnly(model.isLinkOnly());
+        entity.setHideOnLogin(model.isHideOnLogin());
         entity.setAddReadTokenRoleOnCreate(model.isAddReadTokenRoleOnCreate());
         entity.setAuthenticateByDefault(model.isAuthenticateByDefault());
         entity.setConfig(model.getConfig());
@@ -82,6 +84,8 @@ public class FileIdentityProviderEntity implements AbstractEntity, UpdatableEnti
         model.setStoreToken(storeToken == null ? false : storeToken);
         Boolean linkOnly = entity.isLinkOnly();
         model.setLinkOnly(linkOnly == null ? false : linkOnly);
+        Boolean hideOnLogin = entity.isHideOnLogin();
+        model.setHideOnLogin(hideOnLogin == null ? false : hideOnLogin);
         Boolean addReadTokenRoleOnCreate = entity.isAddReadTokenRoleOnCreate();
         model.setAddReadTokenRoleOnCreate(addReadTokenRoleOnCreate == null ? false : addReadTokenRoleOnCreate);
         Boolean authenticateByDefault = entity.isAuthenticateByDefault();
@@ -178,6 +182,14 @@ public class FileIdentityProviderEntity implements AbstractEntity, UpdatableEnti
         this.linkOnly = linkOnly;
     }
 
+    public Boolean isHideOnLogin() {
+        return this.hideOnLogin;
+    }
+
+    public void setHideOnLogin(Boolean hideOnLogin) {
+        this.hideOnLogin = hideOnLogin;
+    }
+
     public Boolean isAddReadTokenRoleOnCreate() {
         return this.addReadTokenRoleOnCreate;
     }
@@ -222,6 +234,10 @@ public class FileIdentityProviderEntity implements AbstractEntity, UpdatableEnti
         return linkOnly;
     }
 
+    public Boolean getHideOnLogin() {
+        return hideOnLogin;
+    }
+
     public Boolean getAddReadTokenRoleOnCreate() {
         return addReadTokenRoleOnCreate;
     }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.realm;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
+import org.keycloak.broker.provider.IdentityProvider;
+import org.keycloak.broker.provider.IdentityProviderFactory;
+import org.keycloak.broker.social.SocialIdentityProvider;
+import org.keycloak.models.IdentityProviderModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.utils.StringUtil;
+
+/**
+ * The identity providers of a realm by internal id, alias, organization and broker login flow, each
+ * sorted by alias, plus the providers offered on the login page (enabled, neither link-only nor
+ * hidden on login).
+ *
+ * <p>Indexes are shared across sessions and rebuilt as soon as the {@link EntityStore#getVersion
+ * version} of the realm changes. Identity providers are embedded in the realm, so every change to
+ * them is written through {@link FileRealmStore#update}.
+ */
+public final class FileIdentityProviderIndex {
+
+    private static final Logger LOG = Logger.getLogger(FileIdentityProviderIndex.class);
+    private static final Map<String, FileIdentityProviderIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final long version;
+    private final List<FileIdentityProviderEntity> sortedByAlias = new ArrayList<>();
+    private final List<FileIdentityProviderEntity> loginPage = new ArrayList<>();
+    private final Map<String, FileIdentityProviderEntity> byId = new HashMap<>();
+    private final Map<String, FileIdentityProviderEntity> byAlias = new HashMap<>();
+    private final Map<String, List<FileIdentityProviderEntity>> byOrganizationId = new HashMap<>();
+    private final Map<String, List<FileIdentityProviderEntity>> byFlowId = new HashMap<>();
+
+    public static FileIdentityProviderIndex of(String realmId) {
+        Path path = FileRealmStore.createFilePath(realmId);
+        long version = EntityStore.getVersion(path);
+        FileIdentityProviderIndex index = INDEXES.get(realmId);
+        if (index == null || index.version != version) {
+            // the version is taken before reading, so concurrent writes make the index outdated
+            FileRealmEntity realm = EntityStore.get(path);
+            index = new FileIdentityProviderIndex(version, realm);
+            if (realm != null) {
+                INDEXES.put(realmId, index);
+            } else {
+                INDEXES.remove(realmId);
+            }
+        }
+        return index;
+    }
+
+    /** Drops the index of a removed realm, indexes are otherwise only replaced on access. */
+    static void invalidate(String realmId) {
+        INDEXES.remove(realmId);
+    }
+
+    static boolean isCached(String realmId) {
+        return INDEXES.containsKey(realmId);
+    }
+
+    private FileIdentityProviderIndex(long version, FileRealmEntity realm) {
+        this.version = version;
+        if (realm == null || realm.getIdentityProviders() == null) {
+            return;
+        }
+
+        sortedByAlias.addAll(realm.getIdentityProviders());
+        sortedByAlias.sort(Comparator.comparing(
+                FileIdentityProviderEntity::getAlias, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (FileIdentityProviderEntity idp : sortedByAlias) {
+            byId.put(idp.getId(), idp);
+            byAlias.put(idp.getAlias(), idp);
+            byOrganizationId
+                    .computeIfAbsent(idp.getOrganizationId(), k -> new ArrayList<>())
+                    .add(idp);
+            if (idp.getFirstBrokerLoginFlowId() != null) {
+                byFlowId.computeIfAbsent(idp.getFirstBrokerLoginFlowId(), k -> new ArrayList<>())
+                        .add(idp);
+            }
+            if (idp.getPostBrokerLoginFlowId() != null
+                    && !idp.getPostBrokerLoginFlowId().equals(idp.getFirstBrokerLoginFlowId())) {
+                byFlowId.computeIfAbsent(idp.getPostBrokerLoginFlowId(), k -> new ArrayList<>())
+                        .add(idp);
+            }
+            if (isTrue(idp.isEnabled()) && !isTrue(idp.isLinkOnly()) && !isTrue(idp.isHideOnLogin())) {
+                loginPage.add(idp);
+            }
+        }
+    }
+
+    public IdentityProviderModel getById(KeycloakSession session, String internalId) {
+        return toModel(session).apply(byId.get(internalId));
+    }
+
+    public IdentityProviderModel getByAlias(KeycloakSession session, String alias) {
+        return toModel(session).apply(byAlias.get(alias));
+    }
+
+    public long count() {
+        return sortedByAlias.size();
+    }
+
+    /** Identity providers matching the search options of {@code IdentityProviderStorageProvider}. */
+    public Stream<IdentityProviderModel> search(
+            KeycloakSession session, Map<String, String> options, int firstResult, int maxResults) {
+        return getCandidates(options).stream()
+                .filter(idp -> matches(idp, options))
+                .skip(firstResult)
+                .limit(maxResults)
+                .map(toModel(session));
+    }
+
+    /** Aliases of the identity providers using the given flow as first or post broker login flow. */
+    public Stream<String> getAliasesByFlow(String flowId, String search, int firstResult, int maxResults) {
+        return byFlowId.getOrDefault(flowId, List.of()).stream()
+                .filter(idp -> search == null || idp.getAlias().contains(search.replace("*", "")))
+                .skip(firstResult)
+                .limit(maxResults)
+                .map(FileIdentityProviderEntity::getAlias);
+    }
+
+    private List<FileIdentityProviderEntity> getCandidates(Map<String, String> options) {
+        if (options == null || options.isEmpty()) {
+            return sortedByAlias;
+        }
+        if (options.containsKey(IdentityProviderModel.ORGANIZATION_ID)) {
+            return byOrganizationId.getOrDefault(options.get(IdentityProviderModel.ORGANIZATION_ID), List.of());
+        }
+        if (Boolean.parseBoolean(options.get(IdentityProviderModel.ENABLED))
+                && "false".equalsIgnoreCase(options.get(IdentityProviderModel.LINK_ONLY))
+                && "false".equalsIgnoreCase(options.get(IdentityProviderModel.HIDE_ON_LOGIN))) {
+            return loginPage;
+        }
+        return sortedByAlias;
+    }
+
+    private static boolean matches(FileIdentityProviderEntity idp, Map<String, String> options) {
+        if (options == null || options.isEmpty()) {
+            return true;
+        }
+
+        if (options.containsKey(IdentityProviderModel.ORGANIZATION_ID)) {
+            String organizationId = options.get(IdentityProviderModel.ORGANIZATION_ID);
+            if (!Objects.equals(idp.getOrganizationId(), organizationId)) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.ORGANIZATION_ID_NOT_NULL)) {
+            if (idp.getOrganizationId() == null) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.ENABLED)) {
+            boolean enabled = Boolean.parseBoolean(options.get(IdentityProviderModel.ENABLED));
+            if (isTrue(idp.isEnabled()) != enabled) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.HIDE_ON_LOGIN)) {
+            boolean hideOnLogin = Boolean.parseBoolean(options.get(IdentityProviderModel.HIDE_ON_LOGIN));
+            if (isTrue(idp.isHideOnLogin()) != hideOnLogin) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.LINK_ONLY)) {
+            boolean linkOnly = Boolean.parseBoolean(options.get(IdentityProviderModel.LINK_ONLY));
+            if (isTrue(idp.isLinkOnly()) != linkOnly) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.ALIAS)) {
+            String alias = options.get(IdentityProviderModel.ALIAS);
+            if (!idp.getAlias().equals(alias)) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.ALIAS_NOT_IN)) {
+            String aliasNotIn = options.get(IdentityProviderModel.ALIAS_NOT_IN);
+            if (Arrays.stream(aliasNotIn.split(","))
+                    .anyMatch(alias -> idp.getAlias().equals(alias))) {
+                return false;
+            }
+        }
+
+        if (options.containsKey(IdentityProviderModel.SEARCH)) {
+            String search = options.get(IdentityProviderModel.SEARCH);
+            if (!StringUtil.isNullOrEmpty(search) && !idp.getAlias().contains(search)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isTrue(Boolean value) {
+        return Boolean.TRUE.equals(value);
+    }
+
+    /** Converts entities to models, looking up each provider factory only once. */
+    static Function<FileIdentityProviderEntity, IdentityProviderModel> toModel(KeycloakSession session) {
+        Map<String, Optional<IdentityProviderFactory>> factories = new HashMap<>();
+        return entity -> FileIdentityProviderEntity.toModel(entity, () -> factories
+                .computeIfAbsent(entity.getProviderId(), providerId -> getProviderFactory(session, providerId))
+                .map(IdentityProviderFactory::createConfig)
+                .orElseGet(IdentityProviderModel::new));
+    }
+
+    // This is a violation of layering requirements, this should NOT be in store code.
+    // However, there is no easy way around this given the current number of IdentityProviderModel
+    // implementations
+    private static Optional<IdentityProviderFactory> getProviderFactory(KeycloakSession session, String providerId) {
+        Optional<IdentityProviderFactory> factory = Stream.concat(
+                        session.getKeycloakSessionFactory().getProviderFactoriesStream(IdentityProvider.class),
+                        session.getKeycloakSessionFactory().getProviderFactoriesStream(SocialIdentityProvider.class))
+                .filter(providerFactory -> Objects.equals(providerFactory.getId(), providerId))
+                .map(IdentityProviderFactory.class::cast)
+                .findFirst();
+        if (factory.isEmpty()) {
+            LOG.warn("Couldn't find a suitable identity provider factory for " + providerId);
+        }
+        return factory;
+    }
+}
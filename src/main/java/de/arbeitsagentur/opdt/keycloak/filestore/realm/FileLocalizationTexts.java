@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.realm;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.common.OverlayMap;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * The localization texts of a realm by locale, sorted by locale. The texts of a locale are an
+ * immutable {@link OverlayMap}, so single texts can be added without copying all texts of the locale.
+ *
+ * <p>Texts of a locale stored in its own file are only read on the first access to that locale.
+ * Iterating over the entries reads all locales, the {@link #keySet() locales} themselves are known
+ * without reading.
+ */
+public final class FileLocalizationTexts extends AbstractMap<String, Map<String, String>> {
+
+    private final Map<String, OverlayMap<String, String>> loaded = new ConcurrentSkipListMap<>();
+    private final Map<String, Supplier<Map<String, String>>> unloaded = new ConcurrentSkipListMap<>();
+
+    public FileLocalizationTexts() {}
+
+    public FileLocalizationTexts(Map<String, Map<String, String>> texts) {
+        if (texts != null) {
+            texts.forEach(this::put);
+        }
+    }
+
+    /** Adds a locale whose texts are read by {@code loader} on its first access. */
+    public synchronized void putUnloaded(String locale, Supplier<Map<String, String>> loader) {
+        unloaded.put(locale, loader);
+        loaded.remove(locale);
+    }
+
+    public boolean isLoaded(String locale) {
+        return loaded.containsKey(locale);
+    }
+
+    @Override
+    public int size() {
+        return loaded.size() + unloaded.size();
+    }
+
+    @Override
+    public boolean containsKey(Object locale) {
+        return loaded.containsKey(locale) || unloaded.containsKey(locale);
+    }
+
+    @Override
+    public Map<String, String> get(Object locale) {
+        Map<String, String> texts = loaded.get(locale);
+        if (texts != null) {
+            return texts;
+        }
+        // a concurrent load moves the locale to loaded before removing it from unloaded
+        return unloaded.containsKey(locale) ? load((String) locale) : loaded.get(locale);
+    }
+
+    @Override
+    public synchronized Map<String, String> put(String locale, Map<String, String> texts) {
+        Map<String, String> previous = get(locale);
+        unloaded.remove(locale);
+        loaded.put(locale, OverlayMap.of(texts));
+        return previous;
+    }
+
+    @Override
+    public synchronized Map<String, String> remove(Object locale) {
+        Map<String, String> previous = get(locale);
+        loaded.remove(locale);
+        return previous;
+    }
+
+    /** Adds or replaces the given texts of the locale, keeping its other texts. */
+    public synchronized void putTexts(String locale, Map<String, String> texts) {
+        OverlayMap<String, String> current = (OverlayMap<String, String>) get(locale);
+        loaded.put(locale, current == null ? OverlayMap.of(texts) : current.with(texts));
+    }
+
+    /** Removes a single text of the locale, returning whether it existed. */
+    public synchronized boolean removeText(String locale, String key) {
+        OverlayMap<String, String> current = (OverlayMap<String, String>) get(locale);
+        if (current == null || !current.containsKey(key)) {
+            return false;
+        }
+        loaded.put(locale, current.without(key));
+        return true;
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> locales = new TreeSet<>(loaded.keySet());
+        locales.addAll(unloaded.keySet());
+        return Collections.unmodifiableSet(locales);
+    }
+
+    @Override
+    public Set<Entry<String, Map<String, String>>> entrySet() {
+        unloaded.keySet().forEach(this::load);
+        return Collections.<String, Map<String, String>>unmodifiableMap(loaded).entrySet();
+    }
+
+    private synchronized Map<String, String> load(String locale) {
+        Supplier<Map<String, String>> loader = unloaded.get(locale);
+        if (loader != null) {
+            Map<String, String> texts = loader.get();
+            loaded.put(locale, OverlayMap.of(texts == null ? Map.of() : texts));
+            unloaded.remove(locale);
+        }
+        return loaded.get(locale);
+    }
+}
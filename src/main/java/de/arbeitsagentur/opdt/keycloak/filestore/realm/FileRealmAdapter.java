@@ -26,9 +26,6 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
 import org.keycloak.Config;
-import org.keycloak.broker.provider.IdentityProvider;
-import org.keycloak.broker.provider.IdentityProviderFactory;
-import org.keycloak.broker.social.SocialIdentityProvider;
 import org.keycloak.common.enums.SslRequired;
 import org.keycloak.component.ComponentFactory;
 import org.keycloak.component.ComponentModel;
@@ -1025,42 +1022,17 @@ public class FileRealmAdapter extends AbstractRealmModel<FileRealmEntity> implem
     @Override
     public Stream<IdentityProviderModel> getIdentityProvidersStream() {
         Set<FileIdentityProviderEntity> ips = new HashSet<>(entity.getIdentityProviders());
-        return ips == null
-                ? Stream.empty()
-                : ips.stream()
-                        .map(e -> FileIdentityProviderEntity.toModel(
-                                e, () -> this.getModelFromProviderFactory(e.getProviderId())));
+        return ips.stream().map(FileIdentityProviderIndex.toModel(session));
     }
 
     @Override
     public IdentityProviderModel getIdentityProviderByAlias(String alias) {
         Set<FileIdentityProviderEntity> ips = new HashSet<>(entity.getIdentityProviders());
-        return ips == null
-                ? null
-                : ips.stream()
-                        .filter(identityProvider -> Objects.equals(identityProvider.getAlias(), alias))
-                        .findFirst()
-                        .map(e -> FileIdentityProviderEntity.toModel(
-                                e, () -> this.getModelFromProviderFactory(e.getProviderId())))
-                        .orElse(null);
-    }
-
-    // This is a violation of layering requirements, this should NOT be in store code.
-    // However, there is no easy way around this given the current number of IdentityProviderModel
-    // implementations
-    private IdentityProviderModel getModelFromProviderFactory(String providerId) {
-        Optional<IdentityProviderFactory> factory = Stream.concat(
-                        session.getKeycloakSessionFactory().getProviderFactoriesStream(IdentityProvider.class),
-                        session.getKeycloakSessionFactory().getProviderFactoriesStream(SocialIdentityProvider.class))
-                .filter(providerFactory -> Objects.equals(providerFactory.getId(), providerId))
-                .map(IdentityProviderFactory.class::cast)
-                .findFirst();
-        if (factory.isPresent()) {
-            return factory.get().createConfig();
-        } else {
-            LOG.warn("Couldn't find a suitable identity provider factory for " + providerId);
-            return new IdentityProviderModel();
-        }
+        return ips.stream()
+                .filter(identityProvider -> Objects.equals(identityProvider.getAlias(), alias))
+                .findFirst()
+                .map(FileIdentityProviderIndex.toModel(session))
+                .orElse(null);
     }
 
     @Override
@@ -1116,12 +1088,15 @@ public class FileRealmAdapter extends AbstractRealmModel<FileRealmEntity> implem
                         oldPS.setTrustEmail(identityProvider.isTrustEmail());
                         oldPS.setStoreToken(identityProvider.isStoreToken());
                         oldPS.setLinkOnly(identityProvider.isLinkOnly());
+                        oldPS.setHideOnLogin(identityProvider.isHideOnLogin());
+                        oldPS.setOrganizationId(identityProvider.getOrganizationId());
                         oldPS.setAddReadTokenRoleOnCreate(identityProvider.isAddReadTokenRoleOnCreate());
                         oldPS.setAuthenticateByDefault(identityProvider.isAuthenticateByDefault());
                         oldPS.setConfig(
                                 identityProvider.getConfig() == null
                                         ? null
                                         : new HashMap<>(identityProvider.getConfig()));
+                        FileRealmStore.update(entity);
                     });
             session.getKeycloakSessionFactory().publish(new IdentityProviderUpdatedEvent() {
 
@@ -1247,6 +1222,7 @@ public class FileRealmAdapter extends AbstractRealmModel<FileRealmEntity> implem
         entity.getComponent(component.getId()).ifPresent(existing -> {
             ComponentModel oldModel = FileComponentEntity.toModel(existing);
             updateComponent(existing, component);
+            FileRealmStore.update(entity);
             ComponentUtil.notifyUpdated(session, this, oldModel, component);
         });
     }
@@ -1302,13 +1278,9 @@ public class FileRealmAdapter extends AbstractRealmModel<FileRealmEntity> implem
 
     @Override
     public Stream<ComponentModel> getComponentsStream(String parentId, String providerType) {
-        Set<FileComponentEntity> components = new HashSet<>(entity.getComponents());
-        return components == null
-                ? Stream.empty()
-                : components.stream()
-                        .filter(c -> Objects.equals(parentId, c.getParentId()))
-                        .filter(c -> Objects.equals(providerType, c.getProviderType()))
-                        .map(FileComponentEntity::toModel);
+        return FileComponentIndex.of(getId()).getByProviderType(providerType).stream()
+                .filter(c -> Objects.equals(parentId, c.getParentId()))
+                .map(FileComponentEntity::toModel);
     }
 
     @Override
@@ -1609,14 +1581,7 @@ public class FileRealmAdapter extends AbstractRealmModel<FileRealmEntity> implem
 
     @Override
     public void createOrUpdateRealmLocalizationTexts(String locale, Map<String, String> localizationTexts) {
-        Map<String, Map<String, String>> realmLocalizationTexts = entity.getLocalizationTexts();
-        if (realmLocalizationTexts != null && realmLocalizationTexts.containsKey(locale)) {
-            Map<String, String> currentTexts = new HashMap<>(realmLocalizationTexts.get(locale));
-            currentTexts.putAll(localizationTexts);
-            entity.setLocalizationText(locale, currentTexts);
-        } else {
-            entity.setLocalizationText(locale, localizationTexts);
-        }
+        entity.putLocalizationTexts(locale, localizationTexts);
     }
 
     @Override
@@ -20,7 +20,7 @@ package de.arbeitsagentur.opdt.keycloak.filestore.realm;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
 import java.util.*;
-import org.keycloak.common.util.Time;
+import java.util.function.Supplier;
 
 /**
  * Reminders for myself while developing: - We are completely trashing entity interfaces, because
@@ -96,7 +96,7 @@ public class FileRealmEntity implements AbstractEntity, UpdatableEntity {
     private List<String> eventsListeners = new ArrayList<>();
     private List<String> enabledEventTypes = new ArrayList<>();
     private List<String> supportedLocales = new ArrayList<>();
-    private Map<String, Map<String, String>> localizationTexts = new HashMap<>();
+    private FileLocalizationTexts localizationTexts = new FileLocalizationTexts();
     private Map<String, String> browserSecurityHeaders = new HashMap<>();
     private Map<String, String> smtpConfig = new HashMap<>();
     private List<FileRequiredCredentialEntity> requiredCredentials = new ArrayList<>();
@@ -829,12 +829,31 @@ public class FileRealmEntity implements AbstractEntity, UpdatableEntity {
         FileRealmStore.update(this);
     }
 
+    /** Adds a locale whose texts are stored in their own file and read on first access. */
+    public void putUnloadedLocalizationTexts(String locale, Supplier<Map<String, String>> loader) {
+        this.localizationTexts.putUnloaded(locale, loader);
+    }
+
+    public void putLocalizationTexts(String locale, Map<String, String> texts) {
+        this.localizationTexts.putTexts(locale, texts);
+        FileRealmStore.update(this);
+    }
+
     public Boolean removeLocalizationText(String locale) {
-        Boolean hasRemoved = this.localizationTexts.remove(locale) != null;
+        Boolean hasRemoved = this.localizationTexts.containsKey(locale);
+        this.localizationTexts.remove(locale);
         FileRealmStore.update(this);
         return hasRemoved;
     }
 
+    public boolean removeLocalizationText(String locale, String key) {
+        if (!this.localizationTexts.removeText(locale, key)) {
+            return false;
+        }
+        FileRealmStore.update(this);
+        return true;
+    }
+
     public Map<String, String> getBrowserSecurityHeaders() {
         return this.browserSecurityHeaders;
     }
@@ -881,7 +900,7 @@ public class FileRealmEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public Boolean removeComponent(String componentId) {
-        Boolean hasRemoved = this.components.remove(componentId);
+        Boolean hasRemoved = this.components.removeIf(c -> c.getId().equals(componentId));
         FileRealmStore.update(this);
         return hasRemoved;
     }
@@ -1080,9 +1099,10 @@ public class FileRealmEntity implements AbstractEntity, UpdatableEntity {
         return hasRemoved;
     }
 
-    public void removeExpiredClientInitialAccesses() {
-        this.clientInitialAccesses.removeIf(e -> Time.currentTimeMillis() > e.getExpiration());
-        FileRealmStore.update(this);
+    public void removeExpiredClientInitialAccesses(long time) {
+        if (this.clientInitialAccesses.removeIf(e -> e.getExpiration() != null && time > e.getExpiration())) {
+            FileRealmStore.update(this);
+        }
     }
 
     public boolean hasClientInitialAccess() {
@@ -1179,7 +1199,7 @@ public class FileRealmEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public void setLocalizationTexts(Map<String, Map<String, String>> localizationTexts) {
-        this.localizationTexts = localizationTexts;
+        this.localizationTexts = new FileLocalizationTexts(localizationTexts);
         FileRealmStore.update(this);
     }
 
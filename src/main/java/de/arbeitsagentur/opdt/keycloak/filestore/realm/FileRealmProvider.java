@@ -19,6 +19,7 @@ package de.arbeitsagentur.opdt.keycloak.filestore.realm;
 
 import static org.keycloak.common.util.StackUtil.getShortStackTrace;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractFileProviderFactory;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -26,6 +27,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
+import org.keycloak.common.util.Time;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.ModelDuplicateException;
 import org.keycloak.models.RealmModel;
@@ -99,10 +101,8 @@ public class FileRealmProvider implements RealmProvider {
 
     @Override
     public Stream<RealmModel> getRealmsWithProviderTypeStream(Class<?> type) {
-        return FileRealmStore.readAll().stream()
+        return FileRealmStore.readByComponentProviderType(type.getName()).stream()
                 .map(this::entityToAdapter)
-                .filter(realm -> realm.getComponentsStream()
-                        .anyMatch(component -> type.getName().equals(component.getProviderType())))
                 .sorted(Comparator.comparing(RealmModel::getName));
     }
 
@@ -111,17 +111,19 @@ public class FileRealmProvider implements RealmProvider {
         LOG.tracef("removeRealm(%s)%s", id, getShortStackTrace());
         RealmModel realm = getRealm(id);
         if (realm == null) return false;
-        session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.REALM_BEFORE_REMOVE, realm);
-        FileRealmStore.deleteById(realm.getId());
+        EntityStore.batch(() -> {
+            session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.REALM_BEFORE_REMOVE, realm);
+            FileRealmStore.deleteById(realm.getId());
+        });
         session.invalidate(AbstractFileProviderFactory.MapProviderObjectType.REALM_AFTER_REMOVE, realm);
         return true;
     }
 
     @Override
     public void removeExpiredClientInitialAccess() {
-        FileRealmStore.readAll().stream()
-                .filter(e -> !e.getClientInitialAccesses().isEmpty())
-                .forEach(FileRealmEntity::removeExpiredClientInitialAccesses);
+        long now = Time.currentTimeMillis();
+        FileRealmStore.readWithExpiredClientInitialAccesses(now)
+                .forEach(realm -> realm.removeExpiredClientInitialAccesses(now));
     }
 
     @Override
@@ -164,11 +166,7 @@ public class FileRealmProvider implements RealmProvider {
             return false;
         }
 
-        Map<String, String> texts = new HashMap<>(realm.getRealmLocalizationTextsByLocale(locale));
-        texts.remove(key);
-        realm.removeRealmLocalizationTexts(locale);
-        realm.createOrUpdateRealmLocalizationTexts(locale, texts);
-        return true;
+        return FileRealmStore.read(realm.getId()).removeLocalizationText(locale, key);
     }
 
     @Override
@@ -17,9 +17,10 @@
 
 package de.arbeitsagentur.opdt.keycloak.filestore.realm;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityExpiration;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityIO;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityReference;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -34,13 +35,21 @@ public class FileRealmStore {
         if (realmId == null) {
             return false;
         }
-        return Files.exists(createFilePath(realmId));
+        return EntityStore.exists(createFilePath(realmId));
     }
 
     public static List<FileRealmEntity> readAll() {
         return EntityStore.getAll(FileRealmEntity.class);
     }
 
+    public static List<FileRealmEntity> readByComponentProviderType(String providerType) {
+        return EntityStore.getReferencing(EntityReference.REALM_COMPONENT_PROVIDER_TYPE, null, providerType);
+    }
+
+    public static List<FileRealmEntity> readWithExpiredClientInitialAccesses(long time) {
+        return EntityStore.getExpired(EntityExpiration.CLIENT_INITIAL_ACCESS, time);
+    }
+
     public static FileRealmEntity update(FileRealmEntity entity) {
         if (entity.getId() == null) {
             return null;
@@ -54,10 +63,12 @@ public class FileRealmStore {
         if (realmId != null) {
             Path expectedPath = createFilePath(realmId);
             EntityStore.delete(expectedPath);
+            FileIdentityProviderIndex.invalidate(realmId);
+            FileComponentIndex.invalidate(realmId);
         }
     }
 
-    private static Path createFilePath(String realmId) {
+    static Path createFilePath(String realmId) {
         return EntityIO.getPathForIdAndParentPath(realmId, EntityIO.getRootDirectory());
     }
 }
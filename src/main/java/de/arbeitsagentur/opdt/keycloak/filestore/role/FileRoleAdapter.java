@@ -68,8 +68,8 @@ public class FileRoleAdapter extends AbstractRoleModel<FileRoleEntity> implement
 
     @Override
     public Stream<RoleModel> getCompositesStream() {
-        List<String> compositeRoles =
-                entity.getCompositeRoles() == null ? Collections.emptyList() : entity.getCompositeRoles();
+        Set<String> compositeRoles =
+                entity.getCompositeRoles() == null ? Collections.emptySet() : entity.getCompositeRoles();
         LOG.tracef(
                 "%% %s(%s).getCompositesStream():%d - %s",
                 entity.getName(), entity.getId(), compositeRoles.size(), getShortStackTrace());
@@ -80,8 +80,8 @@ public class FileRoleAdapter extends AbstractRoleModel<FileRoleEntity> implement
 
     @Override
     public Stream<RoleModel> getCompositesStream(String search, Integer first, Integer max) {
-        List<String> compositeRoles =
-                entity.getCompositeRoles() == null ? Collections.emptyList() : entity.getCompositeRoles();
+        Set<String> compositeRoles =
+                entity.getCompositeRoles() == null ? Collections.emptySet() : entity.getCompositeRoles();
         LOG.tracef(
                 "%% (%s).getCompositesStream(%s, %d, %d):%d - %s",
                 this, search, first, max, compositeRoles.size(), getShortStackTrace());
@@ -18,22 +18,25 @@
 package de.arbeitsagentur.opdt.keycloak.filestore.role;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.CompactSet;
 import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 public class FileRoleEntity implements AbstractEntity, UpdatableEntity {
 
     private String id;
-    private Map<String, Object> attributes = new HashMap<>();
+    private Map<String, Object> attributes = Map.of();
     private boolean isUpdated = false;
     private String realmId;
     private String clientId;
     private String name;
     private String description;
-    private List<String> compositeRoles = new ArrayList<>();
+    private Set<String> compositeRoles = new CompactSet<>();
 
     public String getId() {
         return id;
@@ -63,12 +66,12 @@ public class FileRoleEntity implements AbstractEntity, UpdatableEntity {
     }
 
     public void setAttribute(String key, List<String> singleListValue) {
-        this.attributes.put(key, singleListValue.get(0));
+        mutableAttributes().put(key, singleListValue.get(0));
         FileRoleStore.update(this);
     }
 
     public void removeAttribute(String name) {
-        this.attributes.remove(name);
+        mutableAttributes().remove(name);
         FileRoleStore.update(this);
     }
 
@@ -116,22 +119,50 @@ public class FileRoleEntity implements AbstractEntity, UpdatableEntity {
         FileRoleStore.update(this);
     }
 
-    public List<String> getCompositeRoles() {
+    public Set<String> getCompositeRoles() {
         return compositeRoles;
     }
 
-    public void setCompositeRoles(List<String> compositeRoles) {
+    public void setCompositeRoles(Set<String> compositeRoles) {
         this.compositeRoles = compositeRoles;
         FileRoleStore.update(this);
     }
 
     public void addCompositeRole(String roleId) {
-        this.compositeRoles.add(roleId);
-        FileRoleStore.update(this);
+        if (this.compositeRoles.add(roleId)) {
+            FileRoleStore.update(this);
+        }
     }
 
     public void removeCompositeRole(String roleId) {
-        this.compositeRoles.remove(roleId);
-        FileRoleStore.update(this);
+        if (this.compositeRoles.remove(roleId)) {
+            FileRoleStore.update(this);
+        }
+    }
+
+    /**
+     * Replaces the collections created while parsing by their compact counterparts without writing
+     * the entity: missing or empty attributes by the shared empty map, which is replaced on the first
+     * change, and the ids of {@link #getCompositeRoles()} by a {@link CompactSet}. The id of the role and the
+     * ids of its composite roles are replaced by their {@code canonical} instances.
+     */
+    public void compact(UnaryOperator<String> canonical) {
+        if (attributes == null || attributes.isEmpty()) {
+            attributes = Map.of();
+        }
+        id = canonical.apply(id);
+        CompactSet<String> compacted = new CompactSet<>();
+        if (compositeRoles != null) {
+            compositeRoles.forEach(roleId -> compacted.add(canonical.apply(roleId)));
+        }
+        compositeRoles = compacted;
+    }
+
+    /** The attributes to modify, copying the shared empty map or a parsed immutable one first. */
+    private Map<String, Object> mutableAttributes() {
+        if (!(attributes instanceof HashMap)) {
+            attributes = attributes == null ? new LinkedHashMap<>() : new LinkedHashMap<>(attributes);
+        }
+        return attributes;
     }
 }
@@ -23,10 +23,12 @@ import static org.keycloak.common.util.StackUtil.getShortStackTrace;
 import static org.keycloak.utils.StreamsUtil.paginatedStream;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.SearchPatterns;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AdapterIdentityMap;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import org.jboss.logging.Logger;
 import org.keycloak.models.*;
@@ -43,7 +45,8 @@ public class FileRoleProvider implements RoleProvider {
     private Function<FileRoleEntity, RoleModel> entityToAdapterFunc(RealmModel realm) {
         // Clone entity before returning back, to avoid giving away a reference to the live object to
         // the caller
-        return origEntity -> new FileRoleAdapter(session, realm, origEntity);
+        return AdapterIdentityMap.of(session)
+                .adapterFunc(RoleModel.class, origEntity -> new FileRoleAdapter(session, realm, origEntity));
     }
 
     @Override
@@ -78,8 +81,7 @@ public class FileRoleProvider implements RoleProvider {
 
     @Override
     public Stream<RoleModel> getRealmRolesStream(RealmModel realm, Integer first, Integer max) {
-        Stream<RoleModel> rolesStream = FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        Stream<RoleModel> rolesStream = FileRoleStore.readAll(realm.getId()).stream()
                 .filter(e -> e.getClientId() == null)
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
@@ -95,7 +97,8 @@ public class FileRoleProvider implements RoleProvider {
                 .map(id -> FileRoleStore.read(id, realm.getId()))
                 .map(entityToAdapterFunc(realm));
         if (search != null) {
-            return roleStream.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), "%" + search + "%"));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            return roleStream.filter(entity -> matcher.test(entity.getName()));
         }
         return roleStream;
     }
@@ -138,9 +141,7 @@ public class FileRoleProvider implements RoleProvider {
     public Stream<RoleModel> getClientRolesStream(ClientModel client, Integer first, Integer max) {
         final RealmModel realm = client.getRealm();
 
-        Stream<RoleModel> rolesStream = FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
-                .filter(entity -> client.getId().equals(entity.getClientId()))
+        Stream<RoleModel> rolesStream = FileRoleStore.readByClient(client.getId(), realm.getId()).stream()
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
         return paginatedStream(rolesStream, first, max);
@@ -171,7 +172,12 @@ public class FileRoleProvider implements RoleProvider {
 
     @Override
     public void removeRoles(ClientModel client) {
-        getClientRolesStream(client).forEach(this::removeRole);
+        LOG.tracef("removeRoles(%s)%s", client, getShortStackTrace());
+        RealmModel realm = client.getRealm();
+        List<RoleModel> roles = getClientRolesStream(client).toList();
+        roles.forEach(role -> session.invalidate(ROLE_BEFORE_REMOVE, realm, role));
+        FileRoleStore.deleteByIds(roles.stream().map(RoleModel::getId).toList(), realm.getId());
+        roles.forEach(role -> session.invalidate(ROLE_AFTER_REMOVE, realm, role));
     }
 
     @Override
@@ -181,8 +187,7 @@ public class FileRoleProvider implements RoleProvider {
         }
 
         LOG.tracef("getRealmRole(%s, %s)%s", realm, name, getShortStackTrace());
-        return FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        return FileRoleStore.readAll(realm.getId()).stream()
                 .filter(role -> role.getName().equals(name))
                 .filter(role -> role.getClientId() == null)
                 .map(entityToAdapterFunc(realm))
@@ -198,8 +203,7 @@ public class FileRoleProvider implements RoleProvider {
 
         LOG.tracef("getClientRole(%s, %s)%s", client, name, getShortStackTrace());
         final RealmModel realm = client.getRealm();
-        return FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        return FileRoleStore.readAll(realm.getId()).stream()
                 .filter(role -> client.getId().equals(role.getClientId()))
                 .filter(role -> name.equals(role.getName()))
                 .map(entityToAdapterFunc(realm))
@@ -229,17 +233,15 @@ public class FileRoleProvider implements RoleProvider {
             return Stream.empty();
         }
 
-        Stream<RoleModel> roleStream = FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        Stream<RoleModel> roleStream = FileRoleStore.searchByNameOrDescription(search, realm.getId()).stream()
                 .filter(role -> role.getClientId() == null)
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
 
-        String searchPattern = "%" + search + "%";
-
         if (!search.isBlank()) {
-            roleStream = roleStream.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), searchPattern)
-                    || SearchPatterns.insensitiveLike(entity.getDescription(), searchPattern));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            roleStream = roleStream.filter(
+                    entity -> matcher.test(entity.getName()) || matcher.test(entity.getDescription()));
         }
         return paginatedStream(roleStream, first, max);
     }
@@ -251,18 +253,16 @@ public class FileRoleProvider implements RoleProvider {
         }
 
         final RealmModel realm = client.getRealm();
-        Stream<RoleModel> roleStream = FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        Stream<RoleModel> roleStream = FileRoleStore.searchByNameOrDescription(search, realm.getId()).stream()
                 .filter(role -> role.getClientId() != null)
                 .filter(role -> client.getId().equals(role.getClientId()))
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
 
-        String searchPattern = "%" + search + "%";
-
         if (!search.isBlank()) {
-            roleStream = roleStream.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), searchPattern)
-                    || SearchPatterns.insensitiveLike(entity.getDescription(), searchPattern));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            roleStream = roleStream.filter(
+                    entity -> matcher.test(entity.getName()) || matcher.test(entity.getDescription()));
         }
         return paginatedStream(roleStream, first, max);
     }
@@ -280,11 +280,10 @@ public class FileRoleProvider implements RoleProvider {
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
 
-        String searchPattern = "%" + search + "%";
-
         if (!search.isBlank()) {
-            roleStream = roleStream.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), searchPattern)
-                    || SearchPatterns.insensitiveLike(entity.getDescription(), searchPattern));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            roleStream = roleStream.filter(
+                    entity -> matcher.test(entity.getName()) || matcher.test(entity.getDescription()));
         }
         return paginatedStream(roleStream, first, max);
     }
@@ -297,33 +296,27 @@ public class FileRoleProvider implements RoleProvider {
         }
 
         List<String> excludedIdsList = excludedIds.toList();
-        Stream<RoleModel> roleStream = FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
+        Stream<RoleModel> roleStream = FileRoleStore.searchByNameOrDescription(search, realm.getId()).stream()
                 .filter(role -> role.getClientId() != null)
                 .filter(role -> !excludedIdsList.contains(role.getId()))
                 .map(entityToAdapterFunc(realm))
                 .sorted(Comparator.comparing(RoleModel::getName));
 
-        String searchPattern = "%" + search + "%";
-
         if (!search.isBlank()) {
-            roleStream = roleStream.filter(entity -> SearchPatterns.insensitiveLike(entity.getName(), searchPattern)
-                    || SearchPatterns.insensitiveLike(entity.getDescription(), searchPattern));
+            Predicate<String> matcher = SearchPatterns.insensitiveLikeMatcher("%" + search + "%");
+            roleStream = roleStream.filter(
+                    entity -> matcher.test(entity.getName()) || matcher.test(entity.getDescription()));
         }
         return paginatedStream(roleStream, first, max);
     }
 
     public void preRemove(RealmModel realm) {
         LOG.tracef("preRemove(%s)%s", realm, getShortStackTrace());
-        FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
-                .forEach(entity -> FileRoleStore.deleteById(entity.getId(), realm.getId()));
+        FileRoleStore.deleteByRealmId(realm.getId());
     }
 
     public void preRemove(RealmModel realm, RoleModel role) {
-        FileRoleStore.readAll().stream()
-                .filter(e -> realm.getId().equals(e.getRealmId()))
-                .filter(e -> e.getCompositeRoles().contains(role.getId()))
+        FileRoleStore.readByCompositeRole(role.getId(), realm.getId())
                 .forEach(e -> e.removeCompositeRole(role.getId()));
     }
 
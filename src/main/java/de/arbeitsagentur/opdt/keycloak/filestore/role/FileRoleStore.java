@@ -18,9 +18,11 @@
 package de.arbeitsagentur.opdt.keycloak.filestore.role;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityIO;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityReference;
 import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
-import java.nio.file.Files;
+import de.arbeitsagentur.opdt.keycloak.filestore.SearchField;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 
 public class FileRoleStore {
@@ -35,13 +37,38 @@ public class FileRoleStore {
         if (roleId == null || realmId == null) {
             return false;
         }
-        return Files.exists(createFilePath(roleId, realmId));
+        return EntityStore.exists(createFilePath(roleId, realmId));
     }
 
     public static List<FileRoleEntity> readAll() {
         return EntityStore.getAll(FileRoleEntity.class);
     }
 
+    public static List<FileRoleEntity> readAll(String realmId) {
+        return EntityStore.getAll(FileRoleEntity.class, realmId);
+    }
+
+    public static List<FileRoleEntity> readByCompositeRole(String roleId, String realmId) {
+        return EntityStore.getReferencing(EntityReference.ROLE_COMPOSITE, realmId, roleId);
+    }
+
+    public static List<FileRoleEntity> readByClient(String clientId, String realmId) {
+        return EntityStore.getReferencing(EntityReference.ROLE_CLIENT, realmId, clientId);
+    }
+
+    public static int countByClient(String clientId, String realmId) {
+        return EntityStore.countReferencing(EntityReference.ROLE_CLIENT, realmId, clientId);
+    }
+
+    public static List<FileRoleEntity> searchByNameOrDescription(String search, String realmId) {
+        List<FileRoleEntity> candidates =
+                EntityStore.getSearchCandidates(SearchField.ROLE_NAME_OR_DESCRIPTION, realmId, search);
+        if (candidates != null) {
+            return candidates;
+        }
+        return readAll(realmId);
+    }
+
     public static FileRoleEntity update(FileRoleEntity entity) {
         if (entity.getId() == null || entity.getRealmId() == null) {
             return null;
@@ -59,13 +86,21 @@ public class FileRoleStore {
     }
 
     public static void deleteByRealmId(String realmId) {
-        EntityStore.getAll(FileRoleEntity.class).stream()
-                .filter(e -> realmId.equals(e.getRealmId()))
-                .map(FileRoleEntity::getId)
-                .forEach(clientId -> deleteById(clientId, realmId));
+        if (realmId != null) {
+            EntityStore.deleteDirectory(
+                    EntityIO.getRootDirectory().resolve(realmId).resolve(OBJECT_DIRECTORY));
+        }
+    }
+
+    public static void deleteByIds(Collection<String> roleIds, String realmId) {
+        if (realmId != null) {
+            EntityStore.delete(roleIds.stream()
+                    .map(roleId -> createFilePath(roleId, realmId))
+                    .toList());
+        }
     }
 
-    private static Path createFilePath(String roleId, String realmId) {
+    public static Path createFilePath(String roleId, String realmId) {
         if (roleId.contains(":")) {
             return EntityIO.getPathForIdAndParentPath(
                     roleId.split(":")[1],
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private Path archive;
+
+    @BeforeEach
+    void createArchive() throws IOException {
+        archive = directory.resolve("realms.zip");
+        try (FileSystem zip = FileSystems.newFileSystem(archive, Map.of("create", "true"))) {
+            Path roles = zip.getPath("/", "carthage", "roles");
+            Files.createDirectories(roles);
+            Files.writeString(roles.resolve("admiral.yaml"), "id: admiral\nname: admiral\n");
+            Files.writeString(roles.resolve(".hidden.yaml"), "id: hidden\n");
+        }
+    }
+
+    @Test
+    void givenZipArchive_whenWalkRoot_thenItsEntitiesCanBeParsed() throws IOException {
+        Path root = Archive.getRoot(archive);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(EntityIO::canParseFile).toList();
+        }
+
+        assertThat(files).containsExactly(root.resolve("carthage/roles/admiral.yaml"));
+        assertThat(EntityIO.parseFile(files.get(0), FileRoleEntity.class).getName())
+                .isEqualTo("admiral");
+    }
+
+    @Test
+    void givenZipArchive_whenContains_thenOnlyItsPathsAreRejected() {
+        assertThat(Archive.contains(Archive.getRoot(archive).resolve("carthage/roles/sailor.yaml")))
+                .isTrue();
+        assertThat(Archive.contains(directory.resolve("carthage/roles/sailor.yaml")))
+                .isFalse();
+    }
+
+    @Test
+    void givenArchiveNames_whenIsArchive_thenOnlyZipArchivesAreAccepted() {
+        assertThat(Archive.isArchive(Path.of("realms.zip"))).isTrue();
+        assertThat(Archive.isArchive(Path.of("realms"))).isFalse();
+        assertThatThrownBy(() -> Archive.isArchive(Path.of("realms.tar"))).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeLogTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void whenAppend_thenOtherNodesReadTheChangesInOrder() throws IOException {
+        ChangeLog podA = node("pod-a");
+        ChangeLog podB = node("pod-b");
+        Map<Path, ChangeLog.Operation> changes = new LinkedHashMap<>();
+        changes.put(root.resolve("nineveh/roles/scribe.yaml"), ChangeLog.Operation.WRITE);
+        changes.put(root.resolve("nineveh/clients"), ChangeLog.Operation.DELETE_DIRECTORY);
+
+        podA.append(changes);
+
+        List<ChangeLog.Change> read = podB.poll();
+        assertThat(read)
+                .extracting(ChangeLog.Change::operation, ChangeLog.Change::path)
+                .containsExactly(
+                        tuple(ChangeLog.Operation.WRITE, root.resolve("nineveh/roles/scribe.yaml")),
+                        tuple(ChangeLog.Operation.DELETE_DIRECTORY, root.resolve("nineveh/clients")));
+        assertThat(read.get(0).sequence()).isZero();
+        assertThat(read.get(1).sequence()).isPositive();
+        assertThat(podB.poll()).isEmpty();
+        assertThat(podA.poll()).isEmpty();
+    }
+
+    @Test
+    void givenRecordBeingAppended_whenPoll_thenItIsReadWhenComplete() throws IOException {
+        ChangeLog podA = node("pod-a");
+        ChangeLog podB = node("pod-b");
+        podA.append(Map.of(root.resolve("nineveh.yaml"), ChangeLog.Operation.WRITE));
+        Path file = root.resolve(ChangeLog.FILE_NAME);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+
+        assertThat(podB.poll()).isEmpty();
+
+        Files.write(file, content);
+
+        assertThat(podB.poll()).extracting(ChangeLog.Change::path).containsExactly(root.resolve("nineveh.yaml"));
+    }
+
+    @Test
+    void givenAllNodesReadTheLog_whenAppendBeyondRotationSize_thenReadRecordsAreDropped() throws IOException {
+        ChangeLog podA = node("pod-a");
+        ChangeLog podB = node("pod-b");
+        Path file = root.resolve(ChangeLog.FILE_NAME);
+        for (int i = 0; i < 10; i++) {
+            podA.append(Map.of(root.resolve("nineveh/roles/scribe-" + i + ".yaml"), ChangeLog.Operation.WRITE));
+        }
+        long size = Files.size(file);
+        assertThat(podB.poll()).hasSize(10);
+        assertThat(podA.poll()).isEmpty();
+
+        podA.append(Map.of(root.resolve("nineveh/roles/priest.yaml"), ChangeLog.Operation.WRITE));
+
+        assertThat(Files.size(file)).isLessThan(size);
+        List<ChangeLog.Change> read = podB.poll();
+        assertThat(read).extracting(ChangeLog.Change::path).containsExactly(root.resolve("nineveh/roles/priest.yaml"));
+        assertThat(read.get(0).sequence()).isGreaterThanOrEqualTo(size - Long.BYTES);
+    }
+
+    @Test
+    void givenLaggingNode_whenAppendBeyondRotationSize_thenUnreadRecordsAreKept() throws IOException {
+        ChangeLog podA = node("pod-a");
+        ChangeLog podB = node("pod-b");
+        for (int i = 0; i < 12; i++) {
+            podA.append(Map.of(root.resolve("nineveh/roles/scribe-" + i + ".yaml"), ChangeLog.Operation.WRITE));
+            podA.poll();
+        }
+
+        assertThat(podB.poll()).hasSize(12);
+    }
+
+    @Test
+    void givenNodeConsideredGone_whenRotated_thenItIsToldToReadAllFiles() throws IOException {
+        ChangeLog podA = node("pod-a");
+        ChangeLog podB = node("pod-b");
+        Files.setLastModifiedTime(
+                root.resolve(ChangeLog.DIRECTORY).resolve("pod-b.checkpoint"), FileTime.fromMillis(0));
+        for (int i = 0; i < 12; i++) {
+            podA.append(Map.of(root.resolve("nineveh/roles/scribe-" + i + ".yaml"), ChangeLog.Operation.WRITE));
+            podA.poll();
+        }
+
+        assertThat(podB.poll()).isNull();
+        podA.append(Map.of(root.resolve("nineveh/roles/priest.yaml"), ChangeLog.Operation.WRITE));
+        // continues with the records kept, which it reads again after all files
+        assertThat(podB.poll()).extracting(ChangeLog.Change::path).endsWith(root.resolve("nineveh/roles/priest.yaml"));
+    }
+
+    private ChangeLog node(String nodeId) throws IOException {
+        return new ChangeLog(root, nodeId, TimeUnit.MINUTES.toMillis(10), 500);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileProtocolMapperEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.CopyOnWriteMap;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DeduplicationTest {
+
+    private static final String CLIENT_SCOPE =
+            """
+            attributes:
+              display.on.consent.screen: %s
+            description: Postal address of the user
+            id: %s
+            name: %s
+            protocol: openid-connect
+            protocolMappers:
+            - config:
+                claim.name: street
+                jsonType.label: String
+              id: 5f0e9a52-3a50-4d3e-9c1b-8d5b0b3f6a71
+              name: street
+              protocolMapper: oidc-usermodel-attribute-mapper
+            realmId: master
+            """;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"yaml", "json"})
+    void givenEqualValues_whenParsed_thenOnlyFewDistinctOnesAreInterned(String format) throws IOException {
+        EntityCodec codec = EntityCodec.forName(format);
+
+        FileClientScopeEntity first = parse(codec, "first", "true");
+        FileClientScopeEntity second = parse(codec, "second", "false");
+
+        assertThat(second.getProtocol()).isSameAs(first.getProtocol());
+        assertThat(second.getRealmId()).isSameAs(first.getRealmId());
+        assertThat(mapper(second).getProtocolMapper()).isSameAs(mapper(first).getProtocolMapper());
+        assertThat(firstKey(second.getAttributes())).isSameAs(firstKey(first.getAttributes()));
+        assertThat(second.getDescription()).isEqualTo(first.getDescription()).isNotSameAs(first.getDescription());
+        assertThat(mapper(second).getId())
+                .isEqualTo(mapper(first).getId())
+                .isNotSameAs(mapper(first).getId());
+    }
+
+    @Test
+    void givenEqualMapperConfigs_whenParsed_thenOneMapIsSharedUntilChanged() throws IOException {
+        Map<String, String> first =
+                mapper(parse(EntityCodec.YAML, "first", "true")).getConfig();
+        Map<String, String> second =
+                mapper(parse(EntityCodec.YAML, "second", "true")).getConfig();
+
+        assertThat(first).isInstanceOf(CopyOnWriteMap.class).isEqualTo(second);
+        // config values are not interned, so equal instances come from the same map
+        assertThat(second.get("claim.name")).isSameAs(first.get("claim.name"));
+
+        first.put("claim.name", "address");
+
+        assertThat(first).containsEntry("claim.name", "address");
+        assertThat(second).containsEntry("claim.name", "street");
+    }
+
+    @Test
+    void givenRolesAndGroups_whenParsed_thenRoleIdsAndEmptyAttributesAreShared() throws IOException {
+        String roleId = "6b1d3f2e-8c4a-4e7b-9f0d-2a5c7e9b1d3f";
+        FileRoleEntity role = EntityIO.parseFile(
+                Files.writeString(directory.resolve("role.yaml"), "id: " + roleId + "\nname: viewer\n"),
+                FileRoleEntity.class);
+        FileRoleEntity composite = EntityIO.parseFile(
+                Files.writeString(
+                        directory.resolve("composite.yaml"),
+                        "id: composite\nname: composite\nattributes: {}\ncompositeRoles:\n- " + roleId + "\n"),
+                FileRoleEntity.class);
+        FileGroupEntity group = EntityIO.parseFile(
+                Files.writeString(
+                        directory.resolve("group.yaml"), "id: group\nname: group\ngrantedRoles:\n- " + roleId + "\n"),
+                FileGroupEntity.class);
+
+        assertThat(composite.getCompositeRoles().iterator().next()).isSameAs(role.getId());
+        assertThat(group.getGrantedRoles().iterator().next()).isSameAs(role.getId());
+        assertThat(composite.getAttributes()).isEmpty();
+        assertThat(role.getAttributes()).isSameAs(composite.getAttributes()).isSameAs(group.getAttributes());
+    }
+
+    private FileClientScopeEntity parse(EntityCodec codec, String id, String consent) throws IOException {
+        Path yamlFile =
+                Files.writeString(directory.resolve(id + "-template.yaml"), CLIENT_SCOPE.formatted(consent, id, id));
+        Path file = directory.resolve(id + codec.getFileSuffix());
+        Files.writeString(file, codec.write(EntityIO.parseFile(yamlFile, FileClientScopeEntity.class)));
+        return EntityIO.parseFile(file, FileClientScopeEntity.class);
+    }
+
+    private static FileProtocolMapperEntity mapper(FileClientScopeEntity clientScope) {
+        return clientScope.getProtocolMappers().get(0);
+    }
+
+    private static String firstKey(Map<String, ?> map) {
+        return map.keySet().iterator().next();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EntityCodecTest {
+
+    private static final Path MASTER = Path.of(KeycloakModelTest.TEST_FILESTORE_DIR);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void givenRealm_whenWrittenAsJson_thenItIsReadBackUnchanged() throws IOException {
+        assertRoundTrip(MASTER.resolve("master.yaml"), FileRealmEntity.class);
+    }
+
+    @Test
+    void givenClients_whenWrittenAsJson_thenTheyAreReadBackUnchanged() throws IOException {
+        for (String clientId : List.of("account", "admin-cli", "master-realm")) {
+            assertRoundTrip(MASTER.resolve("master/clients/" + clientId + ".yaml"), FileClientEntity.class);
+        }
+    }
+
+    @Test
+    void givenRole_whenWrittenAsJson_thenItIsReadBackUnchanged() throws IOException {
+        FileRoleEntity role = assertRoundTrip(MASTER.resolve("master/roles/admin.yaml"), FileRoleEntity.class);
+
+        assertThat(role.getId()).isEqualTo("admin");
+        assertThat(role.getCompositeRoles()).isNotEmpty();
+    }
+
+    @Test
+    void givenFileNames_whenForFile_thenTheCodecIsChosenBySuffix() {
+        assertThat(EntityCodec.forFile(Path.of("admin.yaml"))).isSameAs(EntityCodec.YAML);
+        assertThat(EntityCodec.forFile(Path.of("admin.json"))).isSameAs(EntityCodec.JSON);
+        assertThat(EntityCodec.forName("JSON")).isSameAs(EntityCodec.JSON);
+        assertThatThrownBy(() -> EntityCodec.forFile(Path.of("admin.xml"))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void givenFileNames_whenIsInOtherFormat_thenOnlyOtherCodecSuffixesMatch() {
+        assertThat(EntityIO.isInOtherFormat(Path.of("master/roles/admin.yaml"), EntityCodec.JSON))
+                .isTrue();
+        assertThat(EntityIO.isInOtherFormat(Path.of("master.json"), EntityCodec.YAML))
+                .isTrue();
+        assertThat(EntityIO.isInOtherFormat(Path.of("master/roles/admin.json"), EntityCodec.JSON))
+                .isFalse();
+        assertThat(EntityIO.isInOtherFormat(Path.of("master/.changes.log"), EntityCodec.JSON))
+                .isFalse();
+        assertThat(EntityIO.isInOtherFormat(Path.of("master/clients"), EntityCodec.JSON))
+                .isFalse();
+    }
+
+    private <E extends AbstractEntity & UpdatableEntity> E assertRoundTrip(Path yamlFile, Class<E> type)
+            throws IOException {
+        E fromYaml = EntityIO.parseFile(yamlFile, type);
+        String fileName = yamlFile.getFileName().toString().replace(".yaml", ".json");
+        Path jsonFile = directory.resolve(fileName);
+        Files.writeString(jsonFile, EntityCodec.JSON.write(fromYaml));
+
+        E fromJson = EntityIO.parseFile(jsonFile, type);
+
+        assertThat(EntityCodec.YAML.write(fromJson)).isEqualTo(EntityCodec.YAML.write(fromYaml));
+        return fromJson;
+    }
+}
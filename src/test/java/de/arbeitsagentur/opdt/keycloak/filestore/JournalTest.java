@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournalTest {
+
+    @TempDir
+    Path root;
+
+    private Path roles;
+    private Path senator;
+
+    @BeforeEach
+    void createRoles() throws IOException {
+        roles = root.resolve("rome").resolve("roles");
+        senator = roles.resolve("senator.yaml");
+        Files.createDirectories(roles);
+        Files.writeString(senator, "name: senator");
+    }
+
+    @Test
+    void givenRecordedBatch_whenRecover_thenItsChangesAreApplied() throws IOException {
+        Path citizen = roles.resolve("citizen.yaml");
+        Journal journal = new Journal(root);
+        journal.write(citizen, role("citizen"));
+        journal.delete(senator, false);
+        journal.record();
+
+        assertThat(citizen).doesNotExist();
+        assertThat(senator).exists();
+
+        Journal.recover(root);
+
+        assertThat(citizen).content().contains("name: citizen");
+        assertThat(senator).doesNotExist();
+        assertThat(root.resolve(".journal")).isEmptyDirectory();
+    }
+
+    @Test
+    void givenIncompleteLog_whenRecover_thenNoChangeIsApplied() throws IOException {
+        Path citizen = roles.resolve("citizen.yaml");
+        Journal journal = new Journal(root);
+        journal.write(citizen, role("citizen"));
+        journal.delete(senator, false);
+        Path log = journal.record();
+        byte[] content = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(content, content.length - 1));
+
+        Journal.recover(root);
+
+        assertThat(citizen).doesNotExist();
+        assertThat(senator).exists();
+        assertThat(log).doesNotExist();
+    }
+
+    @Test
+    void givenCorruptLog_whenRecover_thenNoChangeIsApplied() throws IOException {
+        Path citizen = roles.resolve("citizen.yaml");
+        Journal journal = new Journal(root);
+        journal.write(citizen, role("citizen"));
+        journal.delete(senator, false);
+        Path log = journal.record();
+        byte[] content = Files.readAllBytes(log);
+        // a flipped bit in the content of the written file
+        content[content.length / 2] ^= 1;
+        Files.write(log, content);
+
+        Journal.recover(root);
+
+        assertThat(citizen).doesNotExist();
+        assertThat(senator).exists();
+        assertThat(log).doesNotExist();
+    }
+
+    @Test
+    void whenDeleteDirectory_thenFilesWrittenToItBeforeAreDeletedToo() throws IOException {
+        Path citizen = roles.resolve("citizen.yaml");
+        Journal journal = new Journal(root);
+        journal.write(citizen, role("citizen"));
+        journal.deleteDirectory(roles);
+
+        assertThat(journal.isDeleted(citizen)).isTrue();
+        assertThat(journal.isDeleted(senator)).isTrue();
+
+        journal.commit();
+
+        assertThat(roles).doesNotExist();
+    }
+
+    private static FileRoleEntity role(String name) {
+        FileRoleEntity role = new FileRoleEntity();
+        role.setId(name);
+        role.setName(name);
+        return role;
+    }
+}
@@ -172,7 +172,10 @@ public abstract class KeycloakModelTest {
         CONFIG.spi(ComponentFactorySpi.NAME)
                 .provider(DefaultComponentFactoryProviderFactory.PROVIDER_ID)
                 .config("cachingForced", "true");
-        CONFIG.spi("mapStorage").provider("file").config("dir", TEST_FILESTORE_DIR);
+        CONFIG.spi("mapStorage")
+                .provider("file")
+                .config("dir", TEST_FILESTORE_DIR)
+                .config("indexedAttributes", "match,match-1,tenant-id,key");
         MODEL_PARAMETERS.forEach(m -> m.updateConfig(CONFIG));
         LOG.debugf(
                 "Creating factory %d in %s using the following configuration:\n    %s",
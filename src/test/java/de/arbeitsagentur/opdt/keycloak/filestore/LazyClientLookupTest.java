@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientStore;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+
+@Tag("lazy")
+class LazyClientLookupTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "gascony";
+
+    private final Path athos = FileClientStore.createFilePath("athos", REALM_ID);
+    private final Path porthos = FileClientStore.createFilePath("porthos", REALM_ID);
+    private final Path aramis = FileClientStore.createFilePath("aramis", REALM_ID);
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        s.getContext().setRealm(realm);
+        s.roles().addRealmRole(realm, "musketeer");
+        s.clients().addClient(realm, "athos");
+        s.clients().addClient(realm, "porthos");
+        s.clients().addClient(realm, "aramis").setAlwaysDisplayInConsole(true);
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @BeforeEach
+    void unreadClients() throws IOException {
+        // entities write themselves through, so the files are changed as a ConfigMap rollout would
+        for (Path path : List.of(athos, porthos, aramis)) {
+            Files.writeString(path, Files.readString(path).replace("description: null", "description: musketeer"));
+        }
+        EntityStore.reload();
+
+        assertThat(List.of(athos, porthos, aramis)).noneMatch(EntityStore::isRead);
+    }
+
+    @Test
+    void givenUnreadClients_whenGetByClientId_thenOnlyMatchIsRead() {
+        List<FileClientEntity> clients = EntityStore.getByKey(EntityKey.CLIENT_ID, REALM_ID, "athos");
+
+        assertThat(clients).singleElement().satisfies(client -> {
+            assertThat(client.getClientId()).isEqualTo("athos");
+            assertThat(client.getDescription()).isEqualTo("musketeer");
+        });
+        assertThat(EntityStore.isRead(athos)).isTrue();
+        assertThat(EntityStore.isRead(porthos)).isFalse();
+        assertThat(EntityStore.isRead(aramis)).isFalse();
+    }
+
+    @Test
+    void givenUnreadClients_whenGetClientByClientId_thenOtherClientsStayUnread() {
+        withRealm(REALM_ID, (session, realm) -> {
+            ClientModel client = session.clients().getClientByClientId(realm, "porthos");
+
+            assertThat(client.getDescription()).isEqualTo("musketeer");
+        });
+
+        assertThat(EntityStore.isRead(porthos)).isTrue();
+        assertThat(EntityStore.isRead(athos)).isFalse();
+        assertThat(EntityStore.isRead(aramis)).isFalse();
+    }
+
+    @Test
+    void givenUnreadClients_whenGetAlwaysDisplayedClients_thenOnlyThoseAreRead() {
+        withRealm(REALM_ID, (session, realm) -> {
+            assertThat(session.clients().getAlwaysDisplayInConsoleClientsStream(realm))
+                    .extracting(ClientModel::getClientId)
+                    .containsExactly("aramis");
+        });
+
+        assertThat(EntityStore.isRead(aramis)).isTrue();
+        assertThat(EntityStore.isRead(athos)).isFalse();
+        assertThat(EntityStore.isRead(porthos)).isFalse();
+    }
+
+    @Test
+    void givenUnreadClients_whenGetClientsPage_thenOnlyPageIsRead() {
+        withRealm(REALM_ID, (session, realm) -> {
+            assertThat(session.clients().getClientsStream(realm, 1, 1))
+                    .extracting(ClientModel::getClientId)
+                    .containsExactly("athos");
+        });
+
+        assertThat(EntityStore.isRead(athos)).isTrue();
+        assertThat(EntityStore.isRead(aramis)).isFalse();
+        assertThat(EntityStore.isRead(porthos)).isFalse();
+    }
+
+    @Test
+    void givenUnreadClients_whenGetAllRoles_thenClientsStayUnread() {
+        List<FileRoleEntity> roles = EntityStore.getAll(FileRoleEntity.class, REALM_ID);
+
+        assertThat(roles).extracting(FileRoleEntity::getName).contains("musketeer");
+        assertThat(List.of(athos, porthos, aramis)).noneMatch(EntityStore::isRead);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+class LazyClientTest {
+
+    private static final Path ACCOUNT = Path.of(KeycloakModelTest.TEST_FILESTORE_DIR, "master/clients/account.yaml");
+
+    @Test
+    void givenClientFile_whenLoaded_thenOnlyIndexedPropertiesAreRead() {
+        FileClientEntity keys = new LazyClient(ACCOUNT, "master").getKeys();
+
+        assertThat(keys.getId()).isEqualTo("account");
+        assertThat(keys.getClientId()).isEqualTo("account");
+        assertThat(keys.getRealmId()).isEqualTo("master");
+        assertThat(keys.getClientScopes()).isNotEmpty();
+        assertThat(keys.getName()).isNull();
+        assertThat(keys.getProtocol()).isNull();
+    }
+
+    @Test
+    void givenLazyClient_whenGet_thenCompleteClientIsReadOnce() {
+        LazyClient lazyClient = new LazyClient(ACCOUNT, "master");
+
+        FileClientEntity client = lazyClient.get();
+
+        assertThat(client.getName()).isEqualTo("account");
+        assertThat(client.getProtocol()).isEqualTo("openid-connect");
+        assertThat(client.getRealmId()).isEqualTo("master");
+        assertThat(lazyClient.get()).isSameAs(client);
+    }
+}
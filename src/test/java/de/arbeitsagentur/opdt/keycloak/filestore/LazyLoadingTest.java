@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientStore;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("lazy")
+class LazyLoadingTest extends KeycloakModelTest {
+
+    // realms stay known as loaded once loaded, so every test gets realms of its own
+    private static final AtomicInteger REALMS = new AtomicInteger();
+
+    private final List<String> realmIds = new ArrayList<>();
+    private String realmId;
+
+    @BeforeEach
+    void createUnloadedRealm() throws IOException {
+        realmId = createRealmFiles("ithaca");
+        EntityStore.reload();
+
+        assertThat(EntityStore.isLoaded(realmId)).isFalse();
+    }
+
+    @AfterEach
+    void deleteRealms() throws IOException {
+        for (String id : realmIds) {
+            Path realmDirectory = EntityIO.getRootDirectory().resolve(id);
+            if (Files.exists(realmDirectory)) {
+                try (Stream<Path> paths = Files.walk(realmDirectory)) {
+                    for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                }
+            }
+            Files.deleteIfExists(EntityIO.getRootDirectory().resolve(id + ".yaml"));
+        }
+        EntityStore.reload();
+    }
+
+    @Test
+    void givenUnloadedRealm_whenClientsAreDeleted_thenRealmIsNotLoaded() {
+        Path odysseus = FileClientStore.createFilePath("odysseus", realmId);
+
+        FileClientStore.deleteByRealmId(realmId);
+
+        assertThat(odysseus).doesNotExist();
+        assertThat(EntityStore.isLoaded(realmId)).isFalse();
+    }
+
+    @Test
+    void givenUnloadedRealm_whenReadConcurrently_thenItIsLoadedOnce() throws Exception {
+        // the configuration of the tests is per thread, so the path is resolved up front
+        Path penelope = FileRoleStore.createFilePath("penelope", realmId);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<FileRoleEntity>> reads = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    return EntityStore.<FileRoleEntity>get(penelope);
+                }));
+            }
+            start.countDown();
+
+            // a second load would have replaced the role by a newly parsed one
+            FileRoleEntity first = reads.get(0).get();
+            assertThat(first).isNotNull();
+            for (Future<FileRoleEntity> read : reads) {
+                assertThat(read.get()).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenBrokenFile_whenLoadFails_thenNextAccessLoadsAgain() throws IOException {
+        Path penelope = FileRoleStore.createFilePath("penelope", realmId);
+        String content = Files.readString(penelope);
+        Files.writeString(penelope, "compositeRoles: [");
+
+        assertThatThrownBy(() -> FileRoleStore.readAll(realmId)).hasMessageContaining("Could not load realm");
+        assertThat(EntityStore.isLoaded(realmId)).isFalse();
+
+        Files.writeString(penelope, content);
+
+        assertThat(FileRoleStore.readAll(realmId))
+                .extracting(FileRoleEntity::getName)
+                .containsExactly("penelope");
+        assertThat(EntityStore.isLoaded(realmId)).isTrue();
+    }
+
+    @Test
+    void givenUnloadedRealms_whenGetAllOfRealm_thenOnlyThatRealmIsLoaded() throws IOException {
+        String otherRealmId = createRealmFiles("sparta");
+        EntityStore.reload();
+
+        assertThat(FileRoleStore.readAll(realmId))
+                .extracting(FileRoleEntity::getName)
+                .containsExactly("penelope");
+
+        assertThat(EntityStore.isLoaded(realmId)).isTrue();
+        assertThat(EntityStore.isLoaded(otherRealmId)).isFalse();
+    }
+
+    @Test
+    void givenUnloadedRealm_whenEntityIsWritten_thenRealmIsLoadedFirst() {
+        FileRoleEntity telemachus = new FileRoleEntity();
+        telemachus.setId("telemachus");
+        telemachus.setName("telemachus");
+        telemachus.setRealmId(realmId);
+
+        FileRoleStore.update(telemachus);
+
+        assertThat(EntityStore.isLoaded(realmId)).isTrue();
+        assertThat(FileRoleStore.readAll(realmId))
+                .extracting(FileRoleEntity::getName)
+                .containsExactlyInAnyOrder("penelope", "telemachus");
+    }
+
+    @Test
+    void givenUnloadedRealm_whenEntityIsDeleted_thenRealmIsLoadedFirst() {
+        FileRoleStore.deleteById("penelope", realmId);
+
+        assertThat(EntityStore.isLoaded(realmId)).isTrue();
+        assertThat(FileRoleStore.readAll(realmId)).isEmpty();
+        assertThat(EntityStore.exists(FileClientStore.createFilePath("odysseus", realmId)))
+                .isTrue();
+    }
+
+    /** Writes a realm with a role and a client to disk only, so a reload reads just the realm file. */
+    private String createRealmFiles(String name) throws IOException {
+        String id = name + "-" + REALMS.incrementAndGet();
+        realmIds.add(id);
+        Path root = EntityIO.getRootDirectory();
+        Files.writeString(root.resolve(id + ".yaml"), "id: " + id + "\nname: " + id + "\n");
+        Path penelope = FileRoleStore.createFilePath("penelope", id);
+        Files.createDirectories(penelope.getParent());
+        Files.writeString(penelope, "id: penelope\nname: penelope\nrealmId: " + id + "\n");
+        Path odysseus = FileClientStore.createFilePath("odysseus", id);
+        Files.createDirectories(odysseus.getParent());
+        Files.writeString(odysseus, "id: odysseus\nclientId: odysseus\n");
+        return id;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.RoleModel;
+import org.keycloak.storage.DatastoreProvider;
+
+class RealmImportTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "atlantis";
+    private static final Path ROOT = Path.of(TEST_FILESTORE_DIR);
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        s.realms().createRealm(REALM_ID);
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @Test
+    void whenImportRealm_thenFilesAreWrittenWhenTheImportIsDone() {
+        withRealm(REALM_ID, (session, realm) -> {
+            EntityStore.importRealm(REALM_ID, () -> {
+                RoleModel role = session.roles().addRealmRole(realm, "diver-id", "diver");
+                role.setDescription("dives");
+                realm.setDisplayName("Atlantis");
+
+                assertThat(FileRoleStore.createFilePath("diver-id", REALM_ID)).doesNotExist();
+                assertThat(FileRoleStore.exists("diver-id", REALM_ID)).isTrue();
+                assertThat(session.roles().getRealmRole(realm, "diver")).isNotNull();
+                assertThatThrownBy(() -> session.roles().addRealmRole(realm, "diver-id", "swimmer"))
+                        .isInstanceOf(ModelDuplicateException.class);
+            });
+        });
+
+        assertThat(FileRoleStore.createFilePath("diver-id", REALM_ID)).content().contains("description: dives");
+        assertThat(ROOT.resolve(REALM_ID + EntityIO.FILE_SUFFIX)).content().contains("displayName: Atlantis");
+        assertThat(stagingDirectories()).isEmpty();
+    }
+
+    @Test
+    void whenImportRealm_givenRoleRemovedDuringImport_thenNoFileIsWritten() {
+        withRealm(REALM_ID, (session, realm) -> {
+            EntityStore.importRealm(REALM_ID, () -> {
+                RoleModel role = session.roles().addRealmRole(realm, "diver-id", "diver");
+                session.roles().removeRole(role);
+            });
+        });
+
+        assertThat(FileRoleStore.createFilePath("diver-id", REALM_ID)).doesNotExist();
+        assertThat(FileRoleStore.exists("diver-id", REALM_ID)).isFalse();
+    }
+
+    @Test
+    void whenImportRealm_givenFailingImport_thenNothingIsWrittenAndFailureIsThrown() {
+        IllegalStateException failure = new IllegalStateException("broken import");
+
+        withRealm(REALM_ID, (session, realm) -> {
+            assertThatThrownBy(() -> EntityStore.importRealm(REALM_ID, () -> {
+                        session.roles().addRealmRole(realm, "diver-id", "diver");
+                        realm.setDisplayName("Atlantis");
+                        throw failure;
+                    }))
+                    .isSameAs(failure);
+
+            assertThat(FileRoleStore.exists("diver-id", REALM_ID)).isFalse();
+            assertThat(session.realms().getRealm(REALM_ID).getDisplayName()).isNull();
+        });
+
+        assertThat(FileRoleStore.createFilePath("diver-id", REALM_ID)).doesNotExist();
+        assertThat(ROOT.resolve(REALM_ID + EntityIO.FILE_SUFFIX)).content().doesNotContain("displayName: Atlantis");
+        assertThat(stagingDirectories()).isEmpty();
+    }
+
+    @Test
+    void whenGetExportImportManager_thenRealmsAreImportedInOneGo() {
+        inCommittedTransaction(session -> {
+            assertThat(session.getProvider(DatastoreProvider.class).getExportImportManager())
+                    .isInstanceOf(FileExportImportManager.class);
+        });
+    }
+
+    private static List<Path> stagingDirectories() {
+        try (Stream<Path> paths = Files.list(ROOT)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(".import-"))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
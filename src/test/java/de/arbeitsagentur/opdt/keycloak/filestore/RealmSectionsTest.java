@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileAuthenticationFlowEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileLocalizationTexts;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.AuthenticationFlowModel;
+import org.keycloak.models.KeycloakSession;
+
+class RealmSectionsTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "archipelago";
+    private static final Path REALM_FILE = Path.of(TEST_FILESTORE_DIR, REALM_ID + EntityIO.FILE_SUFFIX);
+    private static final Path LOCALIZATION = Path.of(TEST_FILESTORE_DIR, REALM_ID, "localization");
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        splitRealmFiles(true);
+        s.realms().createRealm(REALM_ID);
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+        splitRealmFiles(false);
+    }
+
+    @Test
+    void whenWriteRealm_givenSplitRealmFiles_thenSectionsAreReadFromTheirFiles() throws IOException {
+        String flowId = addSections();
+
+        assertThat(LOCALIZATION.resolve("de.yaml")).content().contains("TREE: Baum");
+        assertThat(REALM_FILE.resolveSibling(REALM_ID).resolve("flows").resolve(flowId + EntityIO.FILE_SUFFIX))
+                .exists();
+        assertThat(REALM_FILE).content().doesNotContain("Baum").contains("- de");
+
+        FileRealmEntity realm = EntityIO.parseFile(REALM_FILE, FileRealmEntity.class);
+        assertThat(realm.getLocalizationTexts())
+                .containsExactlyInAnyOrderEntriesOf(Map.of("de", Map.of("TREE", "Baum"), "en", Map.of("TREE", "Tree")));
+        assertThat(realm.getAuthenticationFlows())
+                .extracting(FileAuthenticationFlowEntity::getAlias)
+                .containsExactly("island-flow");
+    }
+
+    @Test
+    void whenWriteRealm_givenUnchangedSection_thenItsFileIsNotWritten() throws IOException {
+        addSections();
+        FileTime lastModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(LOCALIZATION.resolve("en.yaml"), lastModified);
+
+        withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
+            realms.saveLocalizationText(realm, "de", "HOUSE", "Haus");
+        });
+
+        assertThat(LOCALIZATION.resolve("de.yaml")).content().contains("HOUSE: Haus");
+        assertThat(Files.getLastModifiedTime(LOCALIZATION.resolve("en.yaml"))).isEqualTo(lastModified);
+    }
+
+    @Test
+    void whenParseRealm_givenSplitRealmFiles_thenLocalesAreReadOnFirstAccess() throws IOException {
+        addSections();
+        FileTime lastModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(LOCALIZATION.resolve("en.yaml"), lastModified);
+
+        FileRealmEntity realm = EntityIO.parseFile(REALM_FILE, FileRealmEntity.class);
+        FileLocalizationTexts localizationTexts = (FileLocalizationTexts) realm.getLocalizationTexts();
+        assertThat(localizationTexts.keySet()).containsExactly("de", "en");
+        assertThat(localizationTexts.isLoaded("de")).isFalse();
+        assertThat(realm.getLocalizationText("de")).containsExactly(Map.entry("TREE", "Baum"));
+        assertThat(localizationTexts.isLoaded("de")).isTrue();
+        assertThat(localizationTexts.isLoaded("en")).isFalse();
+
+        localizationTexts.putTexts("de", Map.of("HOUSE", "Haus"));
+        EntityIO.writeToFile(realm, REALM_FILE);
+
+        assertThat(LOCALIZATION.resolve("de.yaml")).content().contains("HOUSE: Haus");
+        assertThat(Files.getLastModifiedTime(LOCALIZATION.resolve("en.yaml"))).isEqualTo(lastModified);
+        assertThat(REALM_FILE).content().contains("- de", "- en");
+    }
+
+    @Test
+    void whenWriteRealm_givenSingleFileLayoutAgain_thenSectionFilesAreRemoved() throws IOException {
+        addSections();
+        splitRealmFiles(false);
+
+        withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
+            realms.saveLocalizationText(realm, "de", "HOUSE", "Haus");
+        });
+
+        assertThat(LOCALIZATION).doesNotExist();
+        assertThat(REALM_FILE).content().contains("Baum", "Haus", "island-flow");
+        assertThat(EntityIO.parseFile(REALM_FILE, FileRealmEntity.class).getLocalizationTexts())
+                .containsEntry("de", Map.of("TREE", "Baum", "HOUSE", "Haus"));
+    }
+
+    private String addSections() {
+        String[] flowId = new String[1];
+        withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
+            realms.saveLocalizationText(realm, "de", "TREE", "Baum");
+            realms.saveLocalizationText(realm, "en", "TREE", "Tree");
+            AuthenticationFlowModel flow = new AuthenticationFlowModel();
+            flow.setAlias("island-flow");
+            flow.setProviderId("basic-flow");
+            flowId[0] = realm.addAuthenticationFlow(flow).getId();
+        });
+        return flowId[0];
+    }
+
+    private static void splitRealmFiles(boolean enabled) {
+        CONFIG.spi("mapStorage").provider("file").config("splitRealmFiles", enabled ? "true" : null);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RealmSelectionTest {
+
+    @ParameterizedTest
+    @CsvSource({"tenant-a, true", "tenant-ab, true", "tenant-1, true", "other, false", "master, true"})
+    void whenIsSelected_givenIncludedGlob_thenSelectMatchingRealms(String realmId, boolean expected) {
+        var selection = new RealmSelection("master", List.of("tenant-*"), List.of(), 1, 0);
+        assertThat(selection.isSelected(realmId)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"tenant-a, false", "tenant-ab, true", "te.ant-a, true", "other, true"})
+    void whenIsSelected_givenExcludedGlob_thenSkipMatchingRealms(String realmId, boolean expected) {
+        var selection = new RealmSelection("master", List.of(), List.of("tenant-?"), 1, 0);
+        assertThat(selection.isSelected(realmId)).isEqualTo(expected);
+    }
+
+    @Test
+    void whenIsSelected_givenShards_thenEveryRealmIsSelectedByExactlyOneShard() {
+        var shards = IntStream.range(0, 3)
+                .mapToObj(i -> new RealmSelection("master", List.of(), List.of(), 3, i))
+                .toList();
+        IntStream.range(0, 100).mapToObj(i -> "realm-" + i).forEach(realmId -> assertThat(
+                        shards.stream().filter(shard -> shard.isSelected(realmId)))
+                .hasSize(1));
+        assertThat(shards).allMatch(shard -> shard.isSelected("master"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 3})
+    void whenCreate_givenInvalidShardIndex_thenExceptionIsThrown(int shardIndex) {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> new RealmSelection("master", List.of(), List.of(), 3, shardIndex));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"keycloak-0, 0", "keycloak-12, 12", "keycloak-2-1, 1"})
+    void whenGetOrdinal_givenStatefulSetHostName_thenReturnOrdinal(String hostName, int expected) {
+        assertThat(RealmSelection.getOrdinal(hostName)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"keycloak", "keycloak-abc"})
+    void whenGetOrdinal_givenNoOrdinal_thenReturnNull(String hostName) {
+        assertThat(RealmSelection.getOrdinal(hostName)).isNull();
+    }
+}
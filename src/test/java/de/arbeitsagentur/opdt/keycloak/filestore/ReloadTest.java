@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+
+class ReloadTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "babylon";
+
+    private final Path path = FileRoleStore.createFilePath("gardener-id", REALM_ID);
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        s.getContext().setRealm(realm);
+        s.roles().addRealmRole(realm, "gardener-id", "gardener");
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @BeforeEach
+    void recordFiles() {
+        EntityStore.reload();
+    }
+
+    @Test
+    void givenNoChanges_whenReload_thenNothingIsParsed() {
+        ReloadStats stats = EntityStore.reload();
+
+        assertThat(stats.scanned()).isPositive();
+        assertThat(stats.changed()).isZero();
+        assertThat(stats.parsed()).isZero();
+    }
+
+    @Test
+    void givenChangedFile_whenReload_thenOnlyItIsParsed() throws IOException {
+        // entities write themselves through, so the file is changed as a ConfigMap rollout would
+        Files.writeString(
+                path, Files.readString(path).replace("description: null", "description: tends hanging gardens"));
+
+        ReloadStats stats = EntityStore.reload();
+
+        assertThat(stats.changed()).isOne();
+        assertThat(stats.parsed()).isOne();
+        assertThat(FileRoleStore.read("gardener-id", REALM_ID).getDescription()).isEqualTo("tends hanging gardens");
+    }
+
+    @Test
+    void givenFilesInOtherFormat_whenReload_thenTheyAreSkipped() throws IOException {
+        Path export = EntityIO.getRootDirectory().resolve("realm-export.json");
+        Path role = FileRoleStore.createFilePath("scribe-id", REALM_ID).resolveSibling("scribe-id.json");
+        try {
+            Files.writeString(export, "{}");
+            Files.writeString(role, "{\"id\": \"scribe-id\", \"name\": \"scribe\"}");
+
+            ReloadStats stats = EntityStore.reload();
+
+            assertThat(stats.changed()).isZero();
+            assertThat(FileRoleStore.readAll(REALM_ID))
+                    .extracting(FileRoleEntity::getName)
+                    .containsExactly("gardener");
+        } finally {
+            Files.deleteIfExists(export);
+            Files.deleteIfExists(role);
+        }
+    }
+
+    @Test
+    void givenFileWithNewModificationTimeOnly_whenReload_thenItIsNotParsed() throws IOException {
+        Files.setLastModifiedTime(path, FileTime.fromMillis(0));
+
+        ReloadStats stats = EntityStore.reload();
+
+        assertThat(stats.changed()).isZero();
+        assertThat(stats.parsed()).isZero();
+    }
+
+    @Test
+    void givenDeletedFile_whenReload_thenItIsRemoved() throws IOException {
+        Files.delete(path);
+
+        ReloadStats stats = EntityStore.reload();
+
+        assertThat(stats.changed()).isOne();
+        assertThat(FileRoleStore.read("gardener-id", REALM_ID)).isNull();
+    }
+}
@@ -21,6 +21,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -73,4 +74,41 @@ class SearchPatternsTest extends KeycloakModelTest {
         var actual = SearchPatterns.insensitiveLike(value, "%pattern%");
         assertThat(actual).isTrue();
     }
+
+    static Stream<Arguments> likeMatcherArguments() {
+        return Stream.of(
+                arguments("%", "anything", true),
+                arguments("", "", true),
+                arguments("", "x", false),
+                arguments("exact", "EXACT", true),
+                arguments("exact", "exact-not", false),
+                arguments("pre%", "PREFIX", true),
+                arguments("pre%", "apre", false),
+                arguments("%fix", "suFFIX", true),
+                arguments("%fix", "fixed", false),
+                arguments("%tai%", "conTAIns", true),
+                arguments("%tai%", "ta", false),
+                arguments("a%c", "ABC", true),
+                arguments("a%c", "abcd", false),
+                arguments("%a.c%", "xabcx", false),
+                arguments("%a.c%", "xA.Cx", true));
+    }
+
+    @ParameterizedTest
+    @MethodSource("likeMatcherArguments")
+    void whenInsensitiveLikeMatcher_givenPattern_thenMatchLikeInsensitiveLike(
+            String pattern, String value, boolean expected) {
+        var matcher = SearchPatterns.insensitiveLikeMatcher(pattern);
+
+        assertThat(matcher.test(value)).isEqualTo(expected);
+        assertThat(matcher.test(null)).isFalse();
+        assertThat(SearchPatterns.insensitiveLike(value, pattern)).isEqualTo(expected);
+    }
+
+    @Test
+    void whenLikeMatcher_givenDifferentCase_thenReturnFalse() {
+        assertThat(SearchPatterns.likeMatcher("%tai%").test("conTAIns")).isFalse();
+        assertThat(SearchPatterns.likeMatcher("pre%").test("PREFIX")).isFalse();
+        assertThat(SearchPatterns.likeMatcher("%tai%").test("contains")).isTrue();
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+
+class SharedVolumeTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "nineveh";
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        s.getContext().setRealm(realm);
+        s.roles().addRealmRole(realm, "scribe-id", "scribe");
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @Test
+    void givenChangeOfOtherNode_whenApplyChanges_thenOnlyThatFileIsReadAgain() throws IOException {
+        Path path = FileRoleStore.createFilePath("scribe-id", REALM_ID);
+        // entities write themselves through, so the file is changed as another node would
+        Files.writeString(path, Files.readString(path).replace("description: null", "description: writes on clay"));
+
+        assertThat(FileRoleStore.read("scribe-id", REALM_ID).getDescription()).isNull();
+
+        EntityStore.applyChanges(List.of(new ChangeLog.Change(0, ChangeLog.Operation.WRITE, path)));
+
+        assertThat(FileRoleStore.read("scribe-id", REALM_ID).getDescription()).isEqualTo("writes on clay");
+
+        Files.delete(path);
+        EntityStore.applyChanges(List.of(new ChangeLog.Change(1, ChangeLog.Operation.DELETE, path)));
+
+        assertThat(FileRoleStore.read("scribe-id", REALM_ID)).isNull();
+        assertThat(FileRoleStore.exists("scribe-id", REALM_ID)).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+class StoreBatchTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "thebes";
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        s.getContext().setRealm(realm);
+        s.roles().addRealmRole(realm, "scribe-id", "scribe").setDescription("writes");
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @Test
+    void whenBatch_thenFilesAreChangedWhenTheBatchIsDone() {
+        withRealm(REALM_ID, (session, realm) -> {
+            EntityStore.batch(() -> {
+                session.roles().addRealmRole(realm, "priest-id", "priest");
+                session.roles().removeRole(session.roles().getRoleById(realm, "scribe-id"));
+
+                assertThat(FileRoleStore.createFilePath("priest-id", REALM_ID)).doesNotExist();
+                assertThat(FileRoleStore.createFilePath("scribe-id", REALM_ID)).exists();
+            });
+        });
+
+        assertThat(FileRoleStore.createFilePath("priest-id", REALM_ID)).exists();
+        assertThat(FileRoleStore.createFilePath("scribe-id", REALM_ID)).doesNotExist();
+    }
+
+    @Test
+    void whenBatch_givenFailingOperation_thenNothingIsChangedAndFailureIsThrown() {
+        IllegalStateException failure = new IllegalStateException("broken batch");
+
+        withRealm(REALM_ID, (session, realm) -> {
+            assertThatThrownBy(() -> EntityStore.batch(() -> {
+                        session.roles().addRealmRole(realm, "priest-id", "priest");
+                        RoleModel scribe = session.roles().getRoleById(realm, "scribe-id");
+                        scribe.setDescription("reads");
+                        session.roles().removeRole(scribe);
+                        throw failure;
+                    }))
+                    .isSameAs(failure);
+
+            assertThat(session.roles().getRoleById(realm, "priest-id")).isNull();
+            assertThat(session.roles().getRoleById(realm, "scribe-id").getDescription())
+                    .isEqualTo("writes");
+        });
+
+        assertThat(FileRoleStore.createFilePath("priest-id", REALM_ID)).doesNotExist();
+        assertThat(FileRoleStore.createFilePath("scribe-id", REALM_ID))
+                .content()
+                .contains("description: writes");
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleStore;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+
+class TombstonesTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "pompeii";
+    private static final Path ROOT = Path.of(TEST_FILESTORE_DIR);
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        s.getContext().setRealm(realm);
+        ClientModel client = s.clients().addClient(realm, "forum-id", "forum");
+        RoleModel merchant = s.roles().addClientRole(client, "merchant");
+        RoleModel citizen = s.roles().addRealmRole(realm, "citizen");
+        citizen.addCompositeRole(merchant);
+        s.groups().createGroup(realm, "senate-id", "senate");
+        s.clientScopes().addClientScope(realm, "baths");
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @Test
+    void whenRemoveRealm_thenItsEntitiesAreRemovedAtOnce() {
+        inCommittedTransaction(session -> {
+            session.realms().removeRealm(REALM_ID);
+        });
+
+        assertThat(FileRoleStore.readAll(REALM_ID)).isEmpty();
+        assertThat(ROOT.resolve(REALM_ID)).doesNotExist();
+        awaitNoTombstones();
+    }
+
+    @Test
+    void whenRemoveClient_thenItsRolesAreRemovedFromCompositesAndDeleted() {
+        withRealm(REALM_ID, (session, realm) -> {
+            session.clients().removeClient(realm, "forum-id");
+        });
+
+        withRealm(REALM_ID, (session, realm) -> {
+            assertThat(session.roles().getRealmRole(realm, "citizen").getCompositesStream())
+                    .isEmpty();
+        });
+        assertThat(ROOT.resolve(REALM_ID).resolve("roles").resolve("forum")).doesNotExist();
+    }
+
+    @Test
+    void givenTombstoneOfPreviousRun_whenClear_thenItIsDeleted() throws IOException {
+        Path tombstone = ROOT.resolve(".deleted-previous-run");
+        Files.createDirectories(tombstone.resolve("roles"));
+        Files.writeString(tombstone.resolve("roles").resolve("citizen.yaml"), "name: citizen");
+
+        Tombstones.clear(ROOT);
+
+        awaitNoTombstones();
+    }
+
+    private static void awaitNoTombstones() {
+        for (int i = 0; i < 100 && !tombstones().isEmpty(); i++) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assertThat(tombstones()).isEmpty();
+    }
+
+    private static List<Path> tombstones() {
+        try (Stream<Path> paths = Files.list(ROOT)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(".deleted-"))
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore.benchmark;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityCodec;
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.UpdatableEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.realm.FileRealmEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Reading and writing the master realm, its admin console client and its admin role of the test
+ * file store with each {@link EntityCodec}.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.arbeitsagentur.opdt.keycloak.filestore.benchmark.CodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"yaml", "json"})
+    public String format;
+
+    @Param({"realm", "client", "role"})
+    public String entity;
+
+    private EntityCodec codec;
+    private Class<?> type;
+    private AbstractEntity parsed;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        Path master = Path.of("src/test/filestore");
+        Path source =
+                switch (entity) {
+                    case "realm" -> {
+                        type = FileRealmEntity.class;
+                        yield master.resolve("master.yaml");
+                    }
+                    case "client" -> {
+                        type = FileClientEntity.class;
+                        yield master.resolve("master/clients/admin-cli.yaml");
+                    }
+                    default -> {
+                        type = FileRoleEntity.class;
+                        yield master.resolve("master/roles/admin.yaml");
+                    }
+                };
+
+        codec = EntityCodec.forName(format);
+        parsed = read(EntityCodec.YAML, source);
+        file = Files.createTempFile("codec-benchmark-", codec.getFileSuffix());
+        Files.writeString(file, write(codec, parsed));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public AbstractEntity read() {
+        return read(codec, file);
+    }
+
+    @Benchmark
+    public String write() {
+        return write(codec, parsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends AbstractEntity & UpdatableEntity> E read(EntityCodec codec, Path path) {
+        return codec.read(path, (Class<E>) type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends AbstractEntity & UpdatableEntity> String write(EntityCodec codec, AbstractEntity entity) {
+        return codec.write((E) entity);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(CodecBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore.benchmark;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityCodec;
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
+import de.arbeitsagentur.opdt.keycloak.filestore.clientscope.FileClientScopeEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.common.AbstractEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.testsetup.Config;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Retained heap of a synthetic file store with many client scopes, roles and groups. The entities
+ * are measured once as read by the {@link EntityCodec}, i.e. with the interning done while parsing
+ * only, and once loaded into {@link EntityStore}, i.e. additionally deduplicated, compacted and
+ * indexed. Client scopes are generated into one realm, roles and the groups granting them into
+ * another, both loaded lazily so that each realm can be measured on its own.
+ *
+ * <p>Every client scope has three protocol mappers with one of three configs, every tenth role is a
+ * composite of three other roles, every twentieth role and group has an attribute and every group
+ * grants two roles.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.arbeitsagentur.opdt.keycloak.filestore.benchmark.FootprintBenchmark
+ * -Dexec.args="20000 100000 10000"}, the arguments being the number of client scopes, roles and
+ * groups.
+ */
+public class FootprintBenchmark {
+
+    private static final String SCOPES_REALM = "scopes";
+    private static final String ROLES_REALM = "roles";
+
+    public static void main(String[] args) throws IOException {
+        int clientScopes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int roles = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int groups = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        Path root = Files.createTempDirectory("footprint-benchmark-");
+        try {
+            writeClientScopes(root, clientScopes);
+            writeRolesAndGroups(root, roles, groups);
+
+            Config config = new Config(() -> true);
+            config.spi("mapStorage")
+                    .provider("file")
+                    .config("dir", root.toString())
+                    .config("lazyLoading", "true");
+            org.keycloak.Config.init(config);
+
+            System.out.printf("%,d client scopes, %,d roles, %,d groups%n", clientScopes, roles, groups);
+            report("client scopes read", read(root.resolve(SCOPES_REALM), FileClientScopeEntity.class));
+            report("roles and groups read", read(root.resolve(ROLES_REALM), FileRoleEntity.class));
+            report("client scopes loaded", load(SCOPES_REALM));
+            report("roles and groups loaded", load(ROLES_REALM));
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    /** Heap retained by the entities of the realm directory as read by the codec. */
+    private static long read(Path realmDirectory, Class<? extends AbstractEntity> type) throws IOException {
+        long before = usedHeap();
+        List<AbstractEntity> entities = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(realmDirectory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                Class<? extends AbstractEntity> fileType =
+                        file.getParent().getFileName().toString().equals("groups") ? FileGroupEntity.class : type;
+                entities.add(readFile(file, fileType));
+            }
+        }
+        long retained = usedHeap() - before;
+        System.out.printf("  (%,d entities)%n", entities.size());
+        return retained;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AbstractEntity readFile(Path file, Class type) {
+        return (AbstractEntity) EntityCodec.YAML.read(file, type);
+    }
+
+    /** Heap retained by loading the realm into the store. */
+    private static long load(String realmId) {
+        long before = usedHeap();
+        // loads the realm, which is kept by the store
+        EntityStore.getAll(FileRoleEntity.class, realmId);
+        return usedHeap() - before;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String name, long bytes) {
+        System.out.printf("%-25s %8.1f MB%n", name, bytes / 1024.0 / 1024.0);
+    }
+
+    private static void writeClientScopes(Path root, int count) throws IOException {
+        writeRealm(root, SCOPES_REALM);
+        Path directory = Files.createDirectories(root.resolve(SCOPES_REALM).resolve("client-scopes"));
+        for (int i = 0; i < count; i++) {
+            StringBuilder yaml = new StringBuilder()
+                    .append("id: ")
+                    .append(id("scope", i))
+                    .append("\nname: scope-")
+                    .append(i)
+                    .append("\ndescription: Synthetic client scope ")
+                    .append(i)
+                    .append("\nprotocol: openid-connect\nrealmId: ")
+                    .append(SCOPES_REALM)
+                    .append("\nattributes:\n  display.on.consent.screen: 'true'\n")
+                    .append("  include.in.token.scope: 'true'\nprotocolMappers:\n");
+            for (int m = 0; m < 3; m++) {
+                yaml.append("- id: ")
+                        .append(id("mapper", i * 3 + m))
+                        .append("\n  name: claim-")
+                        .append(m)
+                        .append("\n  protocolMapper: oidc-usermodel-attribute-mapper\n  config:\n")
+                        .append("    access.token.claim: 'true'\n    id.token.claim: 'true'\n")
+                        .append("    userinfo.token.claim: 'true'\n    jsonType.label: String\n")
+                        .append("    claim.name: claim-")
+                        .append(m)
+                        .append("\n    user.attribute: attribute-")
+                        .append(m)
+                        .append('\n');
+            }
+            yaml.append("scopeMappings: []\n");
+            write(directory.resolve(id("scope", i) + ".yaml"), yaml);
+        }
+    }
+
+    private static void writeRolesAndGroups(Path root, int roles, int groups) throws IOException {
+        writeRealm(root, ROLES_REALM);
+        Path roleDirectory = Files.createDirectories(root.resolve(ROLES_REALM).resolve("roles"));
+        for (int i = 0; i < roles; i++) {
+            StringBuilder yaml = new StringBuilder()
+                    .append("id: ")
+                    .append(id("role", i))
+                    .append("\nname: role-")
+                    .append(i)
+                    .append("\nrealmId: ")
+                    .append(ROLES_REALM)
+                    .append('\n');
+            appendAttributes(yaml, i);
+            yaml.append("compositeRoles:");
+            if (i % 10 == 0) {
+                for (int c = 1; c <= 3; c++) {
+                    yaml.append("\n- ").append(id("role", (i + c) % roles));
+                }
+                yaml.append('\n');
+            } else {
+                yaml.append(" []\n");
+            }
+            write(roleDirectory.resolve(id("role", i) + ".yaml"), yaml);
+        }
+
+        Path groupDirectory = Files.createDirectories(root.resolve(ROLES_REALM).resolve("groups"));
+        for (int i = 0; i < groups; i++) {
+            StringBuilder yaml = new StringBuilder()
+                    .append("id: ")
+                    .append(id("group", i))
+                    .append("\nname: group-")
+                    .append(i)
+                    .append("\nrealmId: ")
+                    .append(ROLES_REALM)
+                    .append('\n');
+            appendAttributes(yaml, i);
+            yaml.append("grantedRoles:\n- ")
+                    .append(id("role", i % roles))
+                    .append("\n- ")
+                    .append(id("role", (i + roles / 2) % roles))
+                    .append('\n');
+            write(groupDirectory.resolve(id("group", i) + ".yaml"), yaml);
+        }
+    }
+
+    private static void appendAttributes(StringBuilder yaml, int i) {
+        if (i % 20 == 0) {
+            yaml.append("attributes:\n  department: department-").append(i % 7).append('\n');
+        } else {
+            yaml.append("attributes: {}\n");
+        }
+    }
+
+    private static void writeRealm(Path root, String realmId) throws IOException {
+        write(root.resolve(realmId + ".yaml"), new StringBuilder("id: " + realmId + "\nname: " + realmId + "\n"));
+    }
+
+    private static void write(Path file, StringBuilder yaml) throws IOException {
+        Files.writeString(file, yaml, StandardCharsets.UTF_8);
+    }
+
+    private static String id(String type, int i) {
+        return UUID.nameUUIDFromBytes((type + i).getBytes(StandardCharsets.UTF_8))
+                .toString();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.benchmark;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientAdapter;
+import de.arbeitsagentur.opdt.keycloak.filestore.client.FileClientEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupAdapter;
+import de.arbeitsagentur.opdt.keycloak.filestore.group.FileGroupEntity;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleAdapter;
+import de.arbeitsagentur.opdt.keycloak.filestore.role.FileRoleEntity;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.GroupModel;
+import org.keycloak.models.RealmModel;
+import org.keycloak.models.RoleModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Membership checks on clients and groups with many scope mappings / granted roles. The {@code
+ * listContains} benchmark is the baseline of the former {@code ArrayList} representation.
+ *
+ * <p>Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=de.arbeitsagentur.opdt.keycloak.filestore.benchmark.MembershipBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MembershipBenchmark {
+
+    @Param({"2000"})
+    public int mappings;
+
+    private ClientModel client;
+    private GroupModel group;
+    private RoleModel lastRole;
+    private List<String> scopeMappingList;
+
+    @Setup
+    public void setup() {
+        RealmModel realm = (RealmModel) Proxy.newProxyInstance(
+                RealmModel.class.getClassLoader(), new Class<?>[] {RealmModel.class}, (proxy, method, args) -> null);
+
+        Set<String> roleIds = new LinkedHashSet<>();
+        for (int i = 0; i < mappings; i++) {
+            roleIds.add("role-" + i);
+        }
+
+        FileClientEntity clientEntity = new FileClientEntity();
+        clientEntity.setScopeMappings(new LinkedHashSet<>(roleIds));
+        client = new FileClientAdapter(null, realm, clientEntity) {
+            @Override
+            public void updateClient() {}
+
+            @Override
+            public Map<String, Integer> getRegisteredNodes() {
+                return Map.of();
+            }
+
+            @Override
+            public void registerNode(String nodeHost, int registrationTime) {}
+
+            @Override
+            public void unregisterNode(String nodeHost) {}
+        };
+
+        // no id/realm set, so the store is never written to
+        FileGroupEntity groupEntity = new FileGroupEntity();
+        groupEntity.setGrantedRoles(new LinkedHashSet<>(roleIds));
+        group = new FileGroupAdapter(null, realm, groupEntity) {
+            @Override
+            public Stream<GroupModel> getSubGroupsStream() {
+                return Stream.empty();
+            }
+        };
+
+        FileRoleEntity roleEntity = new FileRoleEntity();
+        roleEntity.setId("role-" + (mappings - 1));
+        lastRole = new FileRoleAdapter(null, realm, roleEntity);
+
+        scopeMappingList = new ArrayList<>(roleIds);
+    }
+
+    @Benchmark
+    public boolean clientHasScope() {
+        return client.hasScope(lastRole);
+    }
+
+    @Benchmark
+    public boolean clientHasDirectScope() {
+        return client.hasDirectScope(lastRole);
+    }
+
+    @Benchmark
+    public boolean groupHasDirectRole() {
+        return group.hasDirectRole(lastRole);
+    }
+
+    @Benchmark
+    public boolean listContains() {
+        return scopeMappingList.contains(lastRole.getId());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                        .include(MembershipBenchmark.class.getSimpleName())
+                        .build())
+                .run();
+    }
+}
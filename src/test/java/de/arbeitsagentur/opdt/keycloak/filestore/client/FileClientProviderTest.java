@@ -20,6 +20,8 @@ package de.arbeitsagentur.opdt.keycloak.filestore.client;
 import static org.assertj.core.api.Assertions.*;
 
 import de.arbeitsagentur.opdt.keycloak.filestore.KeycloakModelTest;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -31,6 +33,8 @@ import org.keycloak.models.ClientModel;
 import org.keycloak.models.ClientScopeModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.ProtocolMapperModel;
+import org.keycloak.models.RealmModel;
 
 class FileClientProviderTest extends KeycloakModelTest {
 
@@ -232,6 +236,40 @@ class FileClientProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetClientsCount_givenRemovedAndUpdatedClients_thenReturnCurrentCount() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::clients, (clients, realm) -> {
+            // Arrange
+            var vienna = clients.addClient(realm, "Vienna");
+            clients.addClient(realm, "Rome");
+            var oslo = clients.addClient(realm, "Oslo");
+            // Act
+            clients.removeClient(realm, vienna.getId());
+            oslo.setClientId("Bergen");
+            // Assert
+            assertThat(clients.getClientsCount(realm)).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void whenGetClientsCount_givenClientsInOtherRealm_thenCountRealmOnly() {
+        inCommittedTransaction(session -> {
+            // Arrange
+            RealmModel realm = session.realms().getRealm(REALM_ID);
+            RealmModel other = session.realms().createRealm("other-capital");
+            try {
+                session.clients().addClient(realm, "Vienna");
+                session.clients().addClient(other, "Prague");
+                session.clients().addClient(other, "Brno");
+                // Act & Assert
+                assertThat(session.clients().getClientsCount(realm)).isEqualTo(1);
+                assertThat(session.clients().getClientsCount(other)).isEqualTo(2);
+            } finally {
+                session.realms().removeRealm(other.getId());
+            }
+        });
+    }
+
     @Test
     void whenRemoveClients_givenNoClients_thenNoExceptionIsThrown() {
         withRealmAndProvider(REALM_ID, KeycloakSession::clients, (clients, realm) -> {
@@ -426,6 +464,44 @@ class FileClientProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenSearchClientsByAttributes_givenChangedValue_thenReturnStreamOfCurrentValues() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::clients, (clients, realm) -> {
+            // Arrange
+            clients.addClient(realm, "Osaka").setAttribute("tenant-id", "west");
+            var c = clients.addClient(realm, "Kyoto");
+            c.setAttribute("tenant-id", "east");
+            c.setAttribute("tenant-id", "west");
+            // Act
+            Stream<ClientModel> byOldValue =
+                    clients.searchClientsByAttributes(realm, Map.of("tenant-id", "east"), null, null);
+            Stream<ClientModel> byNewValue =
+                    clients.searchClientsByAttributes(realm, Map.of("tenant-id", "west"), null, null);
+            // Assert
+            assertThat(byOldValue).isEmpty();
+            assertThat(byNewValue).map(ClientModel::getClientId).containsExactly("Kyoto", "Osaka");
+        });
+    }
+
+    @Test
+    void whenSearchClientsByAttributes_givenLongAndUnindexedValues_thenReturnStream() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::clients, (clients, realm) -> {
+            // Arrange
+            String longValue = "x".repeat(1000);
+            clients.addClient(realm, "Lagos").setAttribute("tenant-id", longValue);
+            clients.addClient(realm, "Accra").setAttribute("not-indexed", "val");
+            clients.addClient(realm, "Dakar").setAttribute("tenant-id", "x");
+            // Act
+            Stream<ClientModel> byLongValue =
+                    clients.searchClientsByAttributes(realm, Map.of("tenant-id", longValue), null, null);
+            Stream<ClientModel> byUnindexedName =
+                    clients.searchClientsByAttributes(realm, Map.of("not-indexed", "val"), null, null);
+            // Assert
+            assertThat(byLongValue).map(ClientModel::getClientId).containsExactly("Lagos");
+            assertThat(byUnindexedName).map(ClientModel::getClientId).containsExactly("Accra");
+        });
+    }
+
     @Test
     void whenAddClientScopes_givenClientScopes_thenNoExceptionIsThrown() {
         withRealm(REALM_ID, (session, realm) -> {
@@ -473,6 +549,92 @@ class FileClientProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenRemoveClientScopeFromRealm_givenAssignedClientScope_thenClientScopeIsUnassigned() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var c = session.clients().addClient(realm, "Busan");
+            var cs = session.clientScopes().addClientScope(realm, "harbour");
+            c.addClientScope(cs, true);
+            // Act
+            session.clientScopes().removeClientScope(realm, cs.getId());
+            // Assert
+            assertThat(FileClientStore.read(c.getId(), realm.getId()).getClientScopes())
+                    .doesNotContainKey("harbour");
+        });
+    }
+
+    @Test
+    void whenRemoveRole_givenScopeMapping_thenScopeMappingIsRemoved() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var c = session.clients().addClient(realm, "Incheon");
+            var role = session.roles().addRealmRole(realm, "airport");
+            c.addScopeMapping(role);
+            // Act
+            session.roles().removeRole(role);
+            // Assert
+            assertThat(FileClientStore.read(c.getId(), realm.getId()).getScopeMappings())
+                    .doesNotContain("airport");
+        });
+    }
+
+    @Test
+    void whenHasScope_givenChangedCompositeOrClientRole_thenReturnCurrentScope() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var c = session.clients().addClient(realm, "Daegu");
+            c.setFullScopeAllowed(false);
+            var parent = session.roles().addRealmRole(realm, "mountain");
+            var child = session.roles().addRealmRole(realm, "summit");
+            c.addScopeMapping(parent);
+            // Act & Assert
+            assertThat(c.hasScope(child)).isFalse();
+            parent.addCompositeRole(child);
+            assertThat(c.hasScope(child)).isTrue();
+            parent.removeCompositeRole(child);
+            assertThat(c.hasScope(child)).isFalse();
+            var clientRole = session.roles().addClientRole(c, "valley");
+            assertThat(c.hasScope(clientRole)).isTrue();
+        });
+    }
+
+    @Test
+    void whenChangeProtocolMapperModel_givenCachedProtocolMappers_thenCacheIsUnchanged() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var c = session.clients().addClient(realm, "Gwangju");
+            var mapper = new ProtocolMapperModel();
+            mapper.setName("audience");
+            mapper.setProtocol("openid-connect");
+            mapper.setProtocolMapper("oidc-audience-mapper");
+            mapper.setConfig(new HashMap<>(Map.of("included.client.audience", "Gwangju")));
+            c.addProtocolMapper(mapper);
+            // Act
+            c.getProtocolMappersStream().forEach(m -> m.getConfig().put("included.client.audience", "Seoul"));
+            // Assert
+            assertThat(c.getProtocolMappersStream()).singleElement().satisfies(m -> assertThat(m.getConfig())
+                    .containsEntry("included.client.audience", "Gwangju"));
+        });
+    }
+
+    @Test
+    void whenAddRedirectUri_givenDuplicate_thenStoreOnceAsSequence() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var c = session.clients().addClient(realm, "Ulsan");
+            // Act
+            c.addRedirectUri("https://ulsan/b");
+            c.addRedirectUri("https://ulsan/a");
+            c.addRedirectUri("https://ulsan/b");
+            // Assert
+            assertThat(c.getRedirectUris()).containsExactlyInAnyOrder("https://ulsan/a", "https://ulsan/b");
+            assertThat(Path.of(TEST_FILESTORE_DIR, REALM_ID, "clients", "Ulsan.yaml"))
+                    .content()
+                    .contains("redirectUris:\n- https://ulsan/b\n- https://ulsan/a\n");
+        });
+    }
+
     @Test
     void whenGetAllRedirectUrisOfEnabledClients_givenNoUris_thenReturnEmptyMap() {
         withRealmAndProvider(REALM_ID, KeycloakSession::clients, (clients, realm) -> {
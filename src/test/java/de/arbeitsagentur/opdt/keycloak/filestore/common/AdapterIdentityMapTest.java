@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.arbeitsagentur.opdt.keycloak.filestore.KeycloakModelTest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.keycloak.models.ClientModel;
+import org.keycloak.models.ClientScopeModel;
+import org.keycloak.models.GroupModel;
+import org.keycloak.models.KeycloakSession;
+import org.keycloak.models.RealmModel;
+
+class AdapterIdentityMapTest extends KeycloakModelTest {
+
+    private static final String REALM_ID = "atlas";
+    private static final int REQUESTS = 10;
+    private static final int CLIENT_SCOPES = 5;
+    private static final int ROLES = 20;
+
+    @Override
+    protected void createEnvironment(KeycloakSession s) {
+        RealmModel realm = s.realms().createRealm(REALM_ID);
+        ClientModel client = s.clients().addClient(realm, "portal");
+        GroupModel group = s.groups().createGroup(realm, "staff");
+        for (int i = 0; i < CLIENT_SCOPES; i++) {
+            client.addClientScope(s.clientScopes().addClientScope(realm, "scope-" + i), true);
+        }
+        for (int i = 0; i < ROLES; i++) {
+            group.grantRole(realm.addRole("role-" + i));
+        }
+    }
+
+    @Override
+    protected void cleanEnvironment(KeycloakSession s) {
+        s.realms().removeRealm(REALM_ID);
+    }
+
+    @Test
+    void givenTokenRequestLookups_whenRepeatedInOneSession_thenOneAdapterIsCreatedPerEntity() {
+        Set<Object> adapters = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Object> lookedUp = new ArrayList<>();
+
+        withRealm(REALM_ID, (session, realm) -> {
+            String clientId =
+                    session.clients().getClientByClientId(realm, "portal").getId();
+            List<String> clientScopeIds = session.clientScopes()
+                    .getClientScopesStream(realm)
+                    .map(ClientScopeModel::getId)
+                    .toList();
+            for (int i = 0; i < REQUESTS; i++) {
+                lookedUp.add(session.clients().getClientById(realm, clientId));
+                clientScopeIds.forEach(id -> lookedUp.add(session.clientScopes().getClientScopeById(realm, id)));
+                GroupModel group = session.groups().getGroupById(realm, "staff");
+                lookedUp.add(group);
+                group.getRoleMappingsStream().forEach(lookedUp::add);
+            }
+        });
+        adapters.addAll(lookedUp);
+
+        // without the identity map every lookup created an adapter
+        assertThat(lookedUp).hasSize(REQUESTS * (1 + CLIENT_SCOPES + 1 + ROLES));
+        assertThat(adapters).hasSize(1 + CLIENT_SCOPES + 1 + ROLES);
+    }
+
+    @Test
+    void givenLookups_whenInAnotherSession_thenNewAdaptersAreCreated() {
+        Object[] first = new Object[1];
+        withRealm(REALM_ID, (session, realm) -> first[0] = session.groups().getGroupById(realm, "staff"));
+
+        withRealm(REALM_ID, (session, realm) -> {
+            GroupModel group = session.groups().getGroupById(realm, "staff");
+            assertThat(group).isNotSameAs(first[0]);
+            assertThat(session.groups().getGroupById(realm, "staff")).isSameAs(group);
+        });
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CompactSetTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, CompactSet.MAX_PACKED_SIZE, CompactSet.MAX_PACKED_SIZE + 1, 100})
+    void whenAdd_givenDuplicates_thenKeepInsertionOrderWithoutDuplicates(int size) {
+        List<String> elements =
+                IntStream.range(0, size).mapToObj(i -> "role-" + (size - i)).toList();
+        var set = new CompactSet<String>();
+        elements.forEach(set::add);
+        elements.forEach(element -> assertThat(set.add(element)).isFalse());
+
+        assertThat(set).containsExactlyElementsOf(elements);
+        assertThat(set.contains("role-" + (size + 1))).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, CompactSet.MAX_PACKED_SIZE, 100})
+    void whenRemove_givenElementsAndIterator_thenKeepRemainingOrder(int size) {
+        var set = new CompactSet<>(IntStream.range(0, size).boxed().toList());
+
+        assertThat(set.remove(0)).isTrue();
+        assertThat(set.remove(0)).isFalse();
+        set.removeIf(i -> i % 2 == 0);
+
+        assertThat(set)
+                .containsExactlyElementsOf(
+                        IntStream.range(1, size).filter(i -> i % 2 != 0).boxed().toList());
+    }
+}
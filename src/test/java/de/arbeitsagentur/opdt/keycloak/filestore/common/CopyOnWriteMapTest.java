@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class CopyOnWriteMapTest {
+
+    private final Map<String, String> shared =
+            Collections.unmodifiableMap(new LinkedHashMap<>(Map.of("claim.name", "street")));
+
+    @Test
+    void whenPutRemoveOrClear_givenSharedMap_thenOnlyTheCopyChanges() {
+        CopyOnWriteMap<String, String> put = new CopyOnWriteMap<>(shared);
+        CopyOnWriteMap<String, String> removed = new CopyOnWriteMap<>(shared);
+        CopyOnWriteMap<String, String> cleared = new CopyOnWriteMap<>(shared);
+
+        put.put("jsonType.label", "String");
+        removed.remove("claim.name");
+        cleared.clear();
+
+        assertThat(put).containsExactly(Map.entry("claim.name", "street"), Map.entry("jsonType.label", "String"));
+        assertThat(removed).isEmpty();
+        assertThat(cleared).isEmpty();
+        assertThat(shared).containsExactly(Map.entry("claim.name", "street"));
+    }
+
+    @Test
+    void whenModifiedThroughViews_givenNoCopyYet_thenOnlyTheCopyChanges() {
+        CopyOnWriteMap<String, String> keyRemoved = new CopyOnWriteMap<>(shared);
+        CopyOnWriteMap<String, String> entryRemoved = new CopyOnWriteMap<>(shared);
+        CopyOnWriteMap<String, String> valueSet = new CopyOnWriteMap<>(shared);
+        CopyOnWriteMap<String, String> valuesCleared = new CopyOnWriteMap<>(shared);
+
+        keyRemoved.keySet().remove("claim.name");
+        entryRemoved.entrySet().removeIf(entry -> entry.getValue().equals("street"));
+        valueSet.entrySet().iterator().next().setValue("address");
+        valuesCleared.values().clear();
+
+        assertThat(keyRemoved).isEmpty();
+        assertThat(entryRemoved).isEmpty();
+        assertThat(valueSet).containsExactly(Map.entry("claim.name", "address"));
+        assertThat(valuesCleared).isEmpty();
+        assertThat(shared).containsExactly(Map.entry("claim.name", "street"));
+    }
+
+    @Test
+    void whenModifiedThroughViews_givenCopy_thenOnlyTheCopyChanges() {
+        CopyOnWriteMap<String, String> map = new CopyOnWriteMap<>(shared);
+        map.put("jsonType.label", "String");
+
+        map.keySet().remove("claim.name");
+        map.entrySet().iterator().next().setValue("long");
+
+        assertThat(map).containsExactly(Map.entry("jsonType.label", "long"));
+        assertThat(shared).containsExactly(Map.entry("claim.name", "street"));
+    }
+}
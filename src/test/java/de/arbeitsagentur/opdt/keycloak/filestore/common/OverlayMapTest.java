@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package de.arbeitsagentur.opdt.keycloak.filestore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class OverlayMapTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, OverlayMap.MAX_OVERLAY_SIZE, OverlayMap.MAX_OVERLAY_SIZE + 1, 100})
+    void whenWith_givenSingleEntries_thenEqualsMutableMap(int changes) {
+        Map<String, String> expected = new LinkedHashMap<>(Map.of("TREE", "Baum", "HOUSE", "Haus"));
+        OverlayMap<String, String> map = OverlayMap.of(expected);
+
+        for (int i = 0; i < changes; i++) {
+            String key = i % 2 == 0 ? "TREE" : "KEY" + i;
+            expected.put(key, "text" + i);
+            map = map.with(Map.of(key, "text" + i));
+        }
+
+        assertThat(map).isEqualTo(expected).hasSize(expected.size());
+        assertThat(map.keySet()).containsExactlyInAnyOrderElementsOf(expected.keySet());
+    }
+
+    @Test
+    void whenWith_givenEntries_thenOriginalIsUnchanged() {
+        OverlayMap<String, String> original = OverlayMap.of(Map.of("TREE", "Baum"));
+
+        OverlayMap<String, String> changed = original.with(Map.of("TREE", "Eiche", "HOUSE", "Haus"));
+
+        assertThat(original).containsExactly(Map.entry("TREE", "Baum"));
+        assertThat(changed).containsOnly(Map.entry("TREE", "Eiche"), Map.entry("HOUSE", "Haus"));
+    }
+
+    @Test
+    void whenWithout_givenKeysOfBaseAndOverlay_thenRemoveThem() {
+        OverlayMap<String, String> map = OverlayMap.of(Map.of("TREE", "Baum"))
+                .with(Map.of("HOUSE", "Haus"))
+                .with(IntStream.range(0, 3)
+                        .boxed()
+                        .collect(LinkedHashMap::new, (m, i) -> m.put("KEY" + i, "text" + i), Map::putAll));
+
+        OverlayMap<String, String> removed =
+                map.without("TREE").without("HOUSE").without("unknown");
+
+        assertThat(removed).containsOnlyKeys("KEY0", "KEY1", "KEY2");
+        assertThat(map).hasSize(5);
+    }
+}
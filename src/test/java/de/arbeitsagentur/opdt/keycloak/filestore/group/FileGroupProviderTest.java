@@ -208,6 +208,36 @@ class FileGroupProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetGroupsCount_givenMovedGroup_thenTopCountFollowsMove() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::groups, (groups, realm) -> {
+            // Arrange
+            var parent = groups.createGroup(realm, "Volga");
+            var child = groups.createGroup(realm, "Kama");
+            // Act & Assert
+            groups.moveGroup(realm, child, parent);
+            assertThat(groups.getGroupsCount(realm, true)).isEqualTo(1);
+            assertThat(groups.getGroupsCount(realm, false)).isEqualTo(2);
+            groups.moveGroup(realm, child, null);
+            assertThat(groups.getGroupsCount(realm, true)).isEqualTo(2);
+            assertThat(groups.getGroupsCount(realm, false)).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void whenGetGroupsCount_givenRemovedGroupWithSubgroup_thenReturnZero() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::groups, (groups, realm) -> {
+            // Arrange
+            var parent = groups.createGroup(realm, "Danube");
+            groups.createGroup(realm, "Inn", parent);
+            // Act
+            groups.removeGroup(realm, parent);
+            // Assert
+            assertThat(groups.getGroupsCount(realm, true)).isZero();
+            assertThat(groups.getGroupsCount(realm, false)).isZero();
+        });
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = {"unknown"})
@@ -236,6 +266,21 @@ class FileGroupProviderTest extends KeycloakModelTest {
         });
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"pattern", "PATTERN", "pa"})
+    void whenGetGroupsCountByNameContaining_givenSubgroups_thenCountTopLevelOnly(String search) {
+        withRealmAndProvider(REALM_ID, KeycloakSession::groups, (groups, realm) -> {
+            // Arrange
+            var parent = groups.createGroup(realm, "pattern-parent");
+            groups.createGroup(realm, "pattern-child", parent);
+            groups.createGroup(realm, "Pattern-sibling");
+            // Act
+            Long actual = groups.getGroupsCountByNameContaining(realm, search);
+            // Assert
+            assertThat(actual).isEqualTo(2);
+        });
+    }
+
     @Test
     void whenGetGroupsByRoleStream_givenNoGroups_thenReturnEmptyStreams() {
         withRealm(REALM_ID, (session, realm) -> {
@@ -261,6 +306,23 @@ class FileGroupProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetGroupsByRoleStream_givenRemovedRole_thenReturnEmptyStream() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var role = session.roles().addRealmRole(realm, "Ferryman");
+            var group = session.groups().createGroup(realm, "Danube");
+            group.grantRole(role);
+            // Act
+            session.roles().removeRole(role);
+            // Assert
+            assertThat(session.groups().getGroupsByRoleStream(realm, role, null, null))
+                    .isEmpty();
+            assertThat(FileGroupStore.read(group.getId(), realm.getId()).getGrantedRoles())
+                    .isEmpty();
+        });
+    }
+
     @Test
     void whenGetTopLevelGroupsStream_givenNoGroups_thenReturnEmptyStream() {
         withRealm(REALM_ID, (session, realm) -> {
@@ -273,6 +273,43 @@ class FileIdentityProviderStorageProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetForLogin_givenUpdatedIdps_thenReturnsCurrentLoginIdps() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::identityProviders, (idps, realm) -> {
+            IdentityProviderModel model1 = new IdentityProviderModel();
+            model1.setAlias("meinIdp");
+            model1.setEnabled(true);
+            model1.setProviderId("bundid");
+            idps.create(model1);
+
+            IdentityProviderModel model2 = new IdentityProviderModel();
+            model2.setAlias("meinIdp2");
+            model2.setEnabled(true);
+            model2.setProviderId("muk");
+            idps.create(model2);
+
+            assertThat(idps.getForLogin(IdentityProviderStorageProvider.FetchMode.REALM_ONLY, null)
+                            .map(IdentityProviderModel::getAlias))
+                    .containsExactly("meinIdp", "meinIdp2");
+
+            IdentityProviderModel hidden = idps.getByAlias("meinIdp");
+            hidden.setHideOnLogin(true);
+            idps.update(hidden);
+            IdentityProviderModel renamed = idps.getByAlias("meinIdp2");
+            renamed.setAlias("aIdp");
+            renamed.setFirstBrokerLoginFlowId("flow1");
+            idps.update(renamed);
+
+            assertThat(idps.getForLogin(IdentityProviderStorageProvider.FetchMode.REALM_ONLY, null)
+                            .map(IdentityProviderModel::getAlias))
+                    .containsExactly("aIdp");
+            assertThat(idps.getById(hidden.getInternalId()).isHideOnLogin()).isTrue();
+            assertThat(idps.getByFlow("flow1", null, null, null)).containsExactly("aIdp");
+            assertThat(idps.getByAlias("meinIdp2")).isNull();
+            assertThat(idps.count()).isEqualTo(2);
+        });
+    }
+
     @Test
     void whenCreateMapper_givenValidData_thenMapperCanBeRead() {
         withRealmAndProvider(REALM_ID, KeycloakSession::identityProviders, (idps, realm) -> {
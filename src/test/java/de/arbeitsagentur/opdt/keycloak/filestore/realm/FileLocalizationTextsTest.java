@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024. IT-Systemhaus der Bundesagentur fuer Arbeit
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package de.arbeitsagentur.opdt.keycloak.filestore.realm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class FileLocalizationTextsTest {
+
+    @Test
+    void whenGet_givenUnloadedLocale_thenItIsLoadedOnce() {
+        int[] loads = {0};
+        FileLocalizationTexts texts = new FileLocalizationTexts();
+        texts.putUnloaded("de", () -> {
+            loads[0]++;
+            return Map.of("TREE", "Baum");
+        });
+
+        assertThat(texts.keySet()).containsExactly("de");
+        assertThat(loads[0]).isZero();
+        assertThat(texts.get("de")).containsEntry("TREE", "Baum");
+        assertThat(texts.get("de")).containsEntry("TREE", "Baum");
+        assertThat(loads[0]).isOne();
+    }
+
+    @Test
+    void whenGetConcurrently_givenUnloadedLocale_thenNoReaderSeesItMissing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 500; i++) {
+                FileLocalizationTexts texts = new FileLocalizationTexts();
+                texts.putUnloaded("de", () -> Map.of("TREE", "Baum"));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Map<String, String>>> results = new ArrayList<>();
+                for (int reader = 0; reader < 4; reader++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return texts.get("de");
+                    }));
+                }
+                start.countDown();
+
+                for (Future<Map<String, String>> result : results) {
+                    assertThat(result.get()).containsEntry("TREE", "Baum");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -27,8 +27,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.keycloak.component.ComponentModel;
 import org.keycloak.models.KeycloakSession;
 import org.keycloak.models.ModelDuplicateException;
+import org.keycloak.models.RealmModel;
+import org.keycloak.storage.UserStorageProvider;
 
 class FileRealmProviderTest extends KeycloakModelTest {
 
@@ -116,6 +119,29 @@ class FileRealmProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetRealmsWithProviderTypeStream_givenImportedComponent_thenReturnRealm() {
+        System.setProperty("component.provider.exists.disabled", "true");
+        try {
+            withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
+                ComponentModel component = new ComponentModel();
+                component.setName("storage");
+                component.setProviderId("test");
+                component.setProviderType(UserStorageProvider.class.getName());
+                component = realm.importComponentModel(component);
+
+                assertThat(realms.getRealmsWithProviderTypeStream(UserStorageProvider.class)
+                                .map(RealmModel::getId))
+                        .containsExactly(REALM_ID);
+                assertThat(realm.getComponentsStream(REALM_ID, UserStorageProvider.class.getName())
+                                .map(ComponentModel::getId))
+                        .containsExactly(component.getId());
+            });
+        } finally {
+            System.clearProperty("component.provider.exists.disabled");
+        }
+    }
+
     @Test
     void whenRemoveRealm_givenNoRealm_thenReturnFalse() {
         withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
@@ -124,6 +150,41 @@ class FileRealmProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenRemoveRealm_givenIndexedRealm_thenIdentityProviderIndexIsDropped() {
+        inCommittedTransaction(session -> {
+            session.realms().createRealm("K3");
+            FileIdentityProviderIndex.of("K3");
+        });
+        assertThat(FileIdentityProviderIndex.isCached("K3")).isTrue();
+
+        inCommittedTransaction(session -> {
+            session.realms().removeRealm("K3");
+        });
+
+        assertThat(FileIdentityProviderIndex.isCached("K3")).isFalse();
+        assertThat(FileIdentityProviderIndex.of("K3").count()).isZero();
+        assertThat(FileIdentityProviderIndex.isCached("K3")).isFalse();
+    }
+
+    @Test
+    void whenRemoveRealm_givenIndexedRealm_thenComponentIndexIsDropped() {
+        inCommittedTransaction(session -> {
+            session.realms().createRealm("K4");
+            FileComponentIndex.of("K4");
+        });
+        assertThat(FileComponentIndex.isCached("K4")).isTrue();
+
+        inCommittedTransaction(session -> {
+            session.realms().removeRealm("K4");
+        });
+
+        assertThat(FileComponentIndex.isCached("K4")).isFalse();
+        assertThat(FileComponentIndex.of("K4").getByProviderType(UserStorageProvider.class.getName()))
+                .isEmpty();
+        assertThat(FileComponentIndex.isCached("K4")).isFalse();
+    }
+
     @Test
     void whenRemoveExpiredClientInitialAccess_givenMultipleClients_thenExpiredClientsAreRemoved() {
         withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
@@ -140,6 +201,21 @@ class FileRealmProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenRemoveExpiredClientInitialAccess_givenNonExpiringClients_thenOnlyExpiredClientsAreRemoved() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
+            // Arrange
+            realms.createClientInitialAccessModel(realm, 0, 0); // never expires
+            realms.createClientInitialAccessModel(realm, -1000, 0); // expired
+            realms.createClientInitialAccessModel(realm, 1000, 0);
+            // Act
+            realms.removeExpiredClientInitialAccess();
+            realms.removeExpiredClientInitialAccess();
+            // Assert
+            assertThat(realm.getClientInitialAccesses()).hasSize(2);
+        });
+    }
+
     @Test
     void whenSaveLocalizationText_givenNull_thenNoLocalizationIsSet() {
         withRealmAndProvider(REALM_ID, KeycloakSession::realms, (realms, realm) -> {
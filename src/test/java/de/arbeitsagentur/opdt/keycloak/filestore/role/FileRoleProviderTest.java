@@ -20,7 +20,9 @@ package de.arbeitsagentur.opdt.keycloak.filestore.role;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
+import de.arbeitsagentur.opdt.keycloak.filestore.EntityStore;
 import de.arbeitsagentur.opdt.keycloak.filestore.KeycloakModelTest;
+import de.arbeitsagentur.opdt.keycloak.filestore.SearchField;
 import java.util.List;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
@@ -293,6 +295,21 @@ class FileRoleProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenRemoveRole_givenCompositeChild_thenCompositeIsRemovedFromParent() {
+        withRealm(REALM_ID, (session, realm) -> {
+            // Arrange
+            var parent = session.roles().addRealmRole(realm, "kitchen");
+            var child = session.roles().addRealmRole(realm, "stove");
+            parent.addCompositeRole(child);
+            // Act
+            session.roles().removeRole(child);
+            // Assert
+            assertThat(FileRoleStore.read("kitchen", realm.getId()).getCompositeRoles())
+                    .isEmpty();
+        });
+    }
+
     @Test
     void whenRemoveRoles_givenNoRealmsRoles_thenRolesAreEmpty() {
         withRealm(REALM_ID, (session, realm) -> {
@@ -391,6 +408,23 @@ class FileRoleProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenGetRoleById_givenSameSession_thenReturnSameAdapterUntilRecreated() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::roles, (roles, realm) -> {
+            // Arrange
+            var created = roles.addRealmRole(realm, "oven");
+            // Act
+            var first = roles.getRoleById(realm, "oven");
+            var second = roles.getRoleById(realm, "oven");
+            roles.removeRole(created);
+            var recreated = roles.addRealmRole(realm, "oven");
+            // Assert
+            assertThat(first).isSameAs(created).isSameAs(second);
+            assertThat(recreated).isNotSameAs(created);
+            assertThat(roles.getRoleById(realm, "oven")).isSameAs(recreated);
+        });
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = {"unknown"})
@@ -422,6 +456,45 @@ class FileRoleProviderTest extends KeycloakModelTest {
         });
     }
 
+    @Test
+    void whenSearchForRolesStream_givenChangedDescription_thenReturnStreamOfCurrentValues() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::roles, (roles, realm) -> {
+            // Arrange
+            var role = roles.addRealmRole(realm, "ottawa");
+            role.setDescription("Capital of Canada");
+            role.setDescription("City in Ontario");
+            // Act
+            var byOldValue = roles.searchForRolesStream(realm, "CANADA", null, null);
+            var byNewValue = roles.searchForRolesStream(realm, "ontario", null, null);
+            // Assert
+            assertThat(byOldValue).isEmpty();
+            assertThat(byNewValue).map(RoleModel::getName).containsExactly("ottawa");
+        });
+    }
+
+    @Test
+    void whenGetSearchCandidates_givenChangedAndRemovedRoles_thenOnlyCurrentTextsAreIndexed() {
+        withRealmAndProvider(REALM_ID, KeycloakSession::roles, (roles, realm) -> {
+            // Arrange
+            var role = roles.addRealmRole(realm, "quebec");
+            role.setDescription("Capital of Canada");
+            role.setDescription("City in Quebec");
+            roles.addRealmRole(realm, "montreal");
+            roles.removeRole(roles.getRealmRole(realm, "montreal"));
+            // Act
+            List<FileRoleEntity> byOldValue =
+                    EntityStore.getSearchCandidates(SearchField.ROLE_NAME_OR_DESCRIPTION, realm.getId(), "canada");
+            List<FileRoleEntity> byNewValue =
+                    EntityStore.getSearchCandidates(SearchField.ROLE_NAME_OR_DESCRIPTION, realm.getId(), "city");
+            List<FileRoleEntity> byRemovedName =
+                    EntityStore.getSearchCandidates(SearchField.ROLE_NAME_OR_DESCRIPTION, realm.getId(), "montreal");
+            // Assert
+            assertThat(byOldValue).isEmpty();
+            assertThat(byNewValue).extracting(FileRoleEntity::getName).containsExactly("quebec");
+            assertThat(byRemovedName).isEmpty();
+        });
+    }
+
     @Test
     void whenSearchForClientRolesStream_givenSearchString_thenReturnStream() {
         withRealm(REALM_ID, (session, realm) -> {